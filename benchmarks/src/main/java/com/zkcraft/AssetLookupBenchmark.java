@@ -0,0 +1,100 @@
+package com.zkcraft;
+
+import com.zkcraft.zkcasset.ZKCAsset;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.web3j.crypto.Credentials;
+import org.web3j.protocol.Web3j;
+import org.web3j.tx.RawTransactionManager;
+import org.web3j.tx.gas.DefaultGasProvider;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * getAssetFromBlockchain's path through the asset cache, the circuit breaker
+ * and the contract wrapper, in each mode a command can meet:
+ * - cached: the wallet's assets are in the cache;
+ * - online: a cache miss answered by the endpoint;
+ * - failed: a cache miss the endpoint fails, while the breaker is still closed;
+ * - offline: the breaker is open and the fallback is used without a call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AssetLookupBenchmark {
+    private static final String WALLET = "0x00000000000000000000000000000000000000bb";
+    private static final ZKCAsset.Asset FALLBACK = new ZKCAsset.Asset("rank", "Default");
+
+    @Param({"cached", "online", "failed", "offline"})
+    public String mode;
+
+    private Web3j web3j;
+    private StubRpc rpc;
+    private ZKCAsset zkcAsset;
+    private AssetCache assetCache;
+    private CircuitBreaker circuitBreaker;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Logger logger = Logger.getLogger("AssetLookupBenchmark");
+        logger.setLevel(java.util.logging.Level.OFF);
+        rpc = new StubRpc(Arrays.asList(new ZKCAsset.Asset("rank", "VIP"), new ZKCAsset.Asset("item", "DIAMOND_SWORD")));
+        web3j = Web3j.build(rpc);
+        Credentials credentials = Credentials.create("0x4c0883a69102937d6231471b5dbb6204fe5129617082792ae468d01a3f362318");
+        zkcAsset = ZKCAsset.load("0x00000000000000000000000000000000000000aa", web3j,
+                new RawTransactionManager(web3j, credentials), new DefaultGasProvider());
+        assetCache = new AssetCache(10000, 3600);
+        // A failure rate threshold above 1 keeps the breaker closed in failed mode
+        circuitBreaker = new CircuitBreaker(() -> {
+            throw new IllegalStateException("probe");
+        }, 20, 1, mode.equals("offline") ? 0.5 : 1.1, 60000, 1.1, 3600000, state -> {
+        }, logger);
+        rpc.setFailing(mode.equals("failed") || mode.equals("offline"));
+        if (mode.equals("offline")) circuitBreaker.record(0, true);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        circuitBreaker.shutdown();
+        web3j.shutdown();
+    }
+
+    @Benchmark
+    public ZKCAsset.Asset lookup() {
+        if (!mode.equals("cached")) assetCache.invalidate(WALLET);
+        return getAssetFromBlockchain(WALLET, "rank");
+    }
+
+    // Mirrors ZKCraftTrade.getAssetFromBlockchain, with a constant in place of the fallback rank lookup
+    private ZKCAsset.Asset getAssetFromBlockchain(String wallet, String assetType) {
+        if (!circuitBreaker.allowsCalls()) return FALLBACK;
+        try {
+            @SuppressWarnings("unchecked")
+            List<ZKCAsset.Asset> assets = assetCache.get(wallet, () -> circuitBreaker.call(() -> zkcAsset.getWalletAssets(wallet).send()));
+            for (ZKCAsset.Asset asset : assets) {
+                if (asset.assetType.equals(assetType)) return asset;
+            }
+            return null;
+        } catch (Exception e) {
+            return FALLBACK;
+        }
+    }
+}
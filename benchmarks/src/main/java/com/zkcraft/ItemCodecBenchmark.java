@@ -0,0 +1,168 @@
+package com.zkcraft;
+
+import org.bukkit.Material;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.util.io.BukkitObjectInputStream;
+import org.bukkit.util.io.BukkitObjectOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stored item encoding: the binary ItemCodec against the two formats it
+ * replaced, item.serialize() maps in YAML and Java serialization. The
+ * encoded size of the corpus is printed once per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ItemCodecBenchmark {
+    private static final int CORPUS_SIZE = 64;
+
+    @Param({"binary", "yaml", "java"})
+    public String format;
+
+    /** plain: material and amount only. rich: also the meta a named, enchanted, tagged item carries. */
+    @Param({"plain", "rich"})
+    public String corpus;
+
+    private List<ItemStack> items;
+    private List<byte[]> encoded;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        StubServer.install();
+        Material[] materials = { Material.DIAMOND_SWORD, Material.STONE, Material.OAK_LOG, Material.GOLDEN_APPLE,
+                Material.ENCHANTED_BOOK, Material.NETHERITE_PICKAXE, Material.BOW, Material.TOTEM_OF_UNDYING };
+        items = new ArrayList<>(CORPUS_SIZE);
+        for (int i = 0; i < CORPUS_SIZE; i++) {
+            Material material = materials[i % materials.length];
+            int amount = Math.min(material.getMaxStackSize(), 1 + i % 16);
+            items.add(corpus.equals("rich") ? new RichItem(material, amount, i) : new ItemStack(material, amount));
+        }
+        encoded = new ArrayList<>(CORPUS_SIZE);
+        long bytes = 0;
+        for (ItemStack item : items) {
+            byte[] data = encode(item);
+            encoded.add(data);
+            bytes += data.length;
+        }
+        System.out.printf("%n%s/%s: %d bytes for %d items (%.1f per item)%n", format, corpus, bytes, CORPUS_SIZE, bytes / (double) CORPUS_SIZE);
+    }
+
+    @Benchmark
+    public int encodeCorpus() throws IOException {
+        int bytes = 0;
+        for (ItemStack item : items) bytes += encode(item).length;
+        return bytes;
+    }
+
+    @Benchmark
+    public int decodeCorpus() throws Exception {
+        int decoded = 0;
+        for (byte[] data : encoded) {
+            if (decode(data) != null) decoded++;
+        }
+        return decoded;
+    }
+
+    private byte[] encode(ItemStack item) throws IOException {
+        switch (format) {
+            case "binary":
+                return ItemCodec.encode(item);
+            case "yaml":
+                YamlConfiguration yaml = new YamlConfiguration();
+                yaml.set("item", item.serialize());
+                return yaml.saveToString().getBytes(StandardCharsets.UTF_8);
+            default:
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                try (BukkitObjectOutputStream out = new BukkitObjectOutputStream(bytes)) {
+                    out.writeObject(item);
+                }
+                return bytes.toByteArray();
+        }
+    }
+
+    private ItemStack decode(byte[] data) throws IOException, ClassNotFoundException, InvalidConfigurationException {
+        switch (format) {
+            case "binary":
+                return ItemCodec.decode(data);
+            case "yaml":
+                YamlConfiguration yaml = new YamlConfiguration();
+                yaml.loadFromString(new String(data, StandardCharsets.UTF_8));
+                ConfigurationSection section = yaml.getConfigurationSection("item");
+                return ItemStack.deserialize(section.getValues(false));
+            default:
+                try (BukkitObjectInputStream in = new BukkitObjectInputStream(new ByteArrayInputStream(data))) {
+                    return (ItemStack) in.readObject();
+                }
+        }
+    }
+
+    /**
+     * Item meta needs a running server, so rich items carry the map a
+     * CraftMetaItem serializes to instead: display name, lore, enchantments,
+     * custom model data and persistent data. Every format encodes the same
+     * tree; only Java serialization turns it back into a RichItem.
+     */
+    public static class RichItem extends ItemStack {
+        private final Map<String, Object> meta;
+
+        RichItem(Material material, int amount, int seed) {
+            super(material, amount);
+            meta = new LinkedHashMap<>();
+            meta.put("meta-type", "UNSPECIFIC");
+            meta.put("display-name", "{\"extra\":[{\"bold\":true,\"color\":\"gold\",\"text\":\"Relic #" + seed + "\"}],\"text\":\"\"}");
+            meta.put("lore", Arrays.asList("{\"extra\":[{\"color\":\"gray\",\"text\":\"Stored on chain\"}],\"text\":\"\"}",
+                    "{\"extra\":[{\"color\":\"dark_purple\",\"text\":\"Season " + (seed % 4 + 1) + "\"}],\"text\":\"\"}"));
+            Map<String, Object> enchants = new LinkedHashMap<>();
+            enchants.put("minecraft:unbreaking", 3);
+            enchants.put("minecraft:mending", 1);
+            if (seed % 2 == 0) enchants.put("minecraft:sharpness", 5);
+            meta.put("enchants", enchants);
+            meta.put("custom-model-data", 1000 + seed);
+            meta.put("repair-cost", seed % 8);
+            Map<String, Object> persistentData = new LinkedHashMap<>();
+            persistentData.put("zkcraft:token", "0x" + Integer.toHexString(0x10000 + seed));
+            meta.put("PublicBukkitValues", persistentData);
+        }
+
+        @Override
+        public Map<String, Object> serialize() {
+            Map<String, Object> result = super.serialize();
+            result.put("meta", meta);
+            return result;
+        }
+
+        public static RichItem deserialize(Map<String, Object> args) {
+            ItemStack item = ItemStack.deserialize(args);
+            return new RichItem(item.getType(), item.getAmount(), 0);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.zkcraft;
+
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Loading and saving every player's wallet, item and rank, the work
+ * initializeDataFiles and a full save do, for both storage backends.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PlayerDataStoreBenchmark {
+    private static final Material[] MATERIALS = { Material.DIAMOND_SWORD, Material.STONE, Material.OAK_LOG, Material.GOLDEN_APPLE };
+
+    @Param({"yaml", "journal"})
+    public String backend;
+
+    @Param({"1000", "10000"})
+    public int players;
+
+    private File directory;
+    private Logger logger;
+    private UUID[] uuids;
+    private ItemStack[] items;
+    private int round;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        StubServer.install();
+        logger = Logger.getLogger("PlayerDataStoreBenchmark");
+        logger.setLevel(java.util.logging.Level.WARNING);
+        directory = Files.createTempDirectory("zkcraft-bench").toFile();
+        uuids = new UUID[players];
+        items = new ItemStack[players];
+        for (int i = 0; i < players; i++) {
+            uuids[i] = new UUID(0, i);
+            items[i] = new ItemStack(MATERIALS[i % MATERIALS.length], 1 + i % 64);
+        }
+        PlayerDataStore store = open();
+        try {
+            write(store, "VIP");
+        } finally {
+            store.close();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public int initialize() throws IOException {
+        PlayerDataStore store = open();
+        try {
+            return store.loadWallets().size() + store.loadInventory().size() + store.loadRanks().size();
+        } finally {
+            store.close();
+        }
+    }
+
+    // Every record changes, then the store is flushed to disk
+    @Benchmark
+    public void save(OpenStore open) {
+        write(open.store, (round++ & 1) == 0 ? "MVP" : "VIP");
+        open.store.flush();
+    }
+
+    /** A store kept open across an iteration, so save measures only the writes. */
+    @State(Scope.Benchmark)
+    public static class OpenStore {
+        PlayerDataStore store;
+
+        @Setup(Level.Iteration)
+        public void open(PlayerDataStoreBenchmark benchmark) throws IOException {
+            store = benchmark.open();
+        }
+
+        @TearDown(Level.Iteration)
+        public void close() {
+            store.close();
+        }
+    }
+
+    private PlayerDataStore open() throws IOException {
+        PlayerDataStore store = backend.equals("journal")
+                ? new JournalPlayerDataStore(new File(directory, "data"), 1000, 10000, new Metrics(), logger)
+                : new YamlPlayerDataStore(directory, 1000, new Metrics(), logger);
+        store.open();
+        return store;
+    }
+
+    private void write(PlayerDataStore store, String rank) {
+        for (int i = 0; i < players; i++) {
+            String wallet = String.format("0x%040x", i + 1);
+            store.setWallet(uuids[i], wallet);
+            store.setItem(uuids[i], items[i]);
+            store.setRank(wallet, rank);
+        }
+    }
+
+    private static void deleteRecursively(File file) throws IOException {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) deleteRecursively(child);
+        }
+        Files.deleteIfExists(file.toPath());
+    }
+}
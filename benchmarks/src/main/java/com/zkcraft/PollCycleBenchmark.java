@@ -0,0 +1,81 @@
+package com.zkcraft;
+
+import com.zkcraft.zkcasset.ZKCAsset;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.web3j.protocol.Web3j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * One poll cycle as pollWalletsBatched runs it: batched getWalletAssets
+ * reads for every wallet, then the asset cache and the reconciler. The
+ * endpoint answers instantly, so this is the plugin's own cost per cycle:
+ * ABI encoding and decoding, batching, caching and diffing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PollCycleBenchmark {
+    @Param({"1000", "10000", "100000"})
+    public int wallets;
+
+    private Web3j web3j;
+    private BatchAssetReader reader;
+    private AssetCache assetCache;
+    private AssetReconciler reconciler;
+    private List<String> walletAddresses;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Logger logger = Logger.getLogger("PollCycleBenchmark");
+        logger.setLevel(java.util.logging.Level.WARNING);
+        web3j = Web3j.build(new StubRpc(Arrays.asList(
+                new ZKCAsset.Asset("rank", "VIP"), new ZKCAsset.Asset("item", "DIAMOND_SWORD"))));
+        reader = new BatchAssetReader(web3j, "0x00000000000000000000000000000000000000aa", 100, 4, new Metrics(), logger);
+        assetCache = new AssetCache(wallets, 30);
+        reconciler = new AssetReconciler();
+        walletAddresses = new ArrayList<>(wallets);
+        for (int i = 0; i < wallets; i++) walletAddresses.add(String.format("0x%040x", i + 1));
+        // The first cycle queues every wallet's initial state; measure the steady state after it
+        cycle();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        web3j.shutdown();
+    }
+
+    @Benchmark
+    public int cycle() {
+        long readStartedAt = System.currentTimeMillis();
+        Map<String, List<ZKCAsset.Asset>> results = reader.readWalletAssets(walletAddresses);
+        for (Map.Entry<String, List<ZKCAsset.Asset>> entry : results.entrySet()) {
+            assetCache.put(entry.getKey(), entry.getValue());
+            reconciler.reconcile(entry.getKey(), entry.getValue(), readStartedAt);
+        }
+        int[] applied = new int[1];
+        reconciler.drain(Integer.MAX_VALUE, change -> applied[0]++);
+        return results.size() + applied[0];
+    }
+}
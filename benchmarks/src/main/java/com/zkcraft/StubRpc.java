@@ -0,0 +1,127 @@
+package com.zkcraft;
+
+import com.zkcraft.zkcasset.ZKCAsset;
+
+import io.reactivex.Flowable;
+
+import org.web3j.abi.FunctionEncoder;
+import org.web3j.abi.datatypes.DynamicArray;
+import org.web3j.abi.datatypes.Type;
+import org.web3j.abi.datatypes.generated.Uint256;
+import org.web3j.protocol.Web3jService;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.BatchResponse;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.core.methods.request.Transaction;
+import org.web3j.protocol.core.methods.response.EthCall;
+import org.web3j.protocol.websocket.events.Notification;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An in-process JSON-RPC endpoint that answers every eth_call as if each
+ * wallet held the same assets, through getWalletAssets or getAssetsBatch,
+ * or fails every call, so chain-facing code can be measured without a node
+ * or network.
+ */
+final class StubRpc implements Web3jService {
+    private static final String ASSETS_BATCH_SELECTOR =
+            BatchAssetReader.encodeGetAssetsBatch(Collections.<String>emptyList()).substring(0, 10);
+
+    private final List<ZKCAsset.Asset> walletAssets;
+    private final String walletAssetsResult;
+    // getAssetsBatch results by wallet count, encoded once so the benchmarks measure the reader
+    private final Map<Integer, String> assetsBatchResults = new ConcurrentHashMap<>();
+    private volatile boolean failing;
+
+    StubRpc(List<ZKCAsset.Asset> walletAssets) {
+        this.walletAssets = walletAssets;
+        this.walletAssetsResult = "0x" + FunctionEncoder.encodeConstructor(
+                Arrays.<Type>asList(new DynamicArray<>(ZKCAsset.Asset.class, walletAssets)));
+    }
+
+    void setFailing(boolean failing) {
+        this.failing = failing;
+    }
+
+    @Override
+    public <T extends Response> T send(Request request, Class<T> responseType) throws IOException {
+        if (failing) throw new IOException("Stub RPC endpoint is failing");
+        if (responseType != EthCall.class) throw new IOException("Stub RPC endpoint only answers eth_call");
+        return responseType.cast(answer(request));
+    }
+
+    @Override
+    public <T extends Response> CompletableFuture<T> sendAsync(Request request, Class<T> responseType) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            future.complete(send(request, responseType));
+        } catch (IOException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    @Override
+    public BatchResponse sendBatch(BatchRequest batchRequest) throws IOException {
+        if (failing) throw new IOException("Stub RPC endpoint is failing");
+        List<Request<?, ? extends Response<?>>> requests = batchRequest.getRequests();
+        List<Response<?>> responses = new ArrayList<>(requests.size());
+        for (Request<?, ? extends Response<?>> request : requests) responses.add(answer(request));
+        return new BatchResponse(requests, responses);
+    }
+
+    @Override
+    public CompletableFuture<BatchResponse> sendBatchAsync(BatchRequest batchRequest) {
+        CompletableFuture<BatchResponse> future = new CompletableFuture<>();
+        try {
+            future.complete(sendBatch(batchRequest));
+        } catch (IOException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    @Override
+    public <T extends Notification<?>> Flowable<T> subscribe(Request request, String unsubscribeMethod, Class<T> responseType) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private EthCall answer(Request<?, ?> request) {
+        EthCall response = new EthCall();
+        response.setId(request.getId());
+        response.setJsonrpc("2.0");
+        String data = ((Transaction) request.getParams().get(0)).getData();
+        if (data.startsWith(ASSETS_BATCH_SELECTOR)) {
+            // Calldata is selector, array offset, array length, then one word per wallet
+            int wallets = Integer.parseInt(data.substring(10 + 64, 10 + 128), 16);
+            response.setResult(assetsBatchResults.computeIfAbsent(wallets, this::encodeAssetsBatch));
+        } else {
+            response.setResult(walletAssetsResult);
+        }
+        return response;
+    }
+
+    private String encodeAssetsBatch(int wallets) {
+        List<ZKCAsset.Asset> assets = new ArrayList<>(wallets * walletAssets.size());
+        List<Uint256> counts = new ArrayList<>(wallets);
+        for (int i = 0; i < wallets; i++) {
+            assets.addAll(walletAssets);
+            counts.add(new Uint256(walletAssets.size()));
+        }
+        return "0x" + FunctionEncoder.encodeConstructor(Arrays.<Type>asList(
+                new DynamicArray<>(ZKCAsset.Asset.class, assets), new DynamicArray<>(Uint256.class, counts)));
+    }
+}
@@ -0,0 +1,122 @@
+package com.zkcraft;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.Server;
+import org.bukkit.UnsafeValues;
+import org.bukkit.configuration.serialization.ConfigurationSerialization;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemFactory;
+import org.bukkit.inventory.ItemStack;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+/**
+ * Just enough of a Bukkit server for the benchmarks: online players with
+ * names and UUIDs, and the item factory and unsafe values ItemStack needs to
+ * serialize itself. Every other method answers a default value.
+ */
+final class StubServer {
+    private static final int DATA_VERSION = 3700; // 1.20.4
+    private static volatile List<Player> onlinePlayers = Collections.emptyList();
+
+    private StubServer() {
+    }
+
+    static synchronized void install() {
+        if (Bukkit.getServer() != null) return;
+        Logger logger = Logger.getLogger("StubServer");
+        UnsafeValues unsafe = proxy(UnsafeValues.class, (method, args) -> {
+            switch (method) {
+                case "getDataVersion":
+                    return DATA_VERSION;
+                case "getMaterial":
+                    return Material.getMaterial((String) args[0]);
+                default:
+                    return null;
+            }
+        });
+        // Items have no meta without a real server; equals(null, null) makes serialize() leave it out
+        ItemFactory itemFactory = proxy(ItemFactory.class, (method, args) ->
+                method.equals("equals") && args != null && args.length == 2 ? args[0] == args[1] : null);
+        Server server = proxy(Server.class, (method, args) -> {
+            switch (method) {
+                case "getLogger":
+                    return logger;
+                case "getName":
+                case "getVersion":
+                case "getBukkitVersion":
+                    return "stub";
+                case "getOnlinePlayers":
+                    return onlinePlayers;
+                case "getUnsafe":
+                    return unsafe;
+                case "getItemFactory":
+                    return itemFactory;
+                case "isPrimaryThread":
+                    return true;
+                default:
+                    return null;
+            }
+        });
+        Bukkit.setServer(server);
+        ConfigurationSerialization.registerClass(ItemStack.class);
+    }
+
+    static void setOnlinePlayers(int count) {
+        List<Player> players = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String name = "Player" + i;
+            UUID uuid = new UUID(0, i);
+            players.add(proxy(Player.class, (method, args) -> {
+                switch (method) {
+                    case "getName":
+                        return name;
+                    case "getUniqueId":
+                        return uuid;
+                    default:
+                        return null;
+                }
+            }));
+        }
+        onlinePlayers = Collections.unmodifiableList(players);
+    }
+
+    private interface Handler {
+        Object invoke(String method, Object[] args);
+    }
+
+    // Primitive return types get their zero value when the handler has nothing to say
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, Handler handler) {
+        return (T) Proxy.newProxyInstance(StubServer.class.getClassLoader(), new Class<?>[] { type }, (self, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                switch (method.getName()) {
+                    case "hashCode":
+                        return System.identityHashCode(self);
+                    case "equals":
+                        return self == args[0];
+                    default:
+                        return type.getSimpleName() + "@stub";
+                }
+            }
+            Object result = handler.invoke(method.getName(), args);
+            if (result != null || !method.getReturnType().isPrimitive()) return result;
+            Class<?> returnType = method.getReturnType();
+            if (returnType == boolean.class) return false;
+            if (returnType == void.class) return null;
+            if (returnType == long.class) return 0L;
+            if (returnType == double.class) return 0.0;
+            if (returnType == float.class) return 0.0f;
+            if (returnType == char.class) return '\0';
+            if (returnType == byte.class) return (byte) 0;
+            if (returnType == short.class) return (short) 0;
+            return 0;
+        });
+    }
+}
@@ -0,0 +1,51 @@
+package com.zkcraft;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * /zkc tab completion, which runs on the main thread for every key press.
+ * Completing a player name walks every online player.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TabCompleteBenchmark {
+    @Param({"100", "1000", "10000"})
+    public int onlinePlayers;
+
+    private ZKCraftTrade.ZKCTabCompleter completer;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        StubServer.install();
+        StubServer.setOnlinePlayers(onlinePlayers);
+        completer = new ZKCraftTrade.ZKCTabCompleter(() -> 3);
+    }
+
+    @Benchmark
+    public List<String> subcommand() {
+        return completer.onTabComplete(null, null, "zkc", new String[] { "in" });
+    }
+
+    @Benchmark
+    public List<String> playerName() {
+        return completer.onTabComplete(null, null, "zkc", new String[] { "probe", "player", "Player1" });
+    }
+}
@@ -3,6 +3,7 @@ pragma solidity ^0.8.0;
 
 import "@openzeppelin/contracts/token/ERC721/ERC721.sol";
 import "@openzeppelin/contracts/access/Ownable.sol";
+import "@openzeppelin/contracts/utils/cryptography/MerkleProof.sol";
 
 contract ZKCAsset is ERC721, Ownable {
     struct Asset {
@@ -13,6 +14,14 @@ contract ZKCAsset is ERC721, Ownable {
     uint256 private _nextTokenId;
     mapping(uint256 => Asset) public assets;
     mapping(address => uint256[]) private _walletAssets;
+    // Position of each token in its owner's _walletAssets, so removing it doesn't scan the array
+    mapping(uint256 => uint256) private _walletAssetIndex;
+    // wallet => keccak256(assetType) => tokenId, 0 if the wallet holds none of that type
+    mapping(address => mapping(bytes32 => uint256)) private _tokenByType;
+    // wallet => keccak256(assetType) => tokens of that type held, so duplicates are only searched for when there are some
+    mapping(address => mapping(bytes32 => uint256)) private _typeCount;
+    // wallet => Merkle root over every slot of its vault, 0 while the vault is empty
+    mapping(address => bytes32) public vaultRoots;
 
     constructor(address initialOwner) ERC721("ZKCraftAsset", "ZKC") Ownable(initialOwner) {
         _nextTokenId = 1;
@@ -20,9 +29,9 @@ contract ZKCAsset is ERC721, Ownable {
 
     function mint(address to, string memory assetType, string memory value) public onlyOwner {
         uint256 tokenId = _nextTokenId++;
-        _safeMint(to, tokenId);
+        // Stored first so _update can index the new token by its type
         assets[tokenId] = Asset(assetType, value);
-        _walletAssets[to].push(tokenId);
+        _safeMint(to, tokenId);
     }
 
     function exists(uint256 tokenId) internal view returns (bool) {
@@ -31,19 +40,49 @@ contract ZKCAsset is ERC721, Ownable {
 
     function burn(uint256 tokenId) public onlyOwner {
         require(exists(tokenId), "Token does not exist");
-        address owner = ownerOf(tokenId);
         _burn(tokenId);
         delete assets[tokenId];
-        uint256[] storage tokens = _walletAssets[owner];
-        for (uint256 i = 0; i < tokens.length; i++) {
-            if (tokens[i] == tokenId) {
-                tokens[i] = tokens[tokens.length - 1];
-                tokens.pop();
-                break;
-            }
+    }
+
+    // Many mints in one transaction; to[i] gets an asset of assetTypes[i] with values[i]
+    function mintBatch(address[] calldata to, string[] calldata assetTypes, string[] calldata values) public onlyOwner {
+        require(to.length == assetTypes.length && to.length == values.length, "Array lengths differ");
+        for (uint256 i = 0; i < to.length; i++) {
+            mint(to[i], assetTypes[i], values[i]);
+        }
+    }
+
+    // Many burns in one transaction; reverts as a whole if any token does not exist
+    function burnBatch(uint256[] calldata tokenIds) public onlyOwner {
+        for (uint256 i = 0; i < tokenIds.length; i++) {
+            burn(tokenIds[i]);
         }
     }
 
+    // One root commits a whole vault, so an update costs one transaction however many slots it changed
+    function setVaultRoot(address wallet, bytes32 root) public onlyOwner {
+        vaultRoots[wallet] = root;
+    }
+
+    // Many vault roots in one transaction; wallets[i] gets roots[i]
+    function setVaultRoots(address[] calldata wallets, bytes32[] calldata roots) public onlyOwner {
+        require(wallets.length == roots.length, "Array lengths differ");
+        for (uint256 i = 0; i < wallets.length; i++) {
+            vaultRoots[wallets[i]] = roots[i];
+        }
+    }
+
+    // Whether slot of the wallet's vault holds the item hashing to itemHash (0 for an empty slot), by its proof against the committed root
+    function verifyVaultSlot(address wallet, uint256 slot, bytes32 itemHash, bytes32[] calldata proof) public view returns (bool) {
+        bytes32 root = vaultRoots[wallet];
+        return root != bytes32(0) && MerkleProof.verify(proof, root, vaultLeaf(slot, itemHash));
+    }
+
+    // Hashed twice so no leaf can pass for an inner node of the tree
+    function vaultLeaf(uint256 slot, bytes32 itemHash) public pure returns (bytes32) {
+        return keccak256(abi.encodePacked(keccak256(abi.encode(slot, itemHash))));
+    }
+
     function getWalletAssets(address wallet) public view returns (Asset[] memory) {
         uint256[] memory tokenIds = _walletAssets[wallet];
         Asset[] memory result = new Asset[](tokenIds.length);
@@ -53,13 +92,73 @@ contract ZKCAsset is ERC721, Ownable {
         return result;
     }
 
+    // The assets of every wallet in one call, flattened in the order of wallets; counts[i] of them belong to wallets[i]
+    function getAssetsBatch(address[] calldata wallets) public view returns (Asset[] memory result, uint256[] memory counts) {
+        counts = new uint256[](wallets.length);
+        uint256 total = 0;
+        for (uint256 i = 0; i < wallets.length; i++) {
+            counts[i] = _walletAssets[wallets[i]].length;
+            total += counts[i];
+        }
+        result = new Asset[](total);
+        uint256 next = 0;
+        for (uint256 i = 0; i < wallets.length; i++) {
+            uint256[] storage tokenIds = _walletAssets[wallets[i]];
+            for (uint256 j = 0; j < tokenIds.length; j++) {
+                result[next++] = assets[tokenIds[j]];
+            }
+        }
+    }
+
     function getTokenId(address wallet, string memory assetType) public view returns (uint256) {
-        uint256[] memory tokenIds = _walletAssets[wallet];
-        for (uint256 i = 0; i < tokenIds.length; i++) {
-            if (keccak256(abi.encodePacked(assets[tokenIds[i]].assetType)) == keccak256(abi.encodePacked(assetType))) {
-                return tokenIds[i];
+        return _tokenByType[wallet][keccak256(bytes(assetType))];
+    }
+
+    // Keeps the wallet lists and the type index in step with ownership on mint, transfer and burn
+    function _update(address to, uint256 tokenId, address auth) internal override returns (address) {
+        address from = super._update(to, tokenId, auth);
+        if (from != address(0)) {
+            _removeFromWallet(from, tokenId);
+        }
+        if (to != address(0)) {
+            _addToWallet(to, tokenId);
+        }
+        return from;
+    }
+
+    function _addToWallet(address wallet, uint256 tokenId) private {
+        _walletAssetIndex[tokenId] = _walletAssets[wallet].length;
+        _walletAssets[wallet].push(tokenId);
+        bytes32 typeHash = keccak256(bytes(assets[tokenId].assetType));
+        _typeCount[wallet][typeHash]++;
+        // A wallet holding two tokens of one type keeps answering with the one it got first
+        if (_tokenByType[wallet][typeHash] == 0) {
+            _tokenByType[wallet][typeHash] = tokenId;
+        }
+    }
+
+    function _removeFromWallet(address wallet, uint256 tokenId) private {
+        uint256[] storage tokens = _walletAssets[wallet];
+        uint256 index = _walletAssetIndex[tokenId];
+        uint256 last = tokens[tokens.length - 1];
+        tokens[index] = last;
+        _walletAssetIndex[last] = index;
+        tokens.pop();
+        delete _walletAssetIndex[tokenId];
+        bytes32 typeHash = keccak256(bytes(assets[tokenId].assetType));
+        uint256 remaining = --_typeCount[wallet][typeHash];
+        if (_tokenByType[wallet][typeHash] == tokenId) {
+            _tokenByType[wallet][typeHash] = remaining > 0 ? _findByType(tokens, typeHash) : 0;
+        }
+    }
+
+    // Another token of the same type the wallet still holds; only runs when the indexed one leaves and a duplicate is left
+    function _findByType(uint256[] storage tokens, bytes32 typeHash) private view returns (uint256) {
+        for (uint256 i = 0; i < tokens.length; i++) {
+            if (keccak256(bytes(assets[tokens[i]].assetType)) == typeHash) {
+                return tokens[i];
             }
         }
         return 0;
     }
-}
\ No newline at end of file
+}
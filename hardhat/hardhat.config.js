@@ -3,9 +3,13 @@ require("dotenv").config();
 
 module.exports = {
   networks: {
+    // `npx hardhat node` exposes this on chain id 31337 for plugin testing
+    localhost: {
+      url: "http://127.0.0.1:8545",
+    },
     xsollaZkSepoliaTestnet: {
       url: "https://zkrpc.xsollazk.com",
-      accounts: [process.env.PRIVATE_KEY],
+      accounts: process.env.PRIVATE_KEY ? [process.env.PRIVATE_KEY] : [],
       chainId: 555272
     },
   },
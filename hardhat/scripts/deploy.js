@@ -7,9 +7,9 @@ async function main() {
 
   const ZKCAsset = await ethers.getContractFactory("ZKCAsset");
   const zkcAsset = await ZKCAsset.deploy(deployer.address);
-  await zkcAsset.deployed();
+  await zkcAsset.waitForDeployment();
 
-  console.log("ZKCAsset deployed to:", zkcAsset.address);
+  console.log("ZKCAsset deployed to:", await zkcAsset.getAddress());
 }
 
 main().catch((error) => {
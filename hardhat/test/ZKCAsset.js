@@ -0,0 +1,383 @@
+const { loadFixture } = require("@nomicfoundation/hardhat-toolbox/network-helpers");
+const { expect } = require("chai");
+const { network } = require("hardhat");
+
+describe("ZKCAsset", function () {
+  async function deployZKCAssetFixture() {
+    const [owner, player, otherPlayer] = await ethers.getSigners();
+
+    const ZKCAsset = await ethers.getContractFactory("ZKCAsset");
+    const zkcAsset = await ZKCAsset.deploy(owner.address);
+
+    return { zkcAsset, owner, player, otherPlayer };
+  }
+
+  describe("Transfer logs", function () {
+    // The plugin's asset log sync reads wallets from topics 1 and 2 of these events
+    it("Should emit Transfer from the zero address on mint", async function () {
+      const { zkcAsset, player } = await loadFixture(deployZKCAssetFixture);
+
+      await expect(zkcAsset.mint(player.address, "rank", "VIP"))
+        .to.emit(zkcAsset, "Transfer")
+        .withArgs(ethers.ZeroAddress, player.address, 1);
+    });
+
+    it("Should emit Transfer to the zero address on burn", async function () {
+      const { zkcAsset, player } = await loadFixture(deployZKCAssetFixture);
+
+      await zkcAsset.mint(player.address, "rank", "VIP");
+
+      await expect(zkcAsset.burn(1))
+        .to.emit(zkcAsset, "Transfer")
+        .withArgs(player.address, ethers.ZeroAddress, 1);
+    });
+
+    it("Should only report touched wallets in a block range", async function () {
+      const { zkcAsset, player, otherPlayer } = await loadFixture(deployZKCAssetFixture);
+
+      const fromBlock = (await ethers.provider.getBlockNumber()) + 1;
+      await zkcAsset.mint(player.address, "rank", "VIP");
+      await zkcAsset.mint(player.address, "item", "DIAMOND_SWORD");
+      const toBlock = await ethers.provider.getBlockNumber();
+      await zkcAsset.mint(otherPlayer.address, "rank", "MVP");
+
+      const logs = await zkcAsset.queryFilter(zkcAsset.filters.Transfer(), fromBlock, toBlock);
+      const wallets = new Set(logs.map((log) => log.args.to));
+
+      expect(logs.length).to.equal(2);
+      expect([...wallets]).to.deep.equal([player.address]);
+    });
+  });
+
+  describe("Wallet assets", function () {
+    it("Should drop burned assets from getWalletAssets", async function () {
+      const { zkcAsset, player } = await loadFixture(deployZKCAssetFixture);
+
+      await zkcAsset.mint(player.address, "rank", "VIP");
+      await zkcAsset.mint(player.address, "item", "DIAMOND_SWORD");
+      await zkcAsset.burn(await zkcAsset.getTokenId(player.address, "rank"));
+
+      const assets = await zkcAsset.getWalletAssets(player.address);
+      expect(assets.length).to.equal(1);
+      expect(assets[0].assetType).to.equal("item");
+    });
+
+    it("Should move assets with the token on transfer", async function () {
+      const { zkcAsset, player, otherPlayer } = await loadFixture(deployZKCAssetFixture);
+
+      await zkcAsset.mint(player.address, "item", "DIAMOND_SWORD");
+      await zkcAsset.connect(player).transferFrom(player.address, otherPlayer.address, 1);
+
+      expect(await zkcAsset.getWalletAssets(player.address)).to.be.empty;
+      expect((await zkcAsset.getWalletAssets(otherPlayer.address))[0].value).to.equal("DIAMOND_SWORD");
+      expect(await zkcAsset.getTokenId(player.address, "item")).to.equal(0);
+      expect(await zkcAsset.getTokenId(otherPlayer.address, "item")).to.equal(1);
+    });
+  });
+
+  describe("Type index", function () {
+    it("Should find each type's token", async function () {
+      const { zkcAsset, player } = await loadFixture(deployZKCAssetFixture);
+
+      await zkcAsset.mint(player.address, "rank", "VIP");
+      await zkcAsset.mint(player.address, "item", "DIAMOND_SWORD");
+
+      expect(await zkcAsset.getTokenId(player.address, "rank")).to.equal(1);
+      expect(await zkcAsset.getTokenId(player.address, "item")).to.equal(2);
+      expect(await zkcAsset.getTokenId(player.address, "pet")).to.equal(0);
+    });
+
+    it("Should forget a burned token and keep the others", async function () {
+      const { zkcAsset, player } = await loadFixture(deployZKCAssetFixture);
+
+      await zkcAsset.mint(player.address, "rank", "VIP");
+      await zkcAsset.mint(player.address, "item", "DIAMOND_SWORD");
+      await zkcAsset.mint(player.address, "pet", "PARROT");
+      await zkcAsset.burn(1);
+
+      expect(await zkcAsset.getTokenId(player.address, "rank")).to.equal(0);
+      expect(await zkcAsset.getTokenId(player.address, "item")).to.equal(2);
+      expect(await zkcAsset.getTokenId(player.address, "pet")).to.equal(3);
+      const types = (await zkcAsset.getWalletAssets(player.address)).map((asset) => asset.assetType);
+      expect(types).to.have.members(["item", "pet"]);
+    });
+
+    it("Should fall back to another token of the same type when one is burned", async function () {
+      const { zkcAsset, player } = await loadFixture(deployZKCAssetFixture);
+
+      await zkcAsset.mint(player.address, "rank", "VIP");
+      await zkcAsset.mint(player.address, "rank", "MVP");
+
+      expect(await zkcAsset.getTokenId(player.address, "rank")).to.equal(1);
+      await zkcAsset.burn(1);
+      expect(await zkcAsset.getTokenId(player.address, "rank")).to.equal(2);
+      await zkcAsset.burn(2);
+      expect(await zkcAsset.getTokenId(player.address, "rank")).to.equal(0);
+    });
+  });
+
+  describe("Batch reads", function () {
+    it("Should return every wallet's assets with per-wallet counts", async function () {
+      const { zkcAsset, player, otherPlayer } = await loadFixture(deployZKCAssetFixture);
+
+      await zkcAsset.mint(player.address, "rank", "VIP");
+      await zkcAsset.mint(otherPlayer.address, "rank", "MVP");
+      await zkcAsset.mint(player.address, "item", "DIAMOND_SWORD");
+
+      const [assets, counts] = await zkcAsset.getAssetsBatch([otherPlayer.address, ethers.ZeroAddress, player.address]);
+
+      expect(counts.map(Number)).to.deep.equal([1, 0, 2]);
+      expect(assets.map((asset) => asset.value)).to.deep.equal(["MVP", "VIP", "DIAMOND_SWORD"]);
+    });
+
+    it("Should handle an empty wallet list", async function () {
+      const { zkcAsset } = await loadFixture(deployZKCAssetFixture);
+
+      const [assets, counts] = await zkcAsset.getAssetsBatch([]);
+
+      expect(assets).to.be.empty;
+      expect(counts).to.be.empty;
+    });
+  });
+
+  describe("Batch mint and burn", function () {
+    it("Should mint every entry in one transaction", async function () {
+      const { zkcAsset, player, otherPlayer } = await loadFixture(deployZKCAssetFixture);
+
+      await zkcAsset.mintBatch([player.address, otherPlayer.address, player.address], ["rank", "rank", "item"], ["VIP", "MVP", "DIAMOND_SWORD"]);
+
+      expect(await zkcAsset.getTokenId(player.address, "rank")).to.equal(1n);
+      expect(await zkcAsset.getTokenId(otherPlayer.address, "rank")).to.equal(2n);
+      expect(await zkcAsset.getTokenId(player.address, "item")).to.equal(3n);
+      expect((await zkcAsset.getWalletAssets(player.address)).map((asset) => asset.value)).to.deep.equal(["VIP", "DIAMOND_SWORD"]);
+    });
+
+    it("Should reject arrays of different lengths", async function () {
+      const { zkcAsset, player } = await loadFixture(deployZKCAssetFixture);
+
+      await expect(zkcAsset.mintBatch([player.address], ["rank", "item"], ["VIP"])).to.be.revertedWith("Array lengths differ");
+    });
+
+    it("Should burn every token in one transaction", async function () {
+      const { zkcAsset, player, otherPlayer } = await loadFixture(deployZKCAssetFixture);
+
+      await zkcAsset.mintBatch([player.address, otherPlayer.address, player.address], ["rank", "rank", "item"], ["VIP", "MVP", "DIAMOND_SWORD"]);
+      await zkcAsset.burnBatch([1, 2]);
+
+      expect(await zkcAsset.getTokenId(player.address, "rank")).to.equal(0n);
+      expect(await zkcAsset.getTokenId(otherPlayer.address, "rank")).to.equal(0n);
+      expect((await zkcAsset.getWalletAssets(player.address)).map((asset) => asset.value)).to.deep.equal(["DIAMOND_SWORD"]);
+    });
+
+    it("Should revert the whole burn batch if a token does not exist", async function () {
+      const { zkcAsset, player } = await loadFixture(deployZKCAssetFixture);
+
+      await zkcAsset.mint(player.address, "rank", "VIP");
+
+      await expect(zkcAsset.burnBatch([1, 7])).to.be.revertedWith("Token does not exist");
+      expect(await zkcAsset.getTokenId(player.address, "rank")).to.equal(1n);
+    });
+
+    it("Should only let the owner mint or burn in batches", async function () {
+      const { zkcAsset, player } = await loadFixture(deployZKCAssetFixture);
+
+      await expect(zkcAsset.connect(player).mintBatch([player.address], ["rank"], ["VIP"])).to.be.reverted;
+      await expect(zkcAsset.connect(player).burnBatch([])).to.be.reverted;
+    });
+
+    it("Should use less gas per mint than separate transactions", async function () {
+      const { zkcAsset } = await loadFixture(deployZKCAssetFixture);
+      // Fresh wallets on both sides, so each mint pays for the same new storage
+      const signers = (await ethers.getSigners()).map((signer) => signer.address);
+      const wallets = signers.slice(0, 10);
+      const batchWallets = signers.slice(10, 20);
+
+      let separateGas = 0n;
+      for (const wallet of wallets) {
+        separateGas += (await (await zkcAsset.mint(wallet, "rank", "VIP")).wait()).gasUsed;
+      }
+      const batchGas = (await (await zkcAsset.mintBatch(batchWallets, batchWallets.map(() => "rank"), batchWallets.map(() => "VIP"))).wait()).gasUsed;
+
+      console.log(`      ${wallets.length} mints: ${separateGas} gas in separate transactions, ${batchGas} batched`);
+      expect(batchGas).to.be.lessThan(separateGas);
+    });
+  });
+
+  describe("Vaults", function () {
+    // Same tree the plugin's VaultMerkle builds: leaves in slot order, pairs hashed sorted, an odd node carried up as is
+    const coder = ethers.AbiCoder.defaultAbiCoder();
+    const leaf = (slot, itemHash) => ethers.keccak256(ethers.keccak256(coder.encode(["uint256", "bytes32"], [slot, itemHash])));
+    const hashPair = (a, b) => ethers.keccak256(ethers.concat(BigInt(a) < BigInt(b) ? [a, b] : [b, a]));
+
+    function merkleLevels(leaves) {
+      const levels = [leaves];
+      while (levels[levels.length - 1].length > 1) {
+        const level = levels[levels.length - 1];
+        const next = [];
+        for (let i = 0; i < level.length; i += 2) {
+          next.push(i + 1 < level.length ? hashPair(level[i], level[i + 1]) : level[i]);
+        }
+        levels.push(next);
+      }
+      return levels;
+    }
+
+    function merkleProof(levels, index) {
+      const proof = [];
+      for (const level of levels.slice(0, -1)) {
+        const sibling = index ^ 1;
+        if (sibling < level.length) proof.push(level[sibling]);
+        index >>= 1;
+      }
+      return proof;
+    }
+
+    // Five slots, so the tree has an odd node, with slot 3 empty
+    const items = ["DIAMOND_SWORD", "ELYTRA", "TOTEM", null, "NETHERITE_INGOT"].map((item) =>
+      item ? ethers.id(item) : ethers.ZeroHash);
+
+    async function committedVaultFixture() {
+      const fixture = await deployZKCAssetFixture();
+      const levels = merkleLevels(items.map((itemHash, slot) => leaf(slot, itemHash)));
+      await fixture.zkcAsset.setVaultRoot(fixture.player.address, levels[levels.length - 1][0]);
+      return { ...fixture, levels };
+    }
+
+    it("Should hash leaves the way the plugin does", async function () {
+      const { zkcAsset } = await loadFixture(deployZKCAssetFixture);
+
+      expect(await zkcAsset.vaultLeaf(7, items[0])).to.equal(leaf(7, items[0]));
+    });
+
+    it("Should verify every slot of a committed vault", async function () {
+      const { zkcAsset, player, levels } = await loadFixture(committedVaultFixture);
+
+      for (let slot = 0; slot < items.length; slot++) {
+        expect(await zkcAsset.verifyVaultSlot(player.address, slot, items[slot], merkleProof(levels, slot))).to.be.true;
+      }
+    });
+
+    it("Should reject a proof for the wrong item, slot or wallet", async function () {
+      const { zkcAsset, player, otherPlayer, levels } = await loadFixture(committedVaultFixture);
+
+      expect(await zkcAsset.verifyVaultSlot(player.address, 0, items[1], merkleProof(levels, 0))).to.be.false;
+      expect(await zkcAsset.verifyVaultSlot(player.address, 1, items[0], merkleProof(levels, 0))).to.be.false;
+      expect(await zkcAsset.verifyVaultSlot(otherPlayer.address, 0, items[0], merkleProof(levels, 0))).to.be.false;
+    });
+
+    it("Should stop verifying the old contents once the root changes", async function () {
+      const { zkcAsset, player, levels } = await loadFixture(committedVaultFixture);
+
+      const updated = [...items];
+      updated[0] = ethers.ZeroHash;
+      const updatedLevels = merkleLevels(updated.map((itemHash, slot) => leaf(slot, itemHash)));
+      await zkcAsset.setVaultRoot(player.address, updatedLevels[updatedLevels.length - 1][0]);
+
+      expect(await zkcAsset.verifyVaultSlot(player.address, 0, items[0], merkleProof(levels, 0))).to.be.false;
+      expect(await zkcAsset.verifyVaultSlot(player.address, 0, ethers.ZeroHash, merkleProof(updatedLevels, 0))).to.be.true;
+    });
+
+    it("Should set many roots in one transaction", async function () {
+      const { zkcAsset, player, otherPlayer } = await loadFixture(deployZKCAssetFixture);
+
+      await zkcAsset.setVaultRoots([player.address, otherPlayer.address], [items[0], items[1]]);
+
+      expect(await zkcAsset.vaultRoots(player.address)).to.equal(items[0]);
+      expect(await zkcAsset.vaultRoots(otherPlayer.address)).to.equal(items[1]);
+      await expect(zkcAsset.setVaultRoots([player.address], [])).to.be.revertedWith("Array lengths differ");
+    });
+
+    it("Should only let the owner set vault roots", async function () {
+      const { zkcAsset, player } = await loadFixture(deployZKCAssetFixture);
+
+      await expect(zkcAsset.connect(player).setVaultRoot(player.address, items[0])).to.be.reverted;
+      await expect(zkcAsset.connect(player).setVaultRoots([player.address], [items[0]])).to.be.reverted;
+    });
+
+    it("Should store a full vault for less gas than minting its items", async function () {
+      const { zkcAsset, player, otherPlayer } = await loadFixture(deployZKCAssetFixture);
+      const slots = Array.from({ length: 54 }, (_, slot) => ethers.id("ITEM" + slot));
+
+      let mintGas = 0n;
+      for (let slot = 0; slot < slots.length; slot++) {
+        mintGas += (await (await zkcAsset.mint(otherPlayer.address, "vault" + slot, slots[slot])).wait()).gasUsed;
+      }
+      const levels = merkleLevels(slots.map((itemHash, slot) => leaf(slot, itemHash)));
+      const rootGas = (await (await zkcAsset.setVaultRoot(player.address, levels[levels.length - 1][0])).wait()).gasUsed;
+
+      console.log(`      ${slots.length} slots: ${mintGas} gas as mints, ${rootGas} as one vault root`);
+      expect(rootGas * 10n).to.be.lessThan(mintGas);
+    });
+  });
+
+  describe("Gas and call counts", function () {
+    // Counts JSON-RPC methods the test sends to the local network while body runs
+    async function countCalls(body) {
+      const provider = network.provider;
+      const request = provider.request;
+      const counts = {};
+      provider.request = function (args) {
+        counts[args.method] = (counts[args.method] || 0) + 1;
+        return request.call(this, args);
+      };
+      try {
+        await body();
+      } finally {
+        provider.request = request;
+      }
+      return counts;
+    }
+
+    it("Should keep getTokenId gas flat as a wallet fills up", async function () {
+      const { zkcAsset, player } = await loadFixture(deployZKCAssetFixture);
+
+      await zkcAsset.mint(player.address, "item", "DIAMOND_SWORD");
+      const gasWithOne = await zkcAsset.getTokenId.estimateGas(player.address, "item");
+      for (let i = 0; i < 20; i++) {
+        await zkcAsset.mint(player.address, "badge" + i, "BADGE");
+      }
+      const gasWithMany = await zkcAsset.getTokenId.estimateGas(player.address, "badge19");
+
+      console.log(`      getTokenId gas: ${gasWithOne} with 1 asset, ${gasWithMany} with 21`);
+      expect(gasWithMany - gasWithOne).to.be.lessThan(1000n);
+    });
+
+    it("Should keep burn gas flat as a wallet fills up", async function () {
+      const { zkcAsset, player, otherPlayer } = await loadFixture(deployZKCAssetFixture);
+
+      await zkcAsset.mint(player.address, "rank", "VIP");
+      const burnWithOne = (await (await zkcAsset.burn(1)).wait()).gasUsed;
+      for (let i = 0; i < 20; i++) {
+        await zkcAsset.mint(otherPlayer.address, "badge" + i, "BADGE");
+      }
+      await zkcAsset.mint(otherPlayer.address, "rank", "VIP");
+      const burnWithMany = (await (await zkcAsset.burn(22)).wait()).gasUsed;
+
+      console.log(`      burn gas: ${burnWithOne} with 1 asset, ${burnWithMany} with 21`);
+      expect(burnWithMany - burnWithOne).to.be.lessThan(5000n);
+    });
+
+    it("Should read many wallets in one eth_call", async function () {
+      const { zkcAsset } = await loadFixture(deployZKCAssetFixture);
+      const wallets = (await ethers.getSigners()).slice(0, 10).map((signer) => signer.address);
+      for (const wallet of wallets) {
+        await zkcAsset.mint(wallet, "rank", "VIP");
+        await zkcAsset.mint(wallet, "item", "DIAMOND_SWORD");
+      }
+
+      const perWallet = await countCalls(async () => {
+        for (const wallet of wallets) await zkcAsset.getWalletAssets(wallet);
+      });
+      let batched;
+      const batchCalls = await countCalls(async () => {
+        batched = await zkcAsset.getAssetsBatch(wallets);
+      });
+      const batchGas = await zkcAsset.getAssetsBatch.estimateGas(wallets);
+
+      console.log(`      ${wallets.length} wallets: ${perWallet.eth_call} eth_calls one by one, ${batchCalls.eth_call} batched (${batchGas} gas)`);
+      expect(perWallet.eth_call).to.equal(wallets.length);
+      expect(batchCalls.eth_call).to.equal(1);
+      expect(batched[0].length).to.equal(2 * wallets.length);
+    });
+  });
+});
@@ -0,0 +1,84 @@
+package com.zkcraft;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.zkcraft.zkcasset.ZKCAsset;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read-through cache of each wallet's full on-chain asset list, so one
+ * getWalletAssets call serves every asset type lookup until it expires.
+ */
+class AssetCache {
+    private final Cache<String, List<ZKCAsset.Asset>> cache;
+
+    AssetCache(long maxWallets, long ttlSeconds) {
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maxWallets)
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+    }
+
+    List<ZKCAsset.Asset> get(String wallet, Callable<List<ZKCAsset.Asset>> loader) throws Exception {
+        try {
+            return cache.get(key(wallet), () -> Collections.unmodifiableList(new ArrayList<>(loader.call())));
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
+    void put(String wallet, List<ZKCAsset.Asset> assets) {
+        cache.put(key(wallet), Collections.unmodifiableList(new ArrayList<>(assets)));
+    }
+
+    // Write-through for a confirmed mint; a wallet that isn't cached is simply loaded on next read
+    void added(String wallet, ZKCAsset.Asset asset) {
+        List<ZKCAsset.Asset> cached = cache.getIfPresent(key(wallet));
+        if (cached == null) return;
+        List<ZKCAsset.Asset> updated = new ArrayList<>(cached);
+        updated.add(asset);
+        put(wallet, updated);
+    }
+
+    // Write-through for a confirmed burn, which removes the first asset of that type like getTokenId
+    void removed(String wallet, String assetType) {
+        List<ZKCAsset.Asset> cached = cache.getIfPresent(key(wallet));
+        if (cached == null) return;
+        List<ZKCAsset.Asset> updated = new ArrayList<>(cached);
+        for (int i = 0; i < updated.size(); i++) {
+            if (updated.get(i).assetType.equals(assetType)) {
+                updated.remove(i);
+                break;
+            }
+        }
+        put(wallet, updated);
+    }
+
+    void invalidate(String wallet) {
+        cache.invalidate(key(wallet));
+    }
+
+    void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    long size() {
+        return cache.size();
+    }
+
+    CacheStats stats() {
+        return cache.stats();
+    }
+
+    private static String key(String wallet) {
+        return wallet.toLowerCase();
+    }
+}
@@ -0,0 +1,155 @@
+package com.zkcraft;
+
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import org.web3j.abi.EventEncoder;
+import org.web3j.abi.TypeReference;
+import org.web3j.abi.datatypes.Address;
+import org.web3j.abi.datatypes.Event;
+import org.web3j.abi.datatypes.generated.Uint256;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.DefaultBlockParameter;
+import org.web3j.protocol.core.methods.request.EthFilter;
+import org.web3j.protocol.core.methods.response.EthBlock;
+import org.web3j.protocol.core.methods.response.EthLog;
+import org.web3j.protocol.core.methods.response.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Incremental sync over ZKCAsset Transfer logs. Each call scans the blocks
+ * between the persisted checkpoint and the confirmed head in bounded ranges
+ * and reports only the wallets that were minted to or burned from. After
+ * downtime the backlog is worked off a few ranges per call rather than all
+ * at once.
+ */
+class AssetLogSync {
+    static final Event TRANSFER_EVENT = new Event("Transfer", Arrays.<TypeReference<?>>asList(
+            new TypeReference<Address>(true) {},
+            new TypeReference<Address>(true) {},
+            new TypeReference<Uint256>(true) {}));
+    static final String TRANSFER_TOPIC = EventEncoder.encode(TRANSFER_EVENT);
+    private static final String ZERO_ADDRESS = "0x0000000000000000000000000000000000000000";
+
+    private final Web3j web3j;
+    private final String contractAddress;
+    private final File checkpointFile;
+    private final int confirmations;
+    private final int maxBlockRange;
+    private final int maxRangesPerPoll;
+    private final Logger logger;
+    private final AtomicLong requestsSent = new AtomicLong();
+    private long lastBlock = -1;
+    private String lastBlockHash;
+
+    AssetLogSync(Web3j web3j, String contractAddress, File checkpointFile, int confirmations, int maxBlockRange,
+                 int maxRangesPerPoll, Logger logger) {
+        this.web3j = web3j;
+        this.contractAddress = contractAddress;
+        this.checkpointFile = checkpointFile;
+        this.confirmations = Math.max(0, confirmations);
+        this.maxBlockRange = Math.max(1, maxBlockRange);
+        this.maxRangesPerPoll = Math.max(1, maxRangesPerPoll);
+        this.logger = logger;
+        loadCheckpoint();
+    }
+
+    /**
+     * Scans new confirmed blocks and returns the lower-case addresses that
+     * appeared in Transfer logs, or null when there was no checkpoint yet and
+     * the caller has to do a full resync of every wallet once. Scans at most
+     * maxRangesPerPoll ranges and saves the checkpoint once, after the last
+     * of them, so a failed range leaves it where the returned wallets begin.
+     */
+    Set<String> poll() throws IOException {
+        requestsSent.incrementAndGet();
+        long safeHead = web3j.ethBlockNumber().send().getBlockNumber().longValue() - confirmations;
+        if (safeHead < 0) return new HashSet<>();
+        if (lastBlock < 0) {
+            saveCheckpoint(safeHead, blockHash(safeHead));
+            logger.info("Asset log sync starting from block " + safeHead);
+            return null;
+        }
+        detectReorg();
+        Set<String> touched = new HashSet<>();
+        long scannedTo = lastBlock;
+        for (int ranges = 0; ranges < maxRangesPerPoll && scannedTo < safeHead; ranges++) {
+            long from = scannedTo + 1;
+            long to = Math.min(safeHead, from + maxBlockRange - 1);
+            EthFilter filter = new EthFilter(
+                    DefaultBlockParameter.valueOf(BigInteger.valueOf(from)),
+                    DefaultBlockParameter.valueOf(BigInteger.valueOf(to)),
+                    contractAddress);
+            filter.addSingleTopic(TRANSFER_TOPIC);
+            requestsSent.incrementAndGet();
+            EthLog response = web3j.ethGetLogs(filter).send();
+            if (response.hasError()) {
+                throw new IOException("eth_getLogs " + from + "-" + to + " failed: " + response.getError().getMessage());
+            }
+            for (EthLog.LogResult<?> result : response.getLogs()) {
+                Log log = (Log) result.get();
+                if (log.isRemoved() || log.getTopics().size() < 3) continue;
+                addWallet(touched, log.getTopics().get(1));
+                addWallet(touched, log.getTopics().get(2));
+            }
+            scannedTo = to;
+        }
+        if (scannedTo > lastBlock) saveCheckpoint(scannedTo, blockHash(scannedTo));
+        if (scannedTo < safeHead) logger.fine("Asset log sync is " + (safeHead - scannedTo) + " blocks behind, continuing next poll");
+        return touched;
+    }
+
+    // If the checkpoint block was replaced, rewind by the confirmation depth and rescan
+    private void detectReorg() throws IOException {
+        if (lastBlockHash == null) return;
+        String currentHash = blockHash(lastBlock);
+        if (currentHash != null && !currentHash.equalsIgnoreCase(lastBlockHash)) {
+            long rewindTo = Math.max(0, lastBlock - Math.max(1, confirmations));
+            logger.warning("Chain reorg detected at block " + lastBlock + ", rescanning from block " + (rewindTo + 1));
+            saveCheckpoint(rewindTo, blockHash(rewindTo));
+        }
+    }
+
+    // Every RPC request poll has sent, failed ones included, so the poller can charge its budget for them
+    long requestsSent() {
+        return requestsSent.get();
+    }
+
+    private String blockHash(long blockNumber) throws IOException {
+        requestsSent.incrementAndGet();
+        EthBlock.Block block = web3j.ethGetBlockByNumber(DefaultBlockParameter.valueOf(BigInteger.valueOf(blockNumber)), false)
+                .send().getBlock();
+        return block != null ? block.getHash() : null;
+    }
+
+    private static void addWallet(Set<String> touched, String topic) {
+        String address = "0x" + topic.substring(topic.length() - 40).toLowerCase();
+        if (!address.equals(ZERO_ADDRESS)) touched.add(address);
+    }
+
+    private void loadCheckpoint() {
+        if (!checkpointFile.exists()) return;
+        YamlConfiguration data = YamlConfiguration.loadConfiguration(checkpointFile);
+        // A checkpoint for another contract deployment is useless, start over
+        if (!contractAddress.equalsIgnoreCase(data.getString("contract", ""))) return;
+        lastBlock = data.getLong("last-block", -1);
+        lastBlockHash = data.getString("last-block-hash");
+    }
+
+    private void saveCheckpoint(long block, String hash) throws IOException {
+        lastBlock = block;
+        lastBlockHash = hash;
+        YamlConfiguration data = new YamlConfiguration();
+        data.set("contract", contractAddress);
+        data.set("last-block", block);
+        data.set("last-block-hash", hash);
+        data.save(checkpointFile);
+    }
+}
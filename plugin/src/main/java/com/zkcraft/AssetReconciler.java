@@ -0,0 +1,129 @@
+package com.zkcraft;
+
+import com.zkcraft.zkcasset.ZKCAsset;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * Compares freshly read wallet assets with the state last applied to each
+ * online wallet and queues only the differences. The queue is drained on
+ * the main thread a few changes per tick, so a poll that touches many
+ * wallets never stalls a tick, and an unchanged wallet costs nothing.
+ */
+class AssetReconciler {
+    static final class Change {
+        final String wallet;
+        final WalletAssetChangeEvent.Kind kind;
+        final String oldValue;
+        final String newValue;
+        final boolean initial; // first state seen for the wallet since its player came online
+
+        Change(String wallet, WalletAssetChangeEvent.Kind kind, String oldValue, String newValue, boolean initial) {
+            this.wallet = wallet;
+            this.kind = kind;
+            this.oldValue = oldValue;
+            this.newValue = newValue;
+            this.initial = initial;
+        }
+    }
+
+    private static final class AppliedState {
+        final String rank;
+        final String item;
+        final long recordedAt;
+
+        AppliedState(String rank, String item, long recordedAt) {
+            this.rank = rank;
+            this.item = item;
+            this.recordedAt = recordedAt;
+        }
+    }
+
+    private final Map<String, AppliedState> applied = new ConcurrentHashMap<>(); // lowercase wallet -> last applied state
+    private final Queue<Change> pending = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Diffs a wallet's assets, read at readStartedAt, against its last
+     * applied state and queues a change per difference. A read that started
+     * before a command recorded its own change is stale and ignored.
+     */
+    void reconcile(String wallet, List<ZKCAsset.Asset> assets, long readStartedAt) {
+        String rank = valueOf(assets, "rank");
+        String item = valueOf(assets, "item");
+        applied.compute(wallet.toLowerCase(), (key, last) -> {
+            if (last != null && last.recordedAt > readStartedAt) return last;
+            boolean initial = last == null;
+            String lastRank = initial ? null : last.rank;
+            String lastItem = initial ? null : last.item;
+            if (!Objects.equals(lastRank, rank)) {
+                if (lastRank == null) {
+                    pending.add(new Change(wallet, WalletAssetChangeEvent.Kind.RANK_GRANTED, null, rank, initial));
+                } else if (rank == null) {
+                    pending.add(new Change(wallet, WalletAssetChangeEvent.Kind.RANK_REVOKED, lastRank, null, initial));
+                } else {
+                    pending.add(new Change(wallet, WalletAssetChangeEvent.Kind.RANK_CHANGED, lastRank, rank, initial));
+                }
+            }
+            if (!Objects.equals(lastItem, item)) {
+                if (item != null) {
+                    pending.add(new Change(wallet, WalletAssetChangeEvent.Kind.ITEM_STORED, lastItem, item, initial));
+                } else {
+                    pending.add(new Change(wallet, WalletAssetChangeEvent.Kind.ITEM_REMOVED, lastItem, null, initial));
+                }
+            }
+            return new AppliedState(rank, item, readStartedAt);
+        });
+    }
+
+    // Records a change a command already applied itself, so reconciliation doesn't apply it again
+    void recordApplied(String wallet, String assetType, String value) {
+        long now = System.currentTimeMillis();
+        applied.compute(wallet.toLowerCase(), (key, last) -> {
+            String rank = last != null ? last.rank : null;
+            String item = last != null ? last.item : null;
+            if (assetType.equals("rank")) rank = value; else if (assetType.equals("item")) item = value;
+            return new AppliedState(rank, item, now);
+        });
+    }
+
+    // The value last applied for a wallet, or null if none is known
+    String appliedValue(String wallet, String assetType) {
+        AppliedState state = applied.get(wallet.toLowerCase());
+        if (state == null) return null;
+        return assetType.equals("rank") ? state.rank : assetType.equals("item") ? state.item : null;
+    }
+
+    void forget(String wallet) {
+        applied.remove(wallet.toLowerCase());
+    }
+
+    // Hands at most max queued changes to apply, on the calling thread
+    void drain(int max, Consumer<Change> apply) {
+        for (int i = 0; i < max; i++) {
+            Change change = pending.poll();
+            if (change == null) return;
+            apply.accept(change);
+        }
+    }
+
+    boolean hasPending() {
+        return !pending.isEmpty();
+    }
+
+    int queueDepth() {
+        return pending.size();
+    }
+
+    private static String valueOf(List<ZKCAsset.Asset> assets, String assetType) {
+        for (ZKCAsset.Asset asset : assets) {
+            if (asset.assetType.equals(assetType)) return asset.value;
+        }
+        return null;
+    }
+}
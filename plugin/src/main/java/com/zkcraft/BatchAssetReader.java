@@ -0,0 +1,271 @@
+package com.zkcraft;
+
+import com.zkcraft.zkcasset.ZKCAsset;
+
+import org.web3j.abi.FunctionEncoder;
+import org.web3j.abi.FunctionReturnDecoder;
+import org.web3j.abi.TypeReference;
+import org.web3j.abi.Utils;
+import org.web3j.abi.datatypes.Address;
+import org.web3j.abi.datatypes.DynamicArray;
+import org.web3j.abi.datatypes.Function;
+import org.web3j.abi.datatypes.Type;
+import org.web3j.abi.datatypes.Utf8String;
+import org.web3j.abi.datatypes.generated.Uint256;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.BatchResponse;
+import org.web3j.protocol.core.DefaultBlockParameterName;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.core.methods.request.Transaction;
+import org.web3j.protocol.core.methods.response.EthCall;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Logger;
+
+/**
+ * Reads ZKCAsset wallet contents for many wallets at once. Each chunk of
+ * wallets is a single getAssetsBatch eth_call; against a contract deployed
+ * before that function existed it falls back to packing one getWalletAssets
+ * eth_call per wallet into a JSON-RPC batch request.
+ */
+class BatchAssetReader {
+    private static final List<TypeReference<?>> WALLET_ASSETS_OUTPUT =
+            Arrays.<TypeReference<?>>asList(new TypeReference<DynamicArray<ZKCAsset.Asset>>() {});
+    private static final List<TypeReference<?>> ASSETS_BATCH_OUTPUT =
+            Arrays.<TypeReference<?>>asList(new TypeReference<DynamicArray<ZKCAsset.Asset>>() {},
+                    new TypeReference<DynamicArray<Uint256>>() {});
+    private static final List<TypeReference<?>> TOKEN_ID_OUTPUT =
+            Arrays.<TypeReference<?>>asList(new TypeReference<Uint256>() {});
+
+    private final Web3j web3j;
+    private final String contractAddress;
+    private final int batchSize;
+    private final int maxConcurrentBatches;
+    private final Metrics metrics;
+    private final Logger logger;
+    // null until the first getAssetsBatch call answers, false once the contract turned out not to have it
+    private volatile Boolean assetsBatchSupported;
+
+    BatchAssetReader(Web3j web3j, String contractAddress, int batchSize, int maxConcurrentBatches, Metrics metrics, Logger logger) {
+        this.web3j = web3j;
+        this.contractAddress = contractAddress;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxConcurrentBatches = Math.max(1, maxConcurrentBatches);
+        this.metrics = metrics;
+        this.logger = logger;
+    }
+
+    /**
+     * Fetches the asset list of every wallet. Wallets whose call failed are
+     * left out of the result so callers can fall back for just those.
+     */
+    Map<String, List<ZKCAsset.Asset>> readWalletAssets(Collection<String> wallets) {
+        List<String> pending = new ArrayList<>(wallets);
+        Map<String, List<ZKCAsset.Asset>> result = new HashMap<>(pending.size() * 2);
+        // Send up to maxConcurrentBatches batches at a time so cycle time stays flat as wallets grow
+        int windowSize = batchSize * maxConcurrentBatches;
+        for (int windowStart = 0; windowStart < pending.size(); windowStart += windowSize) {
+            int windowEnd = Math.min(windowStart + windowSize, pending.size());
+            List<CompletableFuture<Void>> inFlight = new ArrayList<>();
+            for (int start = windowStart; start < windowEnd; start += batchSize) {
+                List<String> chunk = pending.subList(start, Math.min(start + batchSize, windowEnd));
+                inFlight.add(readChunk(chunk, result));
+            }
+            for (CompletableFuture<Void> future : inFlight) {
+                try {
+                    future.join();
+                } catch (Exception e) {
+                    logger.warning("Batched asset read failed: " + e.getMessage());
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Looks up the token id of assetType for every wallet, one getTokenId
+     * eth_call each in a single JSON-RPC batch. Wallets without such a token
+     * map to zero; the call fails if any lookup did.
+     */
+    Map<String, BigInteger> readTokenIds(Collection<String> wallets, String assetType) throws IOException {
+        BatchRequest batch = web3j.newBatch();
+        Map<Long, String> walletsById = new HashMap<>();
+        for (String wallet : wallets) {
+            Request<?, EthCall> call = web3j.ethCall(
+                    Transaction.createEthCallTransaction(null, contractAddress, encodeGetTokenId(wallet, assetType)),
+                    DefaultBlockParameterName.LATEST);
+            walletsById.put(call.getId(), wallet);
+            batch.add(call);
+        }
+        BatchResponse response;
+        try {
+            response = metrics.time(Metrics.ContractCall.GET_TOKEN_ID, batch::send);
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+        Map<String, BigInteger> result = new HashMap<>(walletsById.size() * 2);
+        for (Response<?> raw : response.getResponses()) {
+            String wallet = walletsById.get(raw.getId());
+            if (wallet == null || !(raw instanceof EthCall)) continue;
+            EthCall call = (EthCall) raw;
+            if (call.hasError() || call.isReverted()) {
+                throw new IOException("getTokenId failed for " + wallet + ": "
+                        + (call.hasError() ? call.getError().getMessage() : call.getRevertReason()));
+            }
+            List<Type> outputs = FunctionReturnDecoder.decode(call.getValue(), Utils.convert(TOKEN_ID_OUTPUT));
+            result.put(wallet, outputs.isEmpty() ? BigInteger.ZERO : (BigInteger) outputs.get(0).getValue());
+        }
+        if (result.size() < walletsById.size()) {
+            throw new IOException("getTokenId answered for " + result.size() + " of " + walletsById.size() + " wallets");
+        }
+        return result;
+    }
+
+    private CompletableFuture<Void> readChunk(List<String> chunk, Map<String, List<ZKCAsset.Asset>> result) {
+        if (Boolean.FALSE.equals(assetsBatchSupported)) return sendBatch(chunk, result);
+        Request<?, EthCall> call = web3j.ethCall(
+                Transaction.createEthCallTransaction(null, contractAddress, encodeGetAssetsBatch(chunk)),
+                DefaultBlockParameterName.LATEST);
+        return metrics.timeAsync(Metrics.ContractCall.GET_WALLET_ASSETS_BATCH, call::sendAsync)
+                .thenCompose(response -> {
+                    if (!response.hasError() && !unsupported(response)) {
+                        Map<String, List<ZKCAsset.Asset>> assets;
+                        try {
+                            assets = decodeAssetsBatch(chunk, response.getValue());
+                        } catch (RuntimeException e) {
+                            // An answer that doesn't decode only costs this chunk its batch call, like a failed one
+                            logger.warning("Failed to decode getAssetsBatch for " + chunk.size() + " wallets, retrying per wallet: " + e.getMessage());
+                            return sendBatch(chunk, result);
+                        }
+                        assetsBatchSupported = true;
+                        synchronized (result) {
+                            result.putAll(assets);
+                        }
+                        return CompletableFuture.completedFuture(null);
+                    }
+                    String reason = response.hasError() ? response.getError().getMessage()
+                            : response.isReverted() ? response.getRevertReason() : "empty result";
+                    if (assetsBatchSupported == null && unsupported(response)) {
+                        // The contract predates getAssetsBatch, so stop asking for it
+                        assetsBatchSupported = false;
+                        logger.info("Contract has no usable getAssetsBatch (" + reason + "), reading wallets one call each");
+                    } else {
+                        // A rate limit or node hiccup only costs this chunk its batch call
+                        logger.fine("getAssetsBatch failed for " + chunk.size() + " wallets, retrying per wallet: " + reason);
+                    }
+                    return sendBatch(chunk, result);
+                });
+    }
+
+    /**
+     * Whether the answer says the contract has no getAssetsBatch: a revert,
+     * which is what calling a missing function without a fallback does, or
+     * an empty result, which is what an address without code returns. Other
+     * JSON-RPC errors, such as rate limits, say nothing about the contract.
+     * EthCall.isReverted can't tell them apart, it is true for any error.
+     */
+    private static boolean unsupported(EthCall response) {
+        if (response.hasError()) {
+            Response.Error error = response.getError();
+            String message = error.getMessage() != null ? error.getMessage().toLowerCase() : "";
+            // Code 3 is geth's execution reverted; other nodes only say so in the message
+            return error.getCode() == 3 || message.contains("revert") || message.contains("function selector");
+        }
+        return response.getValue() == null || response.getValue().equals("0x") || response.isReverted();
+    }
+
+    private CompletableFuture<Void> sendBatch(List<String> chunk, Map<String, List<ZKCAsset.Asset>> result) {
+        BatchRequest batch = web3j.newBatch();
+        Map<Long, String> walletsById = new HashMap<>();
+        for (String wallet : chunk) {
+            Request<?, EthCall> call = web3j.ethCall(
+                    Transaction.createEthCallTransaction(null, contractAddress, encodeGetWalletAssets(wallet)),
+                    DefaultBlockParameterName.LATEST);
+            walletsById.put(call.getId(), wallet);
+            batch.add(call);
+        }
+        return metrics.timeAsync(Metrics.ContractCall.GET_WALLET_ASSETS_BATCH, batch::sendAsync)
+                .thenAccept(response -> collect(response, walletsById, result));
+    }
+
+    private void collect(BatchResponse response, Map<Long, String> walletsById, Map<String, List<ZKCAsset.Asset>> result) {
+        for (Response<?> raw : response.getResponses()) {
+            String wallet = walletsById.get(raw.getId());
+            if (wallet == null || !(raw instanceof EthCall)) continue;
+            EthCall call = (EthCall) raw;
+            if (call.hasError() || call.isReverted()) {
+                logger.fine("getWalletAssets failed for " + wallet + ": "
+                        + (call.hasError() ? call.getError().getMessage() : call.getRevertReason()));
+                continue;
+            }
+            List<ZKCAsset.Asset> assets = decodeWalletAssets(call.getValue());
+            synchronized (result) {
+                result.put(wallet, assets);
+            }
+        }
+    }
+
+    static String encodeGetAssetsBatch(List<String> wallets) {
+        return FunctionEncoder.encode(new Function(
+                ZKCAsset.FUNC_GETASSETSBATCH,
+                Arrays.<Type>asList(new DynamicArray<>(Address.class, Utils.typeMap(wallets, Address.class))),
+                ASSETS_BATCH_OUTPUT));
+    }
+
+    /**
+     * Splits the flat getAssetsBatch result back into one list per wallet,
+     * counts[i] of the assets belonging to wallets[i].
+     */
+    @SuppressWarnings("unchecked")
+    static Map<String, List<ZKCAsset.Asset>> decodeAssetsBatch(List<String> wallets, String encoded) {
+        List<Type> outputs = FunctionReturnDecoder.decode(encoded, Utils.convert(ASSETS_BATCH_OUTPUT));
+        if (outputs.size() < 2) throw new IllegalStateException("Empty getAssetsBatch result");
+        List<ZKCAsset.Asset> assets = ((DynamicArray<ZKCAsset.Asset>) outputs.get(0)).getValue();
+        List<Uint256> counts = ((DynamicArray<Uint256>) outputs.get(1)).getValue();
+        if (counts.size() != wallets.size()) {
+            throw new IllegalStateException("getAssetsBatch returned " + counts.size() + " counts for " + wallets.size() + " wallets");
+        }
+        Map<String, List<ZKCAsset.Asset>> result = new HashMap<>(wallets.size() * 2);
+        int next = 0;
+        for (int i = 0; i < wallets.size(); i++) {
+            int count = counts.get(i).getValue().intValueExact();
+            if (next + count > assets.size()) throw new IllegalStateException("getAssetsBatch counts exceed its assets");
+            result.put(wallets.get(i), new ArrayList<>(assets.subList(next, next + count)));
+            next += count;
+        }
+        return result;
+    }
+
+    static String encodeGetTokenId(String wallet, String assetType) {
+        return FunctionEncoder.encode(new Function(
+                ZKCAsset.FUNC_GETTOKENID,
+                Arrays.<Type>asList(new Address(160, wallet), new Utf8String(assetType)),
+                TOKEN_ID_OUTPUT));
+    }
+
+    static String encodeGetWalletAssets(String wallet) {
+        return FunctionEncoder.encode(new Function(
+                ZKCAsset.FUNC_GETWALLETASSETS,
+                Arrays.<Type>asList(new Address(160, wallet)),
+                WALLET_ASSETS_OUTPUT));
+    }
+
+    @SuppressWarnings("unchecked")
+    static List<ZKCAsset.Asset> decodeWalletAssets(String encoded) {
+        List<Type> outputs = FunctionReturnDecoder.decode(encoded, Utils.convert(WALLET_ASSETS_OUTPUT));
+        if (outputs.isEmpty()) return new ArrayList<>();
+        return new ArrayList<>(((DynamicArray<ZKCAsset.Asset>) outputs.get(0)).getValue());
+    }
+}
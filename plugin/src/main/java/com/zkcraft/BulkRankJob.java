@@ -0,0 +1,329 @@
+package com.zkcraft;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.zkcraft.zkcasset.ZKCAsset;
+
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * Assigns or removes one rank for many wallets, chunk by chunk on its own
+ * thread, with a burnBatch and a mintBatch transaction per chunk instead of
+ * one transaction per wallet. Every attempt re-reads the chunk's wallets
+ * first, so a retry only redoes what did not land. A chunk that still fails
+ * after its retries is recorded in the YAML fallback ranks. Progress goes to
+ * the admin who started the job and the summary is written to bulk/.
+ */
+class BulkRankJob implements Runnable {
+    private static final Pattern ADDRESS = Pattern.compile("0x[0-9a-fA-F]{40}");
+
+    /** The plugin side of a job. */
+    interface Host {
+        boolean available();
+
+        // Wallet of a player given by name or UUID, null if they have none; called off the main thread
+        String wallet(String player);
+
+        // Records the rank (null to remove it) in the YAML fallback for a chunk that could not be sent
+        void fallback(String wallet, String rank);
+
+        // A wallet's rank changed on chain; called on the job thread
+        void changed(Entry entry, String oldRank, String newRank);
+
+        void progress(String message);
+    }
+
+    /** One line of the job: a player name, UUID or wallet address and the rank it should get. */
+    static final class Entry {
+        final String target;
+        final String rank;
+        String wallet;
+        // Rank held when the job first read the wallet, kept across retries
+        String previousRank;
+        boolean observed;
+
+        Entry(String target, String rank) {
+            this.target = target;
+            this.rank = rank;
+        }
+    }
+
+    private final boolean assign;
+    private final String description;
+    private final List<Entry> entries;
+    private final BatchAssetReader reader;
+    private final TransactionPipeline pipeline;
+    private final Host host;
+    private final int chunkSize;
+    private final int maxRetries;
+    private final long retryDelayMillis;
+    private final long progressIntervalMillis;
+    private final File resultsFolder;
+    private final Logger logger;
+    private volatile boolean running = true;
+    private volatile Thread thread;
+
+    private final List<String> unresolved = new ArrayList<>();
+    private final Map<String, String> fallbackRanks = new LinkedHashMap<>();
+    private final List<String> failedChunks = new ArrayList<>();
+    // Written by the job thread only, volatile so /zkc rank bulkstatus sees current values
+    private volatile int processed, total, minted, reranked, removed, unchanged, retries, fallbacks;
+    private long lastProgressAt;
+
+    BulkRankJob(boolean assign, String description, List<Entry> entries, BatchAssetReader reader, TransactionPipeline pipeline,
+                Host host, int chunkSize, int maxRetries, long retryDelayMillis, long progressIntervalMillis,
+                File resultsFolder, Logger logger) {
+        this.assign = assign;
+        this.description = description;
+        this.entries = entries;
+        this.reader = reader;
+        this.pipeline = pipeline;
+        this.host = host;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.maxRetries = Math.max(0, maxRetries);
+        this.retryDelayMillis = Math.max(0, retryDelayMillis);
+        this.progressIntervalMillis = progressIntervalMillis;
+        this.resultsFolder = resultsFolder;
+        this.logger = logger;
+    }
+
+    /**
+     * Reads "target [rank]" lines, where target is a player name, UUID or
+     * wallet address. A line without a rank gets defaultRank; blank lines
+     * and lines starting with # are skipped.
+     */
+    static List<Entry> readFile(File file, String defaultRank) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        int lineNumber = 0;
+        for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            String[] parts = line.split("\\s+");
+            if (parts.length > 2) throw new IOException(file.getName() + " line " + lineNumber + ": expected <player> [rank]");
+            entries.add(new Entry(parts[0], parts.length == 2 ? parts[1] : defaultRank));
+        }
+        return entries;
+    }
+
+    void start() {
+        thread = new ThreadFactoryBuilder().setNameFormat("ZKCraftTrade-Bulk").setDaemon(true).build().newThread(this);
+        thread.start();
+    }
+
+    boolean isRunning() {
+        return running;
+    }
+
+    // Stops after the chunk in flight; wallets not reached yet are left as they are
+    void cancel() {
+        running = false;
+        Thread current = thread;
+        if (current != null) current.interrupt();
+    }
+
+    String progressLine() {
+        int done = processed;
+        int all = total;
+        return description + ": " + done + "/" + all + " wallets (" + (all == 0 ? 100 : done * 100 / all) + "%), "
+                + minted + " minted, " + reranked + " re-ranked, " + removed + " removed, " + unchanged + " unchanged, "
+                + retries + " retries, " + fallbacks + " in YAML fallback";
+    }
+
+    @Override
+    public void run() {
+        long startedAt = System.currentTimeMillis();
+        try {
+            List<Entry> resolved = resolve();
+            total = resolved.size();
+            host.progress(description + ": " + total + " wallets in chunks of " + chunkSize
+                    + (unresolved.isEmpty() ? "" : ", skipped " + unresolved.size() + " without a wallet"));
+            lastProgressAt = System.currentTimeMillis();
+            for (int start = 0; start < resolved.size() && running; start += chunkSize) {
+                List<Entry> chunk = resolved.subList(start, Math.min(start + chunkSize, resolved.size()));
+                processChunk(start / chunkSize + 1, chunk);
+                processed += chunk.size();
+                if (System.currentTimeMillis() - lastProgressAt >= progressIntervalMillis) {
+                    lastProgressAt = System.currentTimeMillis();
+                    host.progress(progressLine());
+                }
+            }
+        } catch (Exception e) {
+            logger.warning(description + " failed: " + e.getMessage());
+            failedChunks.add("job: " + e.getMessage());
+        } finally {
+            boolean cancelled = !running;
+            running = false;
+            host.progress((cancelled ? "Cancelled: " : "Done: ") + progressLine());
+            if (!failedChunks.isEmpty()) {
+                host.progress(failedChunks.size() + " chunks failed: " + String.join("; ", failedChunks));
+            }
+            writeSummary(startedAt, cancelled);
+        }
+    }
+
+    // Finds every target's wallet; later lines for the same wallet replace earlier ones
+    private List<Entry> resolve() {
+        Map<String, Entry> byWallet = new LinkedHashMap<>();
+        for (Entry entry : entries) {
+            if (!running) break;
+            if (assign && entry.rank == null) {
+                unresolved.add(entry.target + " (no rank)");
+                continue;
+            }
+            String wallet = ADDRESS.matcher(entry.target).matches() ? entry.target : host.wallet(entry.target);
+            if (wallet == null) {
+                unresolved.add(entry.target);
+                continue;
+            }
+            entry.wallet = wallet;
+            byWallet.put(wallet.toLowerCase(), entry);
+        }
+        return new ArrayList<>(byWallet.values());
+    }
+
+    private void processChunk(int number, List<Entry> chunk) {
+        String lastError = null;
+        for (int attempt = 0; attempt <= maxRetries && running; attempt++) {
+            if (attempt > 0) {
+                retries++;
+                try {
+                    Thread.sleep(retryDelayMillis << Math.min(attempt - 1, 10));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            try {
+                if (!host.available()) throw new IOException("blockchain unavailable");
+                sendChunk(chunk);
+                return;
+            } catch (Exception e) {
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                lastError = cause.getMessage();
+                logger.warning(description + ": chunk " + number + " attempt " + (attempt + 1) + " failed: " + lastError);
+            }
+        }
+        if (!running) return;
+        failedChunks.add("chunk " + number + ": " + lastError);
+        for (Entry entry : chunk) {
+            String rank = assign ? entry.rank : null;
+            host.fallback(entry.wallet, rank);
+            fallbackRanks.put(entry.wallet, rank != null ? rank : "");
+        }
+        fallbacks = fallbackRanks.size();
+    }
+
+    private void sendChunk(List<Entry> chunk) throws Exception {
+        List<String> wallets = new ArrayList<>(chunk.size());
+        for (Entry entry : chunk) wallets.add(entry.wallet);
+        Map<String, List<ZKCAsset.Asset>> current = reader.readWalletAssets(wallets);
+        if (current.size() < wallets.size()) {
+            throw new IOException("could not read " + (wallets.size() - current.size()) + " of " + wallets.size() + " wallets");
+        }
+        List<Entry> burns = new ArrayList<>();
+        List<Entry> mints = new ArrayList<>();
+        int unchangedInChunk = 0;
+        for (Entry entry : chunk) {
+            String held = rankOf(current.get(entry.wallet));
+            if (!entry.observed) {
+                entry.previousRank = held;
+                entry.observed = true;
+            }
+            if (assign) {
+                if (entry.rank.equals(held)) {
+                    unchangedInChunk++;
+                    continue;
+                }
+                if (held != null) burns.add(entry);
+                mints.add(entry);
+            } else if (held != null && (entry.rank == null || entry.rank.equals(held))) {
+                burns.add(entry);
+            } else {
+                unchangedInChunk++;
+            }
+        }
+        if (!burns.isEmpty()) {
+            List<String> burnWallets = new ArrayList<>(burns.size());
+            for (Entry entry : burns) burnWallets.add(entry.wallet);
+            List<BigInteger> tokenIds = new ArrayList<>(burns.size());
+            for (BigInteger tokenId : reader.readTokenIds(burnWallets, "rank").values()) {
+                if (tokenId.signum() != 0) tokenIds.add(tokenId);
+            }
+            if (!tokenIds.isEmpty()) pipeline.submit(ZKCAsset.FUNC_BURNBATCH, ZKCAssetCalls.burnBatch(tokenIds)).join();
+        }
+        if (!mints.isEmpty()) {
+            List<String> mintWallets = new ArrayList<>(mints.size());
+            List<String> types = new ArrayList<>(mints.size());
+            List<String> values = new ArrayList<>(mints.size());
+            for (Entry entry : mints) {
+                mintWallets.add(entry.wallet);
+                types.add("rank");
+                values.add(entry.rank);
+            }
+            pipeline.submit(ZKCAsset.FUNC_MINTBATCH, ZKCAssetCalls.mintBatch(mintWallets, types, values)).join();
+        }
+        unchanged += unchangedInChunk;
+        for (Entry entry : assign ? mints : burns) {
+            if (!assign) {
+                removed++;
+            } else if (entry.previousRank != null) {
+                reranked++;
+            } else {
+                minted++;
+            }
+            host.changed(entry, entry.previousRank, assign ? entry.rank : null);
+        }
+    }
+
+    private static String rankOf(List<ZKCAsset.Asset> assets) {
+        for (ZKCAsset.Asset asset : assets) {
+            if (asset.assetType.equals("rank")) return asset.value;
+        }
+        return null;
+    }
+
+    private void writeSummary(long startedAt, boolean cancelled) {
+        SimpleDateFormat timestamp = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
+        YamlConfiguration summary = new YamlConfiguration();
+        summary.set("job", description);
+        summary.set("started", timestamp.format(new Date(startedAt)));
+        summary.set("finished", timestamp.format(new Date()));
+        summary.set("cancelled", cancelled);
+        summary.set("wallets", total);
+        summary.set("processed", processed);
+        summary.set("minted", minted);
+        summary.set("re-ranked", reranked);
+        summary.set("removed", removed);
+        summary.set("unchanged", unchanged);
+        summary.set("retries", retries);
+        summary.set("failed-chunks", failedChunks);
+        summary.set("unresolved", unresolved);
+        // Wallets whose rank only made it into the YAML fallback; an empty value means the rank was removed there
+        for (Map.Entry<String, String> fallback : fallbackRanks.entrySet()) {
+            summary.set("yaml-fallback." + fallback.getKey(), fallback.getValue());
+        }
+        File file = new File(resultsFolder, "results-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date(startedAt)) + ".yml");
+        try {
+            if (!resultsFolder.exists()) resultsFolder.mkdirs();
+            summary.save(file);
+            host.progress("Summary written to " + resultsFolder.getName() + "/" + file.getName());
+        } catch (IOException e) {
+            logger.warning("Failed to write the " + description + " summary: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,420 @@
+package com.zkcraft;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.zkcraft.zkcasset.ZKCAsset;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigInteger;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Mints and burns that could not be sent, because the chain was unavailable
+ * or the transaction failed, waiting to be pushed to the chain. Each intent
+ * is appended to outbox.log and fsync'd before enqueue returns. Intents for
+ * the same wallet and asset type collapse into the state the server last
+ * wanted, so an assign followed by a remove replays as one burn, or as
+ * nothing if the chain never saw the assign.
+ *
+ * When the chain is available the intents are replayed oldest first, in
+ * chunks: each chunk re-reads its wallets, then sends one burnBatch and one
+ * mintBatch for whatever still differs. A few chunks may be in flight at
+ * once. Every chunk that lands is recorded in the log, so a restart resumes
+ * with what is left.
+ */
+class ChainOutbox {
+    private static final byte KIND_INTENT = 1;
+    private static final byte KIND_DONE = 2;
+
+    /** The plugin side of the outbox. */
+    interface Host {
+        boolean available();
+
+        // Current components; a reload may swap them between rounds
+        BatchAssetReader reader();
+
+        TransactionPipeline pipeline();
+
+        // The chain now holds what intent asked for; called off the main thread
+        void applied(Intent intent);
+    }
+
+    /** The asset a wallet should hold of one type: value, or none if value is null. */
+    static final class Intent {
+        final String wallet;
+        final String assetType;
+        final String value;
+        final long seq;
+        // Sequence of the oldest intent this one collapsed, which sets its place in the replay order
+        final long firstSeq;
+
+        Intent(String wallet, String assetType, String value, long seq, long firstSeq) {
+            this.wallet = wallet;
+            this.assetType = assetType;
+            this.value = value;
+            this.seq = seq;
+            this.firstSeq = firstSeq;
+        }
+    }
+
+    private final File logFile;
+    private final Host host;
+    private final int batchSize;
+    private final Semaphore inFlight;
+    private final long retryIntervalMillis;
+    private final Logger logger;
+    private final ScheduledExecutorService replayThread;
+    private final Map<String, Intent> pending = new LinkedHashMap<>();
+    private FileOutputStream log;
+    private boolean closed;
+    private long nextSeq = 1;
+    private long records;
+    // Counters for /zkc info
+    private volatile long replayed, collapsed;
+    private volatile String lastError;
+
+    ChainOutbox(File logFile, Host host, int batchSize, int maxConcurrentBatches, long retryIntervalMillis, Logger logger) {
+        this.logFile = logFile;
+        this.host = host;
+        this.batchSize = Math.max(1, batchSize);
+        this.inFlight = new Semaphore(Math.max(1, maxConcurrentBatches));
+        this.retryIntervalMillis = Math.max(1000, retryIntervalMillis);
+        this.logger = logger;
+        this.replayThread = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("ZKCraftTrade-Outbox").setDaemon(true).build());
+    }
+
+    synchronized void open() throws IOException {
+        File directory = logFile.getParentFile();
+        if (!directory.exists()) directory.mkdirs();
+        readLog();
+        log = new FileOutputStream(logFile, true);
+        if (!pending.isEmpty()) logger.info("Outbox holds " + pending.size() + " chain operations from before the restart");
+    }
+
+    // Replays on a fixed delay from now on; called once startup is done
+    void start() {
+        replayThread.scheduleWithFixedDelay(this::replay, 0, retryIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Replays right away, e.g. when the RPC endpoint recovers
+    void kick() {
+        if (!replayThread.isShutdown()) replayThread.execute(this::replay);
+    }
+
+    /**
+     * Records that wallet should end up holding value of assetType, or none
+     * of it if value is null, and makes the record durable.
+     */
+    synchronized void enqueue(String wallet, String assetType, String value) {
+        if (closed) {
+            logger.severe("Outbox already closed, dropping " + assetType + " intent for " + wallet);
+            throw new IllegalStateException("Outbox is closed");
+        }
+        String key = key(wallet, assetType);
+        Intent previous = pending.get(key);
+        long seq = nextSeq++;
+        Intent intent = new Intent(wallet, assetType, value, seq, previous != null ? previous.firstSeq : seq);
+        try {
+            append(KIND_INTENT, intent);
+        } catch (IOException e) {
+            // Still queued in memory, so it is replayed unless the server stops first
+            logger.severe("Failed to write " + assetType + " intent for " + wallet + " to the outbox: " + e.getMessage());
+        }
+        pending.put(key, intent);
+        if (previous != null) collapsed++;
+    }
+
+    // The queued state of one asset, or null if nothing is queued for it
+    synchronized Intent queued(String wallet, String assetType) {
+        return pending.get(key(wallet, assetType));
+    }
+
+    synchronized boolean hasPending(String wallet) {
+        if (pending.isEmpty()) return false;
+        for (Intent intent : pending.values()) {
+            if (intent.wallet.equalsIgnoreCase(wallet)) return true;
+        }
+        return false;
+    }
+
+    synchronized int pendingCount() {
+        return pending.size();
+    }
+
+    String describe() {
+        String error = lastError;
+        return pendingCount() + " pending, " + replayed + " replayed, " + collapsed + " collapsed"
+                + (error != null ? ", last error: " + error : "");
+    }
+
+    /**
+     * Stops replaying and closes the log. Chunks in flight fail with the
+     * pipeline and are replayed after the restart; call it after the
+     * pipelines are shut down, since anything enqueued later is refused.
+     */
+    void close() {
+        replayThread.shutdownNow();
+        synchronized (this) {
+            closed = true;
+            try {
+                if (log != null) log.close();
+            } catch (IOException e) {
+                logger.severe("Failed to close the outbox: " + e.getMessage());
+            }
+            log = null;
+        }
+    }
+
+    private void replay() {
+        List<Intent> queue;
+        synchronized (this) {
+            if (pending.isEmpty()) return;
+            queue = new ArrayList<>(pending.values());
+        }
+        if (!host.available()) return;
+        queue.sort(Comparator.comparingLong(intent -> intent.firstSeq));
+        List<CompletableFuture<Void>> chunks = new ArrayList<>();
+        try {
+            for (int start = 0; start < queue.size() && host.available(); start += batchSize) {
+                List<Intent> chunk = queue.subList(start, Math.min(start + batchSize, queue.size()));
+                inFlight.acquire();
+                CompletableFuture<Void> sent;
+                try {
+                    sent = sendChunk(chunk);
+                } catch (Exception e) {
+                    sent = new CompletableFuture<>();
+                    sent.completeExceptionally(e);
+                }
+                chunks.add(sent.whenComplete((ignored, error) -> {
+                    inFlight.release();
+                    if (error == null) {
+                        acknowledge(chunk);
+                    } else {
+                        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                        lastError = cause.getMessage();
+                        logger.warning("Outbox replay of " + chunk.size() + " chain operations failed, retrying later: " + lastError);
+                    }
+                }));
+            }
+            // The next round starts only after this one settled, so no intent is sent twice at once
+            CompletableFuture.allOf(chunks.toArray(new CompletableFuture<?>[0])).exceptionally(error -> null).join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        compactIfDue();
+    }
+
+    // Brings each wallet in chunk to its queued state with at most one burnBatch and one mintBatch
+    private CompletableFuture<Void> sendChunk(List<Intent> chunk) throws IOException {
+        BatchAssetReader reader = host.reader();
+        TransactionPipeline pipeline = host.pipeline();
+        Set<String> wallets = new LinkedHashSet<>();
+        for (Intent intent : chunk) wallets.add(intent.wallet);
+        Map<String, List<ZKCAsset.Asset>> current = reader.readWalletAssets(new ArrayList<>(wallets));
+        if (current.size() < wallets.size()) {
+            throw new IOException("could not read " + (wallets.size() - current.size()) + " of " + wallets.size() + " wallets");
+        }
+        Map<String, List<String>> burnsByType = new LinkedHashMap<>();
+        List<Intent> mints = new ArrayList<>();
+        for (Intent intent : chunk) {
+            String held = valueOf(current.get(intent.wallet), intent.assetType);
+            if (Objects.equals(held, intent.value)) continue;
+            if (held != null) burnsByType.computeIfAbsent(intent.assetType, type -> new ArrayList<>()).add(intent.wallet);
+            if (intent.value != null) mints.add(intent);
+        }
+        List<BigInteger> tokenIds = new ArrayList<>();
+        for (Map.Entry<String, List<String>> burns : burnsByType.entrySet()) {
+            for (BigInteger tokenId : reader.readTokenIds(burns.getValue(), burns.getKey()).values()) {
+                if (tokenId.signum() != 0) tokenIds.add(tokenId);
+            }
+        }
+        CompletableFuture<?> burned = tokenIds.isEmpty() ? CompletableFuture.completedFuture(null)
+                : pipeline.submit(ZKCAsset.FUNC_BURNBATCH, ZKCAssetCalls.burnBatch(tokenIds));
+        return burned.thenCompose(ignored -> {
+            if (mints.isEmpty()) return CompletableFuture.completedFuture(null);
+            List<String> mintWallets = new ArrayList<>(mints.size());
+            List<String> types = new ArrayList<>(mints.size());
+            List<String> values = new ArrayList<>(mints.size());
+            for (Intent intent : mints) {
+                mintWallets.add(intent.wallet);
+                types.add(intent.assetType);
+                values.add(intent.value);
+            }
+            return pipeline.submit(ZKCAsset.FUNC_MINTBATCH, ZKCAssetCalls.mintBatch(mintWallets, types, values));
+        }).thenApply(ignored -> null);
+    }
+
+    // Drops the intents of a chunk that landed, unless a newer one for the same asset arrived meanwhile
+    private void acknowledge(List<Intent> chunk) {
+        List<Intent> done = new ArrayList<>();
+        synchronized (this) {
+            for (Intent intent : chunk) {
+                try {
+                    append(KIND_DONE, intent);
+                } catch (IOException e) {
+                    // Without the record the intent is replayed after a restart, which finds nothing left to do
+                    logger.severe("Failed to record outbox progress: " + e.getMessage());
+                }
+                if (pending.get(key(intent.wallet, intent.assetType)) == intent) {
+                    pending.remove(key(intent.wallet, intent.assetType));
+                    done.add(intent);
+                }
+            }
+        }
+        replayed += done.size();
+        for (Intent intent : done) host.applied(intent);
+    }
+
+    private static String valueOf(List<ZKCAsset.Asset> assets, String assetType) {
+        for (ZKCAsset.Asset asset : assets) {
+            if (asset.assetType.equals(assetType)) return asset.value;
+        }
+        return null;
+    }
+
+    private static String key(String wallet, String assetType) {
+        return wallet.toLowerCase() + "|" + assetType;
+    }
+
+    // Caller holds the lock
+    private void append(byte kind, Intent intent) throws IOException {
+        if (log == null) throw new IOException("outbox.log is not open");
+        byte[] record = encode(kind, intent);
+        CRC32 crc = new CRC32();
+        crc.update(record, 0, record.length);
+        ByteArrayOutputStream framed = new ByteArrayOutputStream(record.length + 8);
+        DataOutputStream out = new DataOutputStream(framed);
+        out.writeInt(record.length);
+        out.write(record);
+        out.writeInt((int) crc.getValue());
+        log.write(framed.toByteArray());
+        log.getFD().sync();
+        records++;
+    }
+
+    private static byte[] encode(byte kind, Intent intent) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(96);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(kind);
+        out.writeLong(intent.seq);
+        out.writeUTF(intent.wallet);
+        out.writeUTF(intent.assetType);
+        if (kind == KIND_INTENT) {
+            out.writeLong(intent.firstSeq);
+            out.writeBoolean(intent.value != null);
+            if (intent.value != null) out.writeUTF(intent.value);
+        }
+        return bytes.toByteArray();
+    }
+
+    // Applies every intact record; a torn tail from a crash mid-append is cut off
+    private void readLog() throws IOException {
+        if (!logFile.exists()) return;
+        long validLength = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(logFile)))) {
+            while (true) {
+                int length;
+                byte[] record;
+                int crc;
+                try {
+                    length = in.readInt();
+                    if (length <= 0 || length > 1024 * 1024) break;
+                    record = new byte[length];
+                    in.readFully(record);
+                    crc = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                CRC32 check = new CRC32();
+                check.update(record, 0, record.length);
+                if ((int) check.getValue() != crc) break;
+                applyRecord(new DataInputStream(new ByteArrayInputStream(record)));
+                records++;
+                validLength += 8 + length;
+            }
+        }
+        if (validLength < logFile.length()) {
+            logger.warning("Discarding " + (logFile.length() - validLength) + " trailing bytes of " + logFile.getName());
+            try (RandomAccessFile truncate = new RandomAccessFile(logFile, "rw")) {
+                truncate.setLength(validLength);
+            }
+        }
+    }
+
+    private void applyRecord(DataInputStream in) throws IOException {
+        byte kind = in.readByte();
+        long seq = in.readLong();
+        String wallet = in.readUTF();
+        String assetType = in.readUTF();
+        nextSeq = Math.max(nextSeq, seq + 1);
+        String key = key(wallet, assetType);
+        Intent previous = pending.get(key);
+        switch (kind) {
+            case KIND_INTENT:
+                long firstSeq = in.readLong();
+                String value = in.readBoolean() ? in.readUTF() : null;
+                pending.put(key, new Intent(wallet, assetType, value, seq, previous != null ? previous.firstSeq : firstSeq));
+                break;
+            case KIND_DONE:
+                if (previous != null && previous.seq <= seq) pending.remove(key);
+                break;
+            default:
+                throw new IOException("Unknown outbox record kind " + kind);
+        }
+    }
+
+    // Rewrites the log with only the live intents once finished ones make up most of it
+    private synchronized void compactIfDue() {
+        if (closed || records < 64 || records < pending.size() * 4L) return;
+        File temp = new File(logFile.getParentFile(), logFile.getName() + ".tmp");
+        try {
+            log.close();
+            records = 0;
+            try (FileOutputStream out = new FileOutputStream(temp)) {
+                log = out;
+                for (Intent intent : pending.values()) append(KIND_INTENT, intent);
+            }
+            try {
+                Files.move(temp.toPath(), logFile.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), logFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            logger.severe("Failed to compact the outbox: " + e.getMessage());
+        } finally {
+            try {
+                log = new FileOutputStream(logFile, true);
+            } catch (IOException e) {
+                logger.severe("Failed to reopen the outbox: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.zkcraft;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Guards blockchain calls so an unreachable RPC endpoint fails fast instead
+ * of costing a full HTTP timeout per call. Outcomes of the last calls are
+ * kept in a sliding window; too many failures or slow calls open the
+ * breaker, and calls are then refused at once. While open, a single
+ * background probe checks the endpoint. A successful probe lets calls
+ * through again (half-open), and the next one closes the breaker unless a
+ * call failed in between.
+ */
+class CircuitBreaker {
+    enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    /** Thrown instead of calling the endpoint while the breaker is open. */
+    static class OpenException extends IOException {
+        OpenException() {
+            super("Blockchain circuit breaker is open, the RPC endpoint is unavailable");
+        }
+    }
+
+    private final Callable<?> healthProbe;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long slowCallNanos;
+    private final double slowCallRateThreshold;
+    private final long probeIntervalMillis;
+    private final Consumer<State> onStateChange;
+    private final Logger logger;
+    private final ScheduledExecutorService probeThread;
+    private final boolean[] failed;
+    private final boolean[] slow;
+    private int next;
+    private int recorded;
+    private State state = State.CLOSED;
+    private ScheduledFuture<?> probe;
+
+    CircuitBreaker(Callable<?> healthProbe, int windowSize, int minimumCalls, double failureRateThreshold, long slowCallMillis,
+                   double slowCallRateThreshold, long probeIntervalMillis, Consumer<State> onStateChange, Logger logger) {
+        this.healthProbe = healthProbe;
+        this.failed = new boolean[Math.max(1, windowSize)];
+        this.slow = new boolean[failed.length];
+        this.minimumCalls = Math.max(1, Math.min(minimumCalls, failed.length));
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(slowCallMillis);
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.probeIntervalMillis = Math.max(100, probeIntervalMillis);
+        this.onStateChange = onStateChange;
+        this.logger = logger;
+        this.probeThread = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("ZKCraftTrade-Health").setDaemon(true).build());
+    }
+
+    synchronized State state() {
+        return state;
+    }
+
+    synchronized boolean allowsCalls() {
+        return state != State.OPEN;
+    }
+
+    <T> T call(Callable<T> call) throws Exception {
+        if (!allowsCalls()) throw new OpenException();
+        long start = System.nanoTime();
+        try {
+            T result = call.call();
+            record(System.nanoTime() - start, false);
+            return result;
+        } catch (Exception e) {
+            record(System.nanoTime() - start, true);
+            throw e;
+        }
+    }
+
+    // The outcome is recorded when the returned future completes
+    <T> CompletableFuture<T> callAsync(Supplier<CompletableFuture<T>> call) {
+        if (!allowsCalls()) {
+            CompletableFuture<T> refused = new CompletableFuture<>();
+            refused.completeExceptionally(new OpenException());
+            return refused;
+        }
+        long start = System.nanoTime();
+        CompletableFuture<T> future;
+        try {
+            future = call.get();
+        } catch (RuntimeException e) {
+            record(System.nanoTime() - start, true);
+            throw e;
+        }
+        return future.whenComplete((result, error) -> record(System.nanoTime() - start, error != null));
+    }
+
+    // For calls made outside call/callAsync, such as a whole batch of reads
+    void record(long elapsedNanos, boolean callFailed) {
+        State changedTo = null;
+        synchronized (this) {
+            if (state == State.OPEN) return;
+            if (state == State.HALF_OPEN) {
+                if (callFailed) changedTo = transition(State.OPEN);
+            } else {
+                failed[next] = callFailed;
+                slow[next] = elapsedNanos > slowCallNanos;
+                next = (next + 1) % failed.length;
+                if (recorded < failed.length) recorded++;
+                if (recorded >= minimumCalls && (rate(failed) >= failureRateThreshold || rate(slow) >= slowCallRateThreshold)) {
+                    changedTo = transition(State.OPEN);
+                }
+            }
+        }
+        if (changedTo != null) onStateChange.accept(changedTo);
+    }
+
+    void shutdown() {
+        probeThread.shutdownNow();
+    }
+
+    private double rate(boolean[] outcomes) {
+        int count = 0;
+        for (int i = 0; i < recorded; i++) {
+            if (outcomes[i]) count++;
+        }
+        return count / (double) recorded;
+    }
+
+    // Caller holds the lock
+    private State transition(State to) {
+        if (state == to) return null;
+        state = to;
+        if (to == State.CLOSED) {
+            recorded = 0;
+            next = 0;
+            if (probe != null) probe.cancel(false);
+            probe = null;
+        } else if (probe == null && !probeThread.isShutdown()) {
+            probe = probeThread.scheduleWithFixedDelay(this::runProbe, probeIntervalMillis, probeIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+        return to;
+    }
+
+    private void runProbe() {
+        boolean healthy;
+        try {
+            healthProbe.call();
+            healthy = true;
+        } catch (Exception e) {
+            healthy = false;
+            logger.fine("Blockchain health probe failed: " + e.getMessage());
+        }
+        State changedTo;
+        synchronized (this) {
+            if (state == State.OPEN) {
+                changedTo = healthy ? transition(State.HALF_OPEN) : null;
+            } else if (state == State.HALF_OPEN) {
+                changedTo = transition(healthy ? State.CLOSED : State.OPEN);
+            } else {
+                changedTo = null;
+            }
+        }
+        if (changedTo != null) onStateChange.accept(changedTo);
+    }
+}
@@ -0,0 +1,125 @@
+package com.zkcraft;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.command.CommandSender;
+import org.bukkit.plugin.Plugin;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * Runs the blocking chain I/O of a command on a worker pool and hands the
+ * result back to the server main thread, so no RPC ever blocks a tick.
+ */
+class CommandPipeline {
+    private final Plugin plugin;
+    private final ExecutorService chainExecutor;
+    private final ScheduledExecutorService timeouts;
+    private final long timeoutMillis;
+    private final Metrics metrics;
+
+    CommandPipeline(Plugin plugin, int threads, long timeoutMillis, Metrics metrics) {
+        this.plugin = plugin;
+        this.metrics = metrics;
+        this.chainExecutor = Executors.newFixedThreadPool(Math.max(1, threads),
+                new ThreadFactoryBuilder().setNameFormat("ZKCraftTrade-Chain-%d").setDaemon(true).build());
+        this.timeouts = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("ZKCraftTrade-Timeout").setDaemon(true).build());
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Runs io off the main thread and then onMainThread with its result on
+     * the main thread. Failures and timeouts are reported to the sender.
+     */
+    <T> CompletableFuture<T> run(CommandSender sender, String commandName, Callable<T> io, Consumer<T> onMainThread) {
+        return deliver(sender, commandName, withTimeout(supplyAsync(io)), onMainThread);
+    }
+
+    /**
+     * Like run, but io starts asynchronous work (such as a pipelined
+     * transaction) and the timeout covers its completion too.
+     */
+    <T> CompletableFuture<T> runAsync(CommandSender sender, String commandName, Callable<CompletableFuture<T>> io, Consumer<T> onMainThread) {
+        return deliver(sender, commandName, withTimeout(supplyAsync(io).thenCompose(stage -> stage)), onMainThread);
+    }
+
+    private <T> CompletableFuture<T> deliver(CommandSender sender, String commandName, CompletableFuture<T> io, Consumer<T> onMainThread) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        io.whenComplete((value, error) -> runOnMainThread(() -> {
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                if (cause instanceof TimeoutException) {
+                    plugin.getLogger().warning("/zkc " + commandName + " timed out after " + timeoutMillis + "ms");
+                    sender.sendMessage(ChatColor.RED + "[ZKCraftTrade] The blockchain took too long to respond, please try again.");
+                } else {
+                    plugin.getLogger().warning("/zkc " + commandName + " failed: " + cause.getMessage());
+                    sender.sendMessage(ChatColor.RED + "[ZKCraftTrade] Command failed: " + cause.getMessage());
+                }
+                result.completeExceptionally(cause);
+                return;
+            }
+            long start = System.nanoTime();
+            try {
+                onMainThread.accept(value);
+                metrics.command(commandName, System.nanoTime() - start);
+                result.complete(value);
+            } catch (Exception e) {
+                plugin.getLogger().warning("/zkc " + commandName + " failed on the main thread: " + e.getMessage());
+                result.completeExceptionally(e);
+            }
+        }));
+        return result;
+    }
+
+    // Chain I/O on the worker pool
+    <T> CompletableFuture<T> supplyAsync(Callable<T> io) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        chainExecutor.execute(() -> {
+            try {
+                future.complete(io.call());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        });
+        return future;
+    }
+
+    // Fails with a TimeoutException once the command timeout passes; the work itself keeps running
+    private <T> CompletableFuture<T> withTimeout(CompletableFuture<T> work) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        work.whenComplete((value, error) -> {
+            if (error != null) {
+                future.completeExceptionally(error);
+            } else {
+                future.complete(value);
+            }
+        });
+        timeouts.schedule(() -> future.completeExceptionally(new TimeoutException()), timeoutMillis, TimeUnit.MILLISECONDS);
+        return future;
+    }
+
+    void runOnMainThread(Runnable task) {
+        if (!plugin.isEnabled()) return;
+        if (Bukkit.isPrimaryThread()) {
+            task.run();
+        } else {
+            Bukkit.getScheduler().runTask(plugin, task);
+        }
+    }
+
+    void shutdown() {
+        chainExecutor.shutdownNow();
+        timeouts.shutdownNow();
+    }
+}
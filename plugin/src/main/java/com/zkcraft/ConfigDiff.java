@@ -0,0 +1,62 @@
+package com.zkcraft;
+
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The config keys whose values differ between two snapshots of config.yml,
+ * so a reload can rebuild only the components those keys configure.
+ */
+final class ConfigDiff {
+    private final Set<String> changed;
+
+    private ConfigDiff(Set<String> changed) {
+        this.changed = changed;
+    }
+
+    /**
+     * The leaf values of config by full path. Taken when components are built,
+     * since /zkc config set edits the live config before anything is rebuilt.
+     */
+    static Map<String, Object> snapshot(ConfigurationSection config) {
+        Map<String, Object> values = new HashMap<>();
+        for (String key : config.getKeys(true)) {
+            if (!config.isConfigurationSection(key)) values.put(key, config.get(key));
+        }
+        return values;
+    }
+
+    static ConfigDiff between(Map<String, Object> old, Map<String, Object> updated) {
+        Set<String> changed = new TreeSet<>();
+        for (Map.Entry<String, Object> entry : updated.entrySet()) {
+            if (!Objects.equals(entry.getValue(), old.get(entry.getKey()))) changed.add(entry.getKey());
+        }
+        for (String key : old.keySet()) {
+            if (!updated.containsKey(key)) changed.add(key);
+        }
+        return new ConfigDiff(changed);
+    }
+
+    // Whether any key equal to one of prefixes, or below it, changed
+    boolean any(String... prefixes) {
+        for (String key : changed) {
+            for (String prefix : prefixes) {
+                if (key.equals(prefix) || key.startsWith(prefix + ".")) return true;
+            }
+        }
+        return false;
+    }
+
+    boolean isEmpty() {
+        return changed.isEmpty();
+    }
+
+    Set<String> keys() {
+        return changed;
+    }
+}
@@ -0,0 +1,150 @@
+package com.zkcraft;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import org.bukkit.configuration.file.FileConfiguration;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Write-behind persistence for the YAML data files. Mutations only mark a
+ * file dirty; a dedicated I/O thread writes each dirty file at most once per
+ * flush interval, via a temp file that is atomically renamed into place.
+ * The checksum of what was last read or written is kept per file, so a
+ * reload can tell which files were edited on disk since.
+ */
+class DataFileWriter {
+    private final Map<FileConfiguration, TrackedFile> files = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService ioThread;
+    private final Metrics metrics;
+    private final Logger logger;
+
+    DataFileWriter(long flushIntervalMillis, Metrics metrics, Logger logger) {
+        this.metrics = metrics;
+        this.logger = logger;
+        this.ioThread = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("ZKCraftTrade-IO").setDaemon(true).build());
+        long interval = Math.max(50, flushIntervalMillis);
+        this.ioThread.scheduleWithFixedDelay(this::flushDirty, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    void track(FileConfiguration data, File file) {
+        TrackedFile tracked = new TrackedFile(file);
+        tracked.checksum = checksumOnDisk(file);
+        files.put(data, tracked);
+    }
+
+    // Whether the file behind data differs from what was last read or written; call after flushNow
+    boolean changedOnDisk(FileConfiguration data) {
+        TrackedFile tracked = files.get(data);
+        return tracked == null || tracked.checksum != checksumOnDisk(tracked.file);
+    }
+
+    // Replaces a tracked document, e.g. after a reload re-parsed it from disk
+    void untrack(FileConfiguration data) {
+        files.remove(data);
+    }
+
+    /**
+     * Sets a value and schedules the owning file for the next flush. The
+     * document is locked so the I/O thread never serializes a half-applied set.
+     */
+    void set(FileConfiguration data, String path, Object value) {
+        synchronized (data) {
+            data.set(path, value);
+        }
+        TrackedFile tracked = files.get(data);
+        if (tracked != null) tracked.dirty.set(true);
+    }
+
+    // Writes every dirty file now, on the calling thread
+    void flushNow() {
+        flushDirty();
+    }
+
+    // Stops the I/O thread and does the guaranteed final flush
+    void close() {
+        ioThread.shutdown();
+        try {
+            if (!ioThread.awaitTermination(10, TimeUnit.SECONDS)) {
+                logger.warning("Data file flush did not finish in time, flushing again before shutdown");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushDirty();
+    }
+
+    private synchronized void flushDirty() {
+        for (Map.Entry<FileConfiguration, TrackedFile> entry : files.entrySet()) {
+            TrackedFile tracked = entry.getValue();
+            if (!tracked.dirty.getAndSet(false)) continue;
+            long start = System.nanoTime();
+            byte[] contents;
+            synchronized (entry.getKey()) {
+                contents = entry.getKey().saveToString().getBytes(StandardCharsets.UTF_8);
+            }
+            try {
+                writeAtomically(tracked.file, contents);
+                tracked.checksum = checksum(contents);
+                metrics.flush(Metrics.Store.YAML, System.nanoTime() - start, contents.length);
+            } catch (IOException e) {
+                tracked.dirty.set(true);
+                logger.severe("Failed to save " + tracked.file.getName() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    // Also used by the stores that must be durable before they return, such as the item escrow
+    static void writeAtomically(File target, byte[] contents) throws IOException {
+        File temp = new File(target.getParentFile(), target.getName() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            out.write(contents);
+            out.getFD().sync();
+        }
+        try {
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // -1 when the file can't be read, so it counts as changed once it can
+    private static long checksumOnDisk(File file) {
+        try {
+            return checksum(Files.readAllBytes(file.toPath()));
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private static long checksum(byte[] contents) {
+        CRC32 crc = new CRC32();
+        crc.update(contents, 0, contents.length);
+        return crc.getValue();
+    }
+
+    private static class TrackedFile {
+        final File file;
+        final AtomicBoolean dirty = new AtomicBoolean();
+        volatile long checksum;
+
+        TrackedFile(File file) {
+            this.file = file;
+        }
+    }
+}
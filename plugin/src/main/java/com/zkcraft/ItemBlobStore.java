@@ -0,0 +1,405 @@
+package com.zkcraft;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import org.bukkit.inventory.ItemStack;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Content-addressed store for the items players keep on chain. Each
+ * serialized ItemStack is stored once under its SHA-256, which is also the
+ * value minted on chain, so identical items share a blob and an item can be
+ * checked against its token. Blobs are appended to one segment file that is
+ * read through a memory mapping. Every stored token holds a reference; once
+ * the last one is released the blob is dead, and the segment is rewritten
+ * without dead blobs when they take up more room than the live ones.
+ */
+class ItemBlobStore {
+    private static final byte KIND_BLOB = 1;
+    private static final byte KIND_REF = 2;
+    private static final int HASH_BYTES = 32;
+    private static final long MIN_COMPACT_BYTES = 1024 * 1024;
+    private static final long MIN_COMPACT_RETRY_MILLIS = 60_000;
+    private static final long MAX_COMPACT_RETRY_MILLIS = 60 * 60_000;
+
+    private static final class Blob {
+        final long offset; // of the serialized item within the segment
+        final int length;
+        int refs;
+
+        Blob(long offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private final File segmentFile;
+    private final Metrics metrics;
+    private final Logger logger;
+    private final ScheduledExecutorService ioThread;
+    private final Map<String, Blob> blobs = new HashMap<>(); // hex SHA-256 -> blob
+    private FileChannel channel;
+    private MappedByteBuffer mapped;
+    private long liveBytes;
+    private long deadBytes;
+    private long unsyncedBytes;
+    private boolean unsynced;
+    // After a failed compaction the next one waits, doubling up to an hour
+    private long compactRetryMillis;
+    private long nextCompactAt;
+
+    ItemBlobStore(File segmentFile, long syncIntervalMillis, Metrics metrics, Logger logger) {
+        this.segmentFile = segmentFile;
+        this.metrics = metrics;
+        this.logger = logger;
+        this.ioThread = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("ZKCraftTrade-Blobs").setDaemon(true).build());
+        long interval = Math.max(50, syncIntervalMillis);
+        this.ioThread.scheduleWithFixedDelay(this::syncAndMaybeCompact, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    // On-chain item values written by this store, as opposed to the material names minted before it
+    static boolean isHash(String value) {
+        return value != null && value.matches("[0-9a-f]{64}");
+    }
+
+    static String hash(ItemStack item) throws IOException {
+        return Hashing.sha256().hashBytes(ItemCodec.encode(item)).toString();
+    }
+
+    synchronized void open() throws IOException {
+        File directory = segmentFile.getParentFile();
+        if (!directory.exists()) directory.mkdirs();
+        channel = FileChannel.open(segmentFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        blobs.clear();
+        liveBytes = 0;
+        deadBytes = 0;
+        long validLength = scan();
+        if (validLength < channel.size()) {
+            logger.warning("Discarding " + (channel.size() - validLength) + " trailing bytes of " + segmentFile.getName());
+            channel.truncate(validLength);
+        }
+        channel.position(validLength);
+        remap();
+    }
+
+    /**
+     * Stores item unless an identical one is already stored, and takes a
+     * reference on it for the token about to be minted. Returns its hash.
+     */
+    String put(ItemStack item) throws IOException {
+        byte[] encoded = ItemCodec.encode(item);
+        HashCode code = Hashing.sha256().hashBytes(encoded);
+        String hash = code.toString();
+        synchronized (this) {
+            Blob blob = blobs.get(hash);
+            if (blob == null) {
+                ByteBuffer payload = ByteBuffer.allocate(1 + HASH_BYTES + encoded.length);
+                payload.put(KIND_BLOB).put(code.asBytes()).put(encoded);
+                long start = appendRecord(payload.array());
+                blob = new Blob(start + 4 + 1 + HASH_BYTES, encoded.length);
+                blobs.put(hash, blob);
+                deadBytes += encoded.length;
+            }
+            changeRefs(hash, blob, 1);
+        }
+        return hash;
+    }
+
+    /**
+     * The item stored under hash, or null if there is none. The bytes are
+     * hashed again on the way out, so a corrupt blob is never handed out.
+     */
+    ItemStack get(String hash) {
+        byte[] encoded;
+        synchronized (this) {
+            Blob blob = blobs.get(hash);
+            if (blob == null) return null;
+            try {
+                if (mapped == null || blob.offset + blob.length > mapped.capacity()) remap();
+            } catch (IOException e) {
+                logger.warning("Failed to map item blob segment: " + e.getMessage());
+                return null;
+            }
+            encoded = new byte[blob.length];
+            ByteBuffer view = mapped.duplicate();
+            view.position((int) blob.offset);
+            view.get(encoded);
+        }
+        if (!Hashing.sha256().hashBytes(encoded).toString().equals(hash)) {
+            logger.severe("Item blob " + hash + " does not match its hash, refusing to load it");
+            return null;
+        }
+        try {
+            return ItemCodec.decode(encoded);
+        } catch (Exception e) {
+            logger.warning("Failed to deserialize item blob " + hash + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Drops the reference of a token that was burned; the blob goes with the next compaction once none are left
+    synchronized void release(String hash) {
+        Blob blob = blobs.get(hash);
+        if (blob == null || blob.refs == 0) return;
+        try {
+            changeRefs(hash, blob, -1);
+        } catch (IOException e) {
+            logger.severe("Failed to release item blob " + hash + ": " + e.getMessage());
+        }
+    }
+
+    synchronized int size() {
+        return blobs.size();
+    }
+
+    synchronized long liveBytes() {
+        return liveBytes;
+    }
+
+    synchronized long deadBytes() {
+        return deadBytes;
+    }
+
+    void close() {
+        ioThread.shutdown();
+        try {
+            ioThread.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            sync();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.severe("Failed to close item blob segment: " + e.getMessage());
+            }
+        }
+    }
+
+    // Caller holds the lock
+    private void changeRefs(String hash, Blob blob, int delta) throws IOException {
+        ByteBuffer payload = ByteBuffer.allocate(1 + HASH_BYTES + 4);
+        payload.put(KIND_REF).put(HashCode.fromString(hash).asBytes()).putInt(delta);
+        appendRecord(payload.array());
+        applyRefs(blob, delta);
+    }
+
+    private void applyRefs(Blob blob, int delta) {
+        boolean wasLive = blob.refs > 0;
+        blob.refs = Math.max(0, blob.refs + delta);
+        if (wasLive && blob.refs == 0) {
+            liveBytes -= blob.length;
+            deadBytes += blob.length;
+        } else if (!wasLive && blob.refs > 0) {
+            deadBytes -= blob.length;
+            liveBytes += blob.length;
+        }
+    }
+
+    private long appendRecord(byte[] payload) throws IOException {
+        long start = writeRecord(channel, payload);
+        unsyncedBytes += channel.position() - start;
+        unsynced = true;
+        return start;
+    }
+
+    // Frames a record like the player data journal: length, payload, CRC32. Returns where it starts
+    private static long writeRecord(FileChannel target, byte[] payload) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        ByteBuffer record = ByteBuffer.allocate(4 + payload.length + 4);
+        record.putInt(payload.length).put(payload).putInt((int) crc.getValue());
+        record.flip();
+        long start = target.position();
+        while (record.hasRemaining()) target.write(record);
+        return start;
+    }
+
+    // Rebuilds the index from the segment and returns the length of its intact prefix
+    private long scan() throws IOException {
+        long size = channel.size();
+        if (size == 0) return 0;
+        MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        try {
+            return scan(segment, size);
+        } finally {
+            unmap(segment);
+        }
+    }
+
+    private long scan(MappedByteBuffer segment, long size) {
+        long position = 0;
+        while (position + 4 <= size) {
+            int length = segment.getInt((int) position);
+            if (length < 1 + HASH_BYTES || position + 4 + length + 4 > size) break;
+            byte[] payload = new byte[length];
+            ByteBuffer view = segment.duplicate();
+            view.position((int) position + 4);
+            view.get(payload);
+            CRC32 check = new CRC32();
+            check.update(payload, 0, payload.length);
+            if ((int) check.getValue() != view.getInt()) break;
+            ByteBuffer record = ByteBuffer.wrap(payload);
+            byte kind = record.get();
+            byte[] hash = new byte[HASH_BYTES];
+            record.get(hash);
+            String key = HashCode.fromBytes(hash).toString();
+            if (kind == KIND_BLOB) {
+                Blob blob = blobs.get(key);
+                if (blob == null) {
+                    blobs.put(key, new Blob(position + 4 + 1 + HASH_BYTES, length - 1 - HASH_BYTES));
+                    deadBytes += length - 1 - HASH_BYTES;
+                }
+            } else if (kind == KIND_REF) {
+                Blob blob = blobs.get(key);
+                if (blob != null) applyRefs(blob, record.getInt());
+            } else {
+                break;
+            }
+            position += 4 + length + 4;
+        }
+        return position;
+    }
+
+    private void remap() throws IOException {
+        if (mapped != null) unmap(mapped);
+        mapped = null;
+        mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+
+    /*
+     * Releases a mapping now rather than whenever it is collected, since
+     * Windows refuses to replace a file that is still mapped. Nothing may
+     * read through it, or a view of it, afterwards. Where the JDK offers no
+     * way to do this the mapping is left to the collector.
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            unsafeClass.getMethod("invokeCleaner", ByteBuffer.class).invoke(theUnsafe.get(null), buffer);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Java 8 has no invokeCleaner
+        }
+    }
+
+    private void syncAndMaybeCompact() {
+        synchronized (this) {
+            sync();
+            if (deadBytes < MIN_COMPACT_BYTES || deadBytes < liveBytes) return;
+            long now = System.currentTimeMillis();
+            if (now < nextCompactAt) return;
+            try {
+                compact();
+                compactRetryMillis = 0;
+                nextCompactAt = 0;
+            } catch (IOException e) {
+                compactRetryMillis = compactRetryMillis == 0 ? MIN_COMPACT_RETRY_MILLIS : Math.min(compactRetryMillis * 2, MAX_COMPACT_RETRY_MILLIS);
+                nextCompactAt = now + compactRetryMillis;
+                logger.severe("Failed to compact item blob segment, trying again in " + compactRetryMillis / 1000 + "s: " + e.getMessage());
+            }
+        }
+    }
+
+    private void sync() {
+        if (!unsynced) return;
+        try {
+            long start = System.nanoTime();
+            channel.force(false);
+            metrics.flush(Metrics.Store.ITEM_BLOBS, System.nanoTime() - start, unsyncedBytes);
+            unsyncedBytes = 0;
+            unsynced = false;
+        } catch (IOException e) {
+            logger.severe("Failed to sync item blob segment: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Copies the referenced blobs, each followed by its reference count, into
+     * a new segment and renames it over the old one. The old segment is
+     * closed and unmapped first, since Windows won't replace it otherwise.
+     * The store keeps the old index until the rename has succeeded; if it
+     * fails, the old segment is reopened and mapped again, and compaction is
+     * tried again after a backoff. Caller holds the lock.
+     */
+    private void compact() throws IOException {
+        long start = System.nanoTime();
+        File temp = new File(segmentFile.getParentFile(), segmentFile.getName() + ".tmp");
+        Map<String, Blob> kept = new HashMap<>();
+        long written;
+        try (FileChannel target = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            for (Map.Entry<String, Blob> entry : blobs.entrySet()) {
+                Blob blob = entry.getValue();
+                if (blob.refs == 0) continue;
+                byte[] encoded = new byte[blob.length];
+                ByteBuffer view = mapped.duplicate();
+                view.position((int) blob.offset);
+                view.get(encoded);
+                ByteBuffer payload = ByteBuffer.allocate(1 + HASH_BYTES + encoded.length);
+                payload.put(KIND_BLOB).put(HashCode.fromString(entry.getKey()).asBytes()).put(encoded);
+                Blob copy = new Blob(writeRecord(target, payload.array()) + 4 + 1 + HASH_BYTES, blob.length);
+                ByteBuffer refs = ByteBuffer.allocate(1 + HASH_BYTES + 4);
+                refs.put(KIND_REF).put(HashCode.fromString(entry.getKey()).asBytes()).putInt(blob.refs);
+                writeRecord(target, refs.array());
+                copy.refs = blob.refs;
+                kept.put(entry.getKey(), copy);
+            }
+            target.force(false);
+            written = target.size();
+        } catch (IOException e) {
+            temp.delete();
+            throw e;
+        }
+        unmap(mapped);
+        mapped = null;
+        channel.close();
+        try {
+            try {
+                Files.move(temp.toPath(), segmentFile.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), segmentFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            temp.delete();
+            reopen();
+            remap();
+            throw e;
+        }
+        reopen();
+        logger.fine("Compacted item blob segment, dropped " + (blobs.size() - kept.size()) + " unreferenced blobs");
+        blobs.clear();
+        blobs.putAll(kept);
+        deadBytes = 0;
+        metrics.flush(Metrics.Store.ITEM_BLOBS, System.nanoTime() - start, written);
+        remap();
+    }
+
+    // Appends continue at the end of whatever segment now sits at segmentFile
+    private void reopen() throws IOException {
+        channel = FileChannel.open(segmentFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+    }
+}
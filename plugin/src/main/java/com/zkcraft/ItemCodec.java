@@ -0,0 +1,389 @@
+package com.zkcraft;
+
+import org.bukkit.configuration.serialization.ConfigurationSerializable;
+import org.bukkit.configuration.serialization.ConfigurationSerialization;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.util.io.BukkitObjectInputStream;
+import org.bukkit.util.io.BukkitObjectOutputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary form of stored items. A fixed header (magic, version, flags) is
+ * followed by the item's data version, material and amount, then its meta
+ * (display name, lore, enchantments, persistent data and so on) as a tagged
+ * tree of the same values ItemStack.serialize() hands to YAML. Integers and
+ * lengths are varints and the common meta keys are single bytes, so a plain
+ * item takes a few dozen bytes and decoding allocates little beyond the item.
+ * Items Java-serialized by older versions of the journal still decode.
+ */
+final class ItemCodec {
+    private static final int MAGIC = 0x5A49; // "ZI"
+    private static final int VERSION = 1;
+    private static final int FLAG_BULK = 1;
+    private static final int JAVA_SERIALIZATION_MAGIC = 0xACED;
+
+    private static final byte SLOT_EMPTY = 0;
+    private static final byte SLOT_BINARY = 1;
+    private static final byte SLOT_JAVA_SERIALIZED = 2;
+
+    private static final byte TAG_NULL = 0;
+    private static final byte TAG_STRING = 1;
+    private static final byte TAG_INT = 2;
+    private static final byte TAG_LONG = 3;
+    private static final byte TAG_DOUBLE = 4;
+    private static final byte TAG_TRUE = 5;
+    private static final byte TAG_FALSE = 6;
+    private static final byte TAG_LIST = 7;
+    private static final byte TAG_MAP = 8;
+    private static final byte TAG_SERIALIZABLE = 9;
+
+    // Keys written as their index + 1; any other key is written as 0 followed by the string
+    private static final String[] KEYS = {
+            "==", "meta-type", "display-name", "loc-name", "lore", "custom-model-data", "enchants", "stored-enchants",
+            "repair-cost", "ItemFlags", "Unbreakable", "Damage", "PublicBukkitValues", "attribute-modifiers", "color",
+            "potion-type", "custom-effects", "custom-color", "title", "author", "pages", "generation", "skull-owner",
+            "firework-effects", "power", "internal", "blockMaterial", "BlockStateTag", "ItemMeta"};
+    private static final Map<String, Integer> KEY_INDEX = new HashMap<>();
+
+    static {
+        for (int i = 0; i < KEYS.length; i++) KEY_INDEX.put(KEYS[i], i + 1);
+    }
+
+    private ItemCodec() {
+    }
+
+    // Meta holding a value the tree can't represent falls back to Java serialization rather than failing
+    static byte[] encode(ItemStack item) throws IOException {
+        Output out = new Output(64);
+        out.writeHeader(0);
+        try {
+            writeItem(out, item);
+        } catch (IOException e) {
+            return encodeJavaSerialized(item);
+        }
+        return out.toByteArray();
+    }
+
+    static ItemStack decode(byte[] encoded) throws IOException {
+        if (isJavaSerialized(encoded)) return decodeJavaSerialized(encoded);
+        ByteBuffer in = ByteBuffer.wrap(encoded);
+        if ((readHeader(in) & FLAG_BULK) != 0) throw new IOException("Expected a single item, found a bulk record");
+        return readItem(in);
+    }
+
+    // Many items in one record sharing a header; null slots are kept
+    static byte[] encodeAll(Collection<ItemStack> items) throws IOException {
+        Output out = new Output(32 * items.size() + 8);
+        out.writeHeader(FLAG_BULK);
+        out.writeVarint(items.size());
+        Output slot = new Output(64);
+        for (ItemStack item : items) {
+            if (item == null) {
+                out.write(SLOT_EMPTY);
+                continue;
+            }
+            slot.reset();
+            try {
+                writeItem(slot, item);
+                out.write(SLOT_BINARY);
+            } catch (IOException e) {
+                slot.reset();
+                slot.writeLengthPrefixed(encodeJavaSerialized(item));
+                out.write(SLOT_JAVA_SERIALIZED);
+            }
+            slot.writeTo(out);
+        }
+        return out.toByteArray();
+    }
+
+    static List<ItemStack> decodeAll(byte[] encoded) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(encoded);
+        if ((readHeader(in) & FLAG_BULK) == 0) throw new IOException("Expected a bulk record, found a single item");
+        try {
+            int count = readVarint(in);
+            List<ItemStack> items = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                byte slot = in.get();
+                if (slot == SLOT_EMPTY) {
+                    items.add(null);
+                } else if (slot == SLOT_BINARY) {
+                    items.add(readItem(in));
+                } else if (slot == SLOT_JAVA_SERIALIZED) {
+                    int length = readVarint(in);
+                    if (length > in.remaining()) throw new IOException("Truncated item record");
+                    byte[] serialized = new byte[length];
+                    in.get(serialized);
+                    items.add(decodeJavaSerialized(serialized));
+                } else {
+                    throw new IOException("Unknown item slot marker " + slot);
+                }
+            }
+            return items;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated item record");
+        }
+    }
+
+    private static boolean isJavaSerialized(byte[] encoded) {
+        return encoded.length >= 2 && ((encoded[0] & 0xFF) << 8 | (encoded[1] & 0xFF)) == JAVA_SERIALIZATION_MAGIC;
+    }
+
+    private static byte[] encodeJavaSerialized(ItemStack item) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (BukkitObjectOutputStream out = new BukkitObjectOutputStream(bytes)) {
+            out.writeObject(item);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static ItemStack decodeJavaSerialized(byte[] encoded) throws IOException {
+        try (BukkitObjectInputStream in = new BukkitObjectInputStream(new ByteArrayInputStream(encoded))) {
+            return (ItemStack) in.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Unknown class in serialized item: " + e.getMessage());
+        }
+    }
+
+    private static int readHeader(ByteBuffer in) throws IOException {
+        if (in.remaining() < 4 || (in.getShort() & 0xFFFF) != MAGIC) throw new IOException("Not an encoded item");
+        int version = in.get() & 0xFF;
+        if (version != VERSION) throw new IOException("Unsupported item codec version " + version);
+        return in.get() & 0xFF;
+    }
+
+    private static void writeItem(Output out, ItemStack item) throws IOException {
+        Map<String, Object> fields = new LinkedHashMap<>(item.serialize());
+        Object dataVersion = fields.remove("v");
+        Object type = fields.remove("type");
+        Object amount = fields.remove("amount");
+        Object meta = fields.remove("meta");
+        out.writeVarint(dataVersion instanceof Number ? ((Number) dataVersion).intValue() : 0);
+        out.writeString(String.valueOf(type));
+        out.writeVarint(amount instanceof Number ? ((Number) amount).intValue() : 1);
+        writeValue(out, meta);
+        // Fields newer server versions may add, kept as they are
+        writeValue(out, fields.isEmpty() ? null : fields);
+    }
+
+    private static ItemStack readItem(ByteBuffer in) throws IOException {
+        try {
+            Map<String, Object> fields = new LinkedHashMap<>();
+            int dataVersion = readVarint(in);
+            if (dataVersion != 0) fields.put("v", dataVersion);
+            fields.put("type", readString(in));
+            fields.put("amount", readVarint(in));
+            Object meta = readValue(in);
+            if (meta != null) fields.put("meta", meta);
+            Object extra = readValue(in);
+            if (extra instanceof Map) {
+                for (Map.Entry<?, ?> entry : ((Map<?, ?>) extra).entrySet()) fields.put(String.valueOf(entry.getKey()), entry.getValue());
+            }
+            return ItemStack.deserialize(fields);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated item record");
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid item record: " + e.getMessage());
+        }
+    }
+
+    // Number types collapse the way a YAML round trip collapses them
+    private static void writeValue(Output out, Object value) throws IOException {
+        if (value == null) {
+            out.write(TAG_NULL);
+        } else if (value instanceof String) {
+            out.write(TAG_STRING);
+            out.writeString((String) value);
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            out.write(TAG_INT);
+            out.writeVarint(zigzag(((Number) value).intValue()));
+        } else if (value instanceof Long) {
+            out.write(TAG_LONG);
+            out.writeVarlong(zigzag((Long) value));
+        } else if (value instanceof Double || value instanceof Float) {
+            out.write(TAG_DOUBLE);
+            out.writeLong(Double.doubleToLongBits(((Number) value).doubleValue()));
+        } else if (value instanceof Boolean) {
+            out.write((Boolean) value ? TAG_TRUE : TAG_FALSE);
+        } else if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            out.write(TAG_LIST);
+            out.writeVarint(list.size());
+            for (Object element : list) writeValue(out, element);
+        } else if (value instanceof Map) {
+            out.write(TAG_MAP);
+            writeEntries(out, (Map<?, ?>) value);
+        } else if (value instanceof ConfigurationSerializable) {
+            ConfigurationSerializable serializable = (ConfigurationSerializable) value;
+            out.write(TAG_SERIALIZABLE);
+            out.writeKey(ConfigurationSerialization.getAlias(serializable.getClass()));
+            writeEntries(out, serializable.serialize());
+        } else {
+            throw new IOException("Cannot encode item value of type " + value.getClass().getName());
+        }
+    }
+
+    private static void writeEntries(Output out, Map<?, ?> map) throws IOException {
+        out.writeVarint(map.size());
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            out.writeKey(String.valueOf(entry.getKey()));
+            writeValue(out, entry.getValue());
+        }
+    }
+
+    private static Object readValue(ByteBuffer in) throws IOException {
+        byte tag = in.get();
+        switch (tag) {
+            case TAG_NULL:
+                return null;
+            case TAG_STRING:
+                return readString(in);
+            case TAG_INT:
+                return unzigzag(readVarint(in));
+            case TAG_LONG:
+                return unzigzag(readVarlong(in));
+            case TAG_DOUBLE:
+                return Double.longBitsToDouble(in.getLong());
+            case TAG_TRUE:
+                return Boolean.TRUE;
+            case TAG_FALSE:
+                return Boolean.FALSE;
+            case TAG_LIST:
+                int size = readVarint(in);
+                List<Object> list = new ArrayList<>(Math.min(size, in.remaining()));
+                for (int i = 0; i < size; i++) list.add(readValue(in));
+                return list;
+            case TAG_MAP:
+                return readEntries(in, new LinkedHashMap<>());
+            case TAG_SERIALIZABLE:
+                Map<String, Object> fields = new LinkedHashMap<>();
+                fields.put(ConfigurationSerialization.SERIALIZED_TYPE_KEY, readKey(in));
+                return ConfigurationSerialization.deserializeObject(readEntries(in, fields));
+            default:
+                throw new IOException("Unknown item value tag " + tag);
+        }
+    }
+
+    private static Map<String, Object> readEntries(ByteBuffer in, Map<String, Object> into) throws IOException {
+        int size = readVarint(in);
+        for (int i = 0; i < size; i++) {
+            String key = readKey(in);
+            into.put(key, readValue(in));
+        }
+        return into;
+    }
+
+    private static String readKey(ByteBuffer in) throws IOException {
+        int index = readVarint(in);
+        if (index == 0) return readString(in);
+        if (index > KEYS.length) throw new IOException("Unknown item key index " + index);
+        return KEYS[index - 1];
+    }
+
+    private static String readString(ByteBuffer in) throws IOException {
+        int length = readVarint(in);
+        if (length > in.remaining()) throw new IOException("Truncated item record");
+        String value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    private static int readVarint(ByteBuffer in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IOException("Malformed varint in item record");
+    }
+
+    private static long readVarlong(ByteBuffer in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IOException("Malformed varint in item record");
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static final class Output extends ByteArrayOutputStream {
+        Output(int size) {
+            super(size);
+        }
+
+        void writeHeader(int flags) {
+            write(MAGIC >>> 8);
+            write(MAGIC & 0xFF);
+            write(VERSION);
+            write(flags);
+        }
+
+        void writeVarint(int value) {
+            while ((value & ~0x7F) != 0) {
+                write((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            write(value);
+        }
+
+        void writeVarlong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) (value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        void writeLong(long value) {
+            for (int shift = 56; shift >= 0; shift -= 8) write((int) (value >>> shift) & 0xFF);
+        }
+
+        void writeString(String value) {
+            writeLengthPrefixed(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        void writeLengthPrefixed(byte[] bytes) {
+            writeVarint(bytes.length);
+            write(bytes, 0, bytes.length);
+        }
+
+        void writeKey(String key) {
+            Integer index = KEY_INDEX.get(key);
+            if (index != null) {
+                writeVarint(index);
+            } else {
+                writeVarint(0);
+                writeString(key);
+            }
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.zkcraft;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.inventory.ItemStack;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+/**
+ * Items between a player's hand and their stored slot while the mint or
+ * burn that moves them is confirmed. An entry is written to escrow.yml and
+ * fsync'd before the item leaves where it was, and removed once the
+ * transaction settled and the item reached where it goes. Entries found at
+ * startup belong to trades a crash interrupted; they are settled against
+ * the chain once it is available.
+ */
+class ItemEscrow {
+    enum Kind {
+        // From the player's hand to the stored slot, by a mint
+        SET,
+        // From the stored slot to the player's inventory, by a burn
+        GET
+    }
+
+    enum State {
+        // Waiting for the transaction to settle
+        PENDING,
+        // Settled, the item goes to the player when they are next online
+        OWED
+    }
+
+    static final class Entry {
+        final String id;
+        final UUID player;
+        final String wallet;
+        final Kind kind;
+        // The item's on-chain value, the hash of its blob or a material name for older tokens
+        final String value;
+        final ItemStack item;
+        final long createdAt;
+        // No command is waiting on it: loaded at startup, or its outcome could not be read yet
+        volatile boolean orphaned;
+        final AtomicBoolean settling = new AtomicBoolean();
+        volatile State state;
+
+        Entry(String id, UUID player, String wallet, Kind kind, String value, ItemStack item, long createdAt, State state, boolean orphaned) {
+            this.id = id;
+            this.player = player;
+            this.wallet = wallet;
+            this.kind = kind;
+            this.value = value;
+            this.item = item;
+            this.createdAt = createdAt;
+            this.state = state;
+            this.orphaned = orphaned;
+        }
+    }
+
+    private final File file;
+    private final Logger logger;
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+
+    ItemEscrow(File file, Logger logger) {
+        this.file = file;
+        this.logger = logger;
+    }
+
+    synchronized void open() throws IOException {
+        File directory = file.getParentFile();
+        if (!directory.exists()) directory.mkdirs();
+        if (!file.exists()) return;
+        YamlConfiguration data = YamlConfiguration.loadConfiguration(file);
+        for (String id : data.getKeys(false)) {
+            ConfigurationSection section = data.getConfigurationSection(id);
+            try {
+                ItemStack item = ItemCodec.decode(Base64.getDecoder().decode(section.getString("item")));
+                entries.put(id, new Entry(id, UUID.fromString(section.getString("player")), section.getString("wallet"),
+                        Kind.valueOf(section.getString("kind")), section.getString("value"), item,
+                        section.getLong("created"), State.valueOf(section.getString("state")), true));
+            } catch (Exception e) {
+                // Kept in the file, so an operator can still recover the item by hand
+                logger.severe("Failed to read escrow entry " + id + ", leaving it in " + file.getName() + ": " + e.getMessage());
+            }
+        }
+        if (!entries.isEmpty()) logger.info("Item escrow holds " + entries.size() + " items from trades interrupted by a restart");
+    }
+
+    /**
+     * Records that item is moving for player and makes the record durable;
+     * the caller moves the item only after this returns.
+     */
+    synchronized Entry hold(UUID player, String wallet, Kind kind, String value, ItemStack item) throws IOException {
+        Entry entry = new Entry(UUID.randomUUID().toString(), player, wallet, kind, value, item.clone(),
+                System.currentTimeMillis(), State.PENDING, false);
+        entries.put(entry.id, entry);
+        try {
+            save();
+        } catch (IOException e) {
+            entries.remove(entry.id);
+            throw e;
+        }
+        return entry;
+    }
+
+    // The item reached where it goes
+    synchronized void release(Entry entry) {
+        if (entries.remove(entry.id) == null) return;
+        saveQuietly();
+    }
+
+    // The item goes to the player, who is offline; it is handed over when they next join
+    synchronized void owe(Entry entry) {
+        entry.state = State.OWED;
+        saveQuietly();
+    }
+
+    // The trade of player waiting for its transaction, if any
+    synchronized Entry pending(UUID player) {
+        for (Entry entry : entries.values()) {
+            if (entry.player.equals(player) && entry.state == State.PENDING) return entry;
+        }
+        return null;
+    }
+
+    synchronized List<Entry> owedTo(UUID player) {
+        List<Entry> owed = new ArrayList<>();
+        for (Entry entry : entries.values()) {
+            if (entry.player.equals(player) && entry.state == State.OWED) owed.add(entry);
+        }
+        return owed;
+    }
+
+    // Orphaned trades still waiting to be settled against the chain
+    synchronized List<Entry> unsettled() {
+        List<Entry> unsettled = new ArrayList<>();
+        for (Entry entry : entries.values()) {
+            if (entry.orphaned && entry.state == State.PENDING) unsettled.add(entry);
+        }
+        return unsettled;
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    // Caller holds the lock
+    private void save() throws IOException {
+        YamlConfiguration data = new YamlConfiguration();
+        for (Entry entry : entries.values()) {
+            data.set(entry.id + ".player", entry.player.toString());
+            data.set(entry.id + ".wallet", entry.wallet);
+            data.set(entry.id + ".kind", entry.kind.name());
+            data.set(entry.id + ".value", entry.value);
+            data.set(entry.id + ".item", Base64.getEncoder().encodeToString(ItemCodec.encode(entry.item)));
+            data.set(entry.id + ".created", entry.createdAt);
+            data.set(entry.id + ".state", entry.state.name());
+        }
+        DataFileWriter.writeAtomically(file, data.saveToString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Past the hold, a failed write only widens the window a crash could replay; the trade itself goes on
+    private void saveQuietly() {
+        try {
+            save();
+        } catch (IOException e) {
+            logger.severe("Failed to save " + file.getName() + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,662 @@
+package com.zkcraft;
+
+import com.google.common.io.CountingInputStream;
+import com.google.common.io.CountingOutputStream;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import org.bukkit.inventory.ItemStack;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only storage backend. Every mutation is appended to journal.log as
+ * one small checksummed record, so saving costs the size of the change, not
+ * of the whole data set. Once enough records pile up the journal is folded
+ * into snapshot.dat in the background. Only where each record's value lies
+ * in those files is held in memory; values are read from disk when asked
+ * for, so heap doesn't grow with every player who ever joined.
+ */
+class JournalPlayerDataStore implements PlayerDataStore {
+    private static final int SNAPSHOT_MAGIC = 0x5A4B4353; // "ZKCS"
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final byte KIND_WALLET = 1;
+    private static final byte KIND_ITEM = 2;
+    private static final byte KIND_RANK = 3;
+    // Files a Location can point into
+    private static final int SNAPSHOT = 0;
+    private static final int ROTATED = 1;
+    private static final int LIVE = 2;
+
+    private final File snapshotFile, journalFile, rotatedJournalFile;
+    private final long compactAfterRecords;
+    private final Metrics metrics;
+    private final Logger logger;
+    private final ScheduledExecutorService ioThread;
+    private final Map<UUID, Location> wallets = new HashMap<>();
+    private final Map<UUID, Location> items = new HashMap<>();
+    private final Map<String, Location> ranks = new HashMap<>();
+    // Opened on first read, indexed by SNAPSHOT, ROTATED and LIVE
+    private final RandomAccessFile[] readers = new RandomAccessFile[3];
+    private FileOutputStream journalOut;
+    private DataOutputStream journal;
+    private long journalLength;
+    private long recordsSinceSnapshot;
+    private long unsyncedBytes;
+    private boolean unsynced;
+    private boolean compacting;
+
+    JournalPlayerDataStore(File directory, long flushIntervalMillis, long compactAfterRecords, Metrics metrics, Logger logger) {
+        this.snapshotFile = new File(directory, "snapshot.dat");
+        this.journalFile = new File(directory, "journal.log");
+        this.rotatedJournalFile = new File(directory, "journal.log.old");
+        this.compactAfterRecords = Math.max(1, compactAfterRecords);
+        this.metrics = metrics;
+        this.logger = logger;
+        this.ioThread = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("ZKCraftTrade-Journal").setDaemon(true).build());
+        long interval = Math.max(50, flushIntervalMillis);
+        this.ioThread.scheduleWithFixedDelay(this::syncAndMaybeCompact, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    static boolean exists(File directory) {
+        return new File(directory, "snapshot.dat").exists() || new File(directory, "journal.log").exists();
+    }
+
+    @Override
+    public synchronized void open() throws IOException {
+        File directory = journalFile.getParentFile();
+        if (!directory.exists()) directory.mkdirs();
+        wallets.clear();
+        items.clear();
+        ranks.clear();
+        closeReaders();
+        readSnapshot();
+        // A leftover rotated journal means a compaction was interrupted; its records are replayed before the live ones
+        recordsSinceSnapshot = replay(rotatedJournalFile, ROTATED) + replay(journalFile, LIVE);
+        journalOut = new FileOutputStream(journalFile, true);
+        journal = new DataOutputStream(new BufferedOutputStream(journalOut));
+        journalLength = journalFile.length();
+    }
+
+    @Override
+    public synchronized Changes reload() throws IOException {
+        syncJournal();
+        journal.close();
+        Map<UUID, Location> oldWallets = new HashMap<>(wallets);
+        Map<UUID, Location> oldItems = new HashMap<>(items);
+        Map<String, Location> oldRanks = new HashMap<>(ranks);
+        open();
+        Changes changes = new Changes();
+        changes.players.addAll(changedKeys(oldWallets, wallets));
+        changes.players.addAll(changedKeys(oldItems, items));
+        changes.rankWallets.addAll(changedKeys(oldRanks, ranks));
+        return changes;
+    }
+
+    // Compared by length and checksum, since the same value may now sit at another offset
+    private static <K> Set<K> changedKeys(Map<K, Location> old, Map<K, Location> updated) {
+        Set<K> changed = new HashSet<>();
+        for (K key : union(old.keySet(), updated.keySet())) {
+            Location before = old.get(key);
+            Location after = updated.get(key);
+            if (before == null || after == null ? before != after : !before.sameValue(after)) changed.add(key);
+        }
+        return changed;
+    }
+
+    private static <K> Set<K> union(Set<K> a, Set<K> b) {
+        Set<K> keys = new HashSet<>(a);
+        keys.addAll(b);
+        return keys;
+    }
+
+    // Reads every record, for migrations and benchmarks only
+    @Override
+    public synchronized Map<UUID, String> loadWallets() {
+        Map<UUID, String> loaded = new HashMap<>();
+        for (UUID uuid : wallets.keySet()) loaded.put(uuid, loadWallet(uuid));
+        return loaded;
+    }
+
+    @Override
+    public synchronized Map<UUID, ItemStack> loadInventory() {
+        Map<UUID, ItemStack> inventory = new HashMap<>();
+        for (UUID uuid : items.keySet()) {
+            ItemStack item = loadItem(uuid);
+            if (item != null) inventory.put(uuid, item);
+        }
+        return inventory;
+    }
+
+    @Override
+    public synchronized Map<String, String> loadRanks() {
+        Map<String, String> loaded = new HashMap<>();
+        for (String wallet : ranks.keySet()) loaded.put(wallet, loadRank(wallet));
+        return loaded;
+    }
+
+    @Override
+    public synchronized String loadWallet(UUID uuid) {
+        byte[] value = read(wallets.get(uuid));
+        return value != null ? decodeString(value) : null;
+    }
+
+    @Override
+    public ItemStack loadItem(UUID uuid) {
+        byte[] encoded;
+        synchronized (this) {
+            encoded = read(items.get(uuid));
+        }
+        if (encoded == null) return null;
+        try {
+            return ItemCodec.decode(encoded);
+        } catch (Exception e) {
+            logger.warning("Failed to deserialize ItemStack for UUID " + uuid + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public synchronized String loadRank(String wallet) {
+        byte[] value = read(ranks.get(wallet));
+        return value != null ? decodeString(value) : null;
+    }
+
+    @Override
+    public synchronized void setWallet(UUID uuid, String address) {
+        index(wallets, uuid, append(KIND_WALLET, uuid, null, address != null ? encodeString(address) : null));
+    }
+
+    @Override
+    public synchronized void setItem(UUID uuid, ItemStack item) {
+        byte[] encoded = null;
+        if (item != null) {
+            try {
+                encoded = ItemCodec.encode(item);
+            } catch (IOException e) {
+                logger.severe("Failed to serialize ItemStack for UUID " + uuid + ": " + e.getMessage());
+                return;
+            }
+        }
+        index(items, uuid, append(KIND_ITEM, uuid, null, encoded));
+    }
+
+    @Override
+    public synchronized void setRank(String wallet, String rank) {
+        index(ranks, wallet, append(KIND_RANK, null, wallet, rank != null ? encodeString(rank) : null));
+    }
+
+    @Override
+    public synchronized void flush() {
+        syncJournal();
+    }
+
+    @Override
+    public void close() {
+        ioThread.shutdown();
+        try {
+            ioThread.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            syncJournal();
+            try {
+                journal.close();
+            } catch (IOException e) {
+                logger.severe("Failed to close journal: " + e.getMessage());
+            }
+            closeReaders();
+        }
+    }
+
+    // Imports a full data set, used by the YAML migrator before the first compaction
+    synchronized void importFrom(PlayerDataStore source) {
+        for (Map.Entry<UUID, String> entry : source.loadWallets().entrySet()) setWallet(entry.getKey(), entry.getValue());
+        for (Map.Entry<UUID, ItemStack> entry : source.loadInventory().entrySet()) setItem(entry.getKey(), entry.getValue());
+        for (Map.Entry<String, String> entry : source.loadRanks().entrySet()) setRank(entry.getKey(), entry.getValue());
+    }
+
+    void compactNow() throws IOException {
+        compact();
+    }
+
+    /**
+     * Appends a record and returns where its value now lies, null for a
+     * removal. If the append fails the index is left as it was, since it
+     * can't point at a value that isn't on disk.
+     */
+    private Index append(byte kind, UUID uuid, String wallet, byte[] value) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+            writeRecord(new DataOutputStream(bytes), kind, uuid, wallet, value);
+            byte[] record = bytes.toByteArray();
+            CRC32 crc = new CRC32();
+            crc.update(record, 0, record.length);
+            journal.writeInt(record.length);
+            journal.write(record);
+            journal.writeInt((int) crc.getValue());
+            // The value ends the record, which follows its length
+            Location location = value != null ? new Location(LIVE, journalLength + 4 + record.length - value.length, value) : null;
+            journalLength += record.length + 8;
+            recordsSinceSnapshot++;
+            unsyncedBytes += record.length + 8;
+            unsynced = true;
+            return new Index(location);
+        } catch (IOException e) {
+            logger.severe("Failed to append to player data journal: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static <K> void index(Map<K, Location> index, K key, Index appended) {
+        if (appended == null) return;
+        if (appended.location != null) index.put(key, appended.location); else index.remove(key);
+    }
+
+    // Caller holds the lock; a value the file no longer yields is logged and read as missing
+    private byte[] read(Location location) {
+        if (location == null) return null;
+        try {
+            if (location.file == LIVE) journal.flush();
+            RandomAccessFile reader = readers[location.file];
+            if (reader == null) {
+                reader = new RandomAccessFile(location.file == SNAPSHOT ? snapshotFile : location.file == ROTATED ? rotatedJournalFile : journalFile, "r");
+                readers[location.file] = reader;
+            }
+            byte[] value = new byte[location.length];
+            reader.seek(location.offset);
+            reader.readFully(value);
+            return value;
+        } catch (IOException e) {
+            logger.severe("Failed to read player data record: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void closeReader(int file) {
+        if (readers[file] == null) return;
+        try {
+            readers[file].close();
+        } catch (IOException e) {
+            logger.warning("Failed to close player data reader: " + e.getMessage());
+        }
+        readers[file] = null;
+    }
+
+    private void closeReaders() {
+        for (int file = 0; file < readers.length; file++) closeReader(file);
+    }
+
+    private void syncAndMaybeCompact() {
+        boolean compactDue;
+        synchronized (this) {
+            syncJournal();
+            compactDue = !compacting && recordsSinceSnapshot >= compactAfterRecords;
+        }
+        if (compactDue) {
+            try {
+                compact();
+            } catch (IOException e) {
+                logger.severe("Failed to compact player data journal: " + e.getMessage());
+            }
+        }
+    }
+
+    private void syncJournal() {
+        if (!unsynced) return;
+        try {
+            long start = System.nanoTime();
+            journal.flush();
+            journalOut.getFD().sync();
+            metrics.flush(Metrics.Store.JOURNAL, System.nanoTime() - start, unsyncedBytes);
+            unsyncedBytes = 0;
+            unsynced = false;
+        } catch (IOException e) {
+            logger.severe("Failed to sync player data journal: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Rotates the journal and copies the index under the lock, then writes
+     * the snapshot without holding it. Until the new snapshot is renamed in
+     * place, the rotated journal and the old snapshot still hold every value
+     * the index points at; the rename and the move of the index onto the new
+     * snapshot happen together under the lock.
+     */
+    private void compact() throws IOException {
+        Map<UUID, Location> walletCopy;
+        Map<UUID, Location> itemCopy;
+        Map<String, Location> rankCopy;
+        synchronized (this) {
+            if (compacting) return;
+            compacting = true;
+            try {
+                rotateJournal();
+            } catch (IOException | RuntimeException e) {
+                compacting = false;
+                throw e;
+            }
+            walletCopy = new HashMap<>(wallets);
+            itemCopy = new HashMap<>(items);
+            rankCopy = new HashMap<>(ranks);
+            recordsSinceSnapshot = 0;
+        }
+        try {
+            long start = System.nanoTime();
+            File temp = new File(snapshotFile.getParentFile(), snapshotFile.getName() + ".tmp");
+            Map<Location, Location> moved = writeSnapshot(temp, walletCopy, itemCopy, rankCopy);
+            long bytes = temp.length();
+            synchronized (this) {
+                closeReader(SNAPSHOT);
+                moveAtomically(temp, snapshotFile);
+                // Records changed since the copy point into the live journal and stay where they are
+                relocate(wallets, moved);
+                relocate(items, moved);
+                relocate(ranks, moved);
+                closeReader(ROTATED);
+                rotatedJournalFile.delete();
+            }
+            metrics.flush(Metrics.Store.SNAPSHOT, System.nanoTime() - start, bytes);
+            logger.fine("Compacted player data journal into " + snapshotFile.getName());
+        } finally {
+            synchronized (this) {
+                compacting = false;
+            }
+        }
+    }
+
+    /*
+     * Caller holds the lock. Makes the live journal the rotated one and opens
+     * a fresh live journal. If that fails the files are left as they were,
+     * the index keeps pointing into the live journal and it is reopened, so
+     * later sets still persist.
+     */
+    private void rotateJournal() throws IOException {
+        syncJournal();
+        closeReader(ROTATED);
+        closeReader(LIVE);
+        try {
+            journal.close();
+            long shift = 0;
+            if (rotatedJournalFile.exists()) {
+                // An earlier compaction failed; the live records go after its older ones
+                shift = rotatedJournalFile.length();
+                try {
+                    appendFile(journalFile, rotatedJournalFile);
+                    if (!journalFile.delete()) throw new IOException("Failed to delete " + journalFile.getName());
+                } catch (IOException e) {
+                    try (RandomAccessFile truncate = new RandomAccessFile(rotatedJournalFile, "rw")) {
+                        truncate.setLength(shift);
+                    } catch (IOException truncateError) {
+                        e.addSuppressed(truncateError);
+                    }
+                    throw e;
+                }
+            } else {
+                moveAtomically(journalFile, rotatedJournalFile);
+            }
+            rotate(wallets, shift);
+            rotate(items, shift);
+            rotate(ranks, shift);
+        } finally {
+            journalOut = new FileOutputStream(journalFile, true);
+            journal = new DataOutputStream(new BufferedOutputStream(journalOut));
+            journalLength = journalFile.length();
+        }
+    }
+
+    // The live journal became the rotated one, starting shift bytes in
+    private static <K> void rotate(Map<K, Location> index, long shift) {
+        for (Map.Entry<K, Location> entry : index.entrySet()) {
+            Location location = entry.getValue();
+            if (location.file == LIVE) entry.setValue(new Location(ROTATED, location.offset + shift, location.length, location.crc));
+        }
+    }
+
+    private static <K> void relocate(Map<K, Location> index, Map<Location, Location> moved) {
+        for (Map.Entry<K, Location> entry : index.entrySet()) {
+            Location location = moved.get(entry.getValue());
+            if (location != null) entry.setValue(location);
+        }
+    }
+
+    // Returns where each copied value lands in the new snapshot
+    private Map<Location, Location> writeSnapshot(File temp, Map<UUID, Location> walletCopy, Map<UUID, Location> itemCopy,
+                                                  Map<String, Location> rankCopy) throws IOException {
+        Map<Location, Location> moved = new HashMap<>();
+        try (FileOutputStream fileOut = new FileOutputStream(temp)) {
+            CountingOutputStream counting = new CountingOutputStream(new BufferedOutputStream(fileOut));
+            DataOutputStream out = new DataOutputStream(counting);
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeInt(walletCopy.size() + itemCopy.size() + rankCopy.size());
+            for (Map.Entry<UUID, Location> entry : walletCopy.entrySet()) {
+                copyRecord(out, counting, moved, KIND_WALLET, entry.getKey(), null, entry.getValue());
+            }
+            for (Map.Entry<UUID, Location> entry : itemCopy.entrySet()) {
+                copyRecord(out, counting, moved, KIND_ITEM, entry.getKey(), null, entry.getValue());
+            }
+            for (Map.Entry<String, Location> entry : rankCopy.entrySet()) {
+                copyRecord(out, counting, moved, KIND_RANK, null, entry.getKey(), entry.getValue());
+            }
+            out.flush();
+            fileOut.getFD().sync();
+        }
+        return moved;
+    }
+
+    // A value that can't be read any more is fatal: the snapshot would silently drop it
+    private void copyRecord(DataOutputStream out, CountingOutputStream counting, Map<Location, Location> moved,
+                            byte kind, UUID uuid, String wallet, Location location) throws IOException {
+        byte[] value;
+        synchronized (this) {
+            value = read(location);
+        }
+        if (value == null) throw new IOException("Failed to read a record back while compacting");
+        writeRecord(out, kind, uuid, wallet, value);
+        moved.put(location, new Location(SNAPSHOT, counting.getCount() - value.length, location.length, location.crc));
+    }
+
+    private void readSnapshot() throws IOException {
+        if (!snapshotFile.exists()) return;
+        try (CountingInputStream counting = new CountingInputStream(new BufferedInputStream(new FileInputStream(snapshotFile)))) {
+            DataInputStream in = new DataInputStream(counting);
+            if (in.readInt() != SNAPSHOT_MAGIC) throw new IOException(snapshotFile.getName() + " is not a player data snapshot");
+            int version = in.readInt();
+            if (version != SNAPSHOT_VERSION) throw new IOException("Unsupported snapshot version " + version);
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                applyRecord(in, counting, SNAPSHOT, 0);
+            }
+        }
+    }
+
+    // Applies every intact record; a torn or corrupt tail from a crash is cut off
+    private long replay(File file, int fileIndex) throws IOException {
+        if (!file.exists()) return 0;
+        long applied = 0;
+        long validLength = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (length <= 0 || length > 16 * 1024 * 1024) break;
+                byte[] record = new byte[length];
+                int crc;
+                try {
+                    in.readFully(record);
+                    crc = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                CRC32 check = new CRC32();
+                check.update(record, 0, record.length);
+                if ((int) check.getValue() != crc) break;
+                CountingInputStream counting = new CountingInputStream(new ByteArrayInputStream(record));
+                applyRecord(new DataInputStream(counting), counting, fileIndex, validLength + 4);
+                applied++;
+                validLength += 8 + length;
+            }
+        }
+        if (validLength < file.length()) {
+            logger.warning("Discarding " + (file.length() - validLength) + " trailing bytes of " + file.getName());
+            try (RandomAccessFile truncate = new RandomAccessFile(file, "rw")) {
+                truncate.setLength(validLength);
+            }
+        }
+        return applied;
+    }
+
+    private static void writeRecord(DataOutputStream out, byte kind, UUID uuid, String wallet, byte[] value) throws IOException {
+        out.writeByte(kind);
+        if (kind == KIND_RANK) {
+            out.writeUTF(wallet);
+        } else {
+            out.writeLong(uuid.getMostSignificantBits());
+            out.writeLong(uuid.getLeastSignificantBits());
+        }
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(value.length);
+            out.write(value);
+        }
+    }
+
+    // Indexes the record read from in, whose bytes start at base in the file
+    private void applyRecord(DataInputStream in, CountingInputStream counting, int file, long base) throws IOException {
+        byte kind = in.readByte();
+        String wallet = null;
+        UUID uuid = null;
+        if (kind == KIND_RANK) {
+            wallet = in.readUTF();
+        } else {
+            uuid = new UUID(in.readLong(), in.readLong());
+        }
+        int length = in.readInt();
+        byte[] value = null;
+        if (length >= 0) {
+            value = new byte[length];
+            in.readFully(value);
+        }
+        Index record = new Index(value != null ? new Location(file, base + counting.getCount() - length, value) : null);
+        switch (kind) {
+            case KIND_WALLET:
+                index(wallets, uuid, record);
+                break;
+            case KIND_ITEM:
+                index(items, uuid, record);
+                break;
+            case KIND_RANK:
+                index(ranks, wallet, record);
+                break;
+            default:
+                throw new IOException("Unknown record kind " + kind);
+        }
+    }
+
+    // Where a value lies; the length and checksum tell reload whether it changed without reading it
+    private static final class Location {
+        final int file;
+        final long offset;
+        final int length;
+        final int crc;
+
+        Location(int file, long offset, byte[] value) {
+            this(file, offset, value.length, checksum(value));
+        }
+
+        Location(int file, long offset, int length, int crc) {
+            this.file = file;
+            this.offset = offset;
+            this.length = length;
+            this.crc = crc;
+        }
+
+        boolean sameValue(Location other) {
+            return length == other.length && crc == other.crc;
+        }
+
+        private static int checksum(byte[] value) {
+            CRC32 crc = new CRC32();
+            crc.update(value, 0, value.length);
+            return (int) crc.getValue();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Location)) return false;
+            Location other = (Location) o;
+            return file == other.file && offset == other.offset;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(file, offset);
+        }
+    }
+
+    // An appended or replayed record: its location, or null for a removal
+    private static final class Index {
+        final Location location;
+
+        Index(Location location) {
+            this.location = location;
+        }
+    }
+
+    private static byte[] encodeString(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String decodeString(byte[] value) {
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    private static void appendFile(File source, File target) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(target, true)) {
+            Files.copy(source.toPath(), out);
+            out.getFD().sync();
+        }
+    }
+
+    // Package-private so tests can make a move fail
+    void moveAtomically(File source, File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.zkcraft;
+
+import net.luckperms.api.LuckPerms;
+import net.luckperms.api.model.data.DataMutateResult;
+import net.luckperms.api.model.user.User;
+import net.luckperms.api.model.user.UserManager;
+import net.luckperms.api.node.matcher.NodeMatcher;
+import net.luckperms.api.node.types.InheritanceNode;
+
+import org.bukkit.Server;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.RegisteredServiceProvider;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Logger;
+
+/**
+ * Grants ranks as LuckPerms group memberships through the API instead of
+ * dispatching "lp user" console commands. Changes made during a tick are
+ * buffered per player and flushed together, so a rank change (remove the
+ * old group, add the new one) loads and saves the user once, and a user
+ * whose groups already match is not saved at all.
+ */
+class LuckPermsRankBackend implements RankBackend {
+    private final LuckPerms luckPerms;
+    private final Logger logger;
+    private final Map<UUID, PendingUser> pending = new LinkedHashMap<>();
+
+    LuckPermsRankBackend(LuckPerms luckPerms, Logger logger) {
+        this.luckPerms = luckPerms;
+        this.logger = logger;
+    }
+
+    // Kept here so the LuckPerms classes are only touched once the plugin is known to be installed
+    static LuckPermsRankBackend create(Server server, Logger logger) {
+        RegisteredServiceProvider<LuckPerms> provider = server.getServicesManager().getRegistration(LuckPerms.class);
+        return provider != null ? new LuckPermsRankBackend(provider.getProvider(), logger) : null;
+    }
+
+    @Override
+    public synchronized void grant(Player player, String rank) {
+        pendingFor(player).changes.add(new NodeChange(rank, true));
+    }
+
+    @Override
+    public synchronized void revoke(Player player, String rank) {
+        pendingFor(player).changes.add(new NodeChange(rank, false));
+    }
+
+    // LuckPerms gives every member of a group its group.<name> permission
+    @Override
+    public boolean holds(Player player, String rank) {
+        return player.hasPermission("group." + rank.toLowerCase());
+    }
+
+    @Override
+    public CompletableFuture<Void> flush() {
+        List<PendingUser> users;
+        synchronized (this) {
+            if (pending.isEmpty()) return CompletableFuture.completedFuture(null);
+            users = new ArrayList<>(pending.values());
+            pending.clear();
+        }
+        UserManager userManager = luckPerms.getUserManager();
+        CompletableFuture<?>[] saves = new CompletableFuture<?>[users.size()];
+        for (int i = 0; i < users.size(); i++) {
+            PendingUser user = users.get(i);
+            saves[i] = userManager.loadUser(user.uuid)
+                    .thenCompose(lpUser -> apply(lpUser, user) ? userManager.saveUser(lpUser) : CompletableFuture.<Void>completedFuture(null))
+                    .handle((ignored, error) -> {
+                        if (error != null) {
+                            logger.warning("Failed to update LuckPerms groups of " + user.name + ": " + error.getMessage());
+                        }
+                        return null;
+                    });
+        }
+        return CompletableFuture.allOf(saves);
+    }
+
+    // Direct members of the group, searched in LuckPerms' storage so offline players are included
+    @Override
+    public CompletableFuture<Set<UUID>> members(String rank) {
+        return luckPerms.getUserManager().searchAll(NodeMatcher.key(InheritanceNode.builder(rank).build()))
+                .thenApply(users -> new HashSet<>(users.keySet()));
+    }
+
+    @Override
+    public String name() {
+        return "LuckPerms";
+    }
+
+    private PendingUser pendingFor(Player player) {
+        return pending.computeIfAbsent(player.getUniqueId(), uuid -> new PendingUser(uuid, player.getName()));
+    }
+
+    // Applies the buffered changes to the loaded user; returns whether any of them changed it
+    private boolean apply(User user, PendingUser pendingUser) {
+        boolean changed = false;
+        for (NodeChange change : pendingUser.changes) {
+            InheritanceNode node = InheritanceNode.builder(change.group).build();
+            DataMutateResult result = change.add ? user.data().add(node) : user.data().remove(node);
+            if (result.wasSuccessful()) {
+                changed = true;
+                logger.info((change.add ? "Applied rank " : "Removed rank ") + change.group
+                        + (change.add ? " to player " : " from player ") + pendingUser.name + " via LuckPerms");
+            }
+        }
+        return changed;
+    }
+
+    private static final class PendingUser {
+        final UUID uuid;
+        final String name;
+        final List<NodeChange> changes = new ArrayList<>();
+
+        PendingUser(UUID uuid, String name) {
+            this.uuid = uuid;
+            this.name = name;
+        }
+    }
+
+    private static final class NodeChange {
+        final String group;
+        final boolean add;
+
+        NodeChange(String group, boolean add) {
+            this.group = group;
+            this.add = add;
+        }
+    }
+}
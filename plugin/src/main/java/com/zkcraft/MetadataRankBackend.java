@@ -0,0 +1,67 @@
+package com.zkcraft;
+
+import org.bukkit.entity.Player;
+import org.bukkit.metadata.FixedMetadataValue;
+import org.bukkit.metadata.MetadataValue;
+import org.bukkit.plugin.Plugin;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Testing fallback without LuckPerms: the rank is only kept as player
+ * metadata for display and grants no permissions.
+ */
+class MetadataRankBackend implements RankBackend {
+    private final Plugin plugin;
+
+    MetadataRankBackend(Plugin plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public void grant(Player player, String rank) {
+        plugin.getLogger().info("LuckPerms not found. For testing only: Applied virtual rank " + rank + " to player " + player.getName());
+        player.sendMessage("§a[ZKCraftTrade] §7Virtual rank applied: §e" + rank + " §7(LuckPerms not detected)");
+        player.setMetadata("zkc_rank", new FixedMetadataValue(plugin, rank));
+    }
+
+    @Override
+    public void revoke(Player player, String rank) {
+        plugin.getLogger().info("LuckPerms not found. For testing only: Removed virtual rank " + rank + " from player " + player.getName());
+        player.sendMessage("§a[ZKCraftTrade] §7Virtual rank removed: §e" + rank + " §7(LuckPerms not detected)");
+        player.removeMetadata("zkc_rank", plugin);
+    }
+
+    @Override
+    public boolean holds(Player player, String rank) {
+        for (MetadataValue value : player.getMetadata("zkc_rank")) {
+            if (rank.equals(value.asString())) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public CompletableFuture<Void> flush() {
+        return CompletableFuture.completedFuture(null);
+    }
+
+    // Metadata only lives on online players, so offline ones are never members
+    @Override
+    public CompletableFuture<Set<UUID>> members(String rank) {
+        Set<UUID> members = new HashSet<>();
+        for (Player player : plugin.getServer().getOnlinePlayers()) {
+            for (MetadataValue value : player.getMetadata("zkc_rank")) {
+                if (rank.equals(value.asString())) members.add(player.getUniqueId());
+            }
+        }
+        return CompletableFuture.completedFuture(members);
+    }
+
+    @Override
+    public String name() {
+        return "metadata";
+    }
+}
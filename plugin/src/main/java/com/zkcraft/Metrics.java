@@ -0,0 +1,307 @@
+package com.zkcraft;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Runtime counters for the chain, the poller, storage and commands. Every
+ * series is created up front or on its first use, so recording a value only
+ * bumps LongAdders and allocates nothing. /zkc metrics reads a summary and
+ * the optional HTTP endpoint exports everything in Prometheus text format.
+ */
+class Metrics {
+    /** Contract calls with their own latency histogram. */
+    enum ContractCall {
+        GET_WALLET_ASSETS("getWalletAssets"),
+        GET_WALLET_ASSETS_BATCH("getWalletAssetsBatch"),
+        GET_TOKEN_ID("getTokenId"),
+        MINT("mint"),
+        BURN("burn"),
+        MINT_BATCH("mintBatch"),
+        BURN_BATCH("burnBatch"),
+        VAULT_ROOTS("vaultRoots"),
+        SET_VAULT_ROOT("setVaultRoot"),
+        SET_VAULT_ROOTS("setVaultRoots");
+
+        final String method;
+
+        ContractCall(String method) {
+            this.method = method;
+        }
+
+        // The wrapper's FUNC_ names, as the transaction pipeline tracks them
+        static ContractCall of(String functionName) {
+            for (ContractCall call : values()) {
+                if (call.method.equals(functionName)) return call;
+            }
+            return null;
+        }
+    }
+
+    /** Files written in the background, each with its flush latency and byte count. */
+    enum Store {
+        YAML("yaml"),
+        JOURNAL("journal"),
+        SNAPSHOT("snapshot"),
+        ITEM_BLOBS("items");
+
+        final String label;
+
+        Store(String label) {
+            this.label = label;
+        }
+    }
+
+    private final Histogram[] contractCalls = new Histogram[ContractCall.values().length];
+    private final LongAdder[] contractErrors = new LongAdder[ContractCall.values().length];
+    private final Map<String, LongAdder> errorsByType = new ConcurrentHashMap<>();
+    private final Histogram pollCycles = new Histogram();
+    private final LongAdder walletsRead = new LongAdder();
+    private final LongAdder walletsFailed = new LongAdder();
+    private volatile long lastCycleWallets;
+    private final Histogram[] flushes = new Histogram[Store.values().length];
+    private final LongAdder[] bytesWritten = new LongAdder[Store.values().length];
+    private final Map<String, Histogram> commands = new ConcurrentHashMap<>();
+
+    Metrics() {
+        for (int i = 0; i < contractCalls.length; i++) {
+            contractCalls[i] = new Histogram();
+            contractErrors[i] = new LongAdder();
+        }
+        for (int i = 0; i < flushes.length; i++) {
+            flushes[i] = new Histogram();
+            bytesWritten[i] = new LongAdder();
+        }
+    }
+
+    void contractCall(ContractCall call, long elapsedNanos, Throwable error) {
+        contractCalls[call.ordinal()].record(elapsedNanos);
+        if (error != null) {
+            contractErrors[call.ordinal()].increment();
+            error(error);
+        }
+    }
+
+    // Times a blocking call; put it inside the breaker so refused calls aren't counted as latency
+    <T> T time(ContractCall call, Callable<T> body) throws Exception {
+        long start = System.nanoTime();
+        try {
+            T result = body.call();
+            contractCall(call, System.nanoTime() - start, null);
+            return result;
+        } catch (Exception e) {
+            contractCall(call, System.nanoTime() - start, e);
+            throw e;
+        }
+    }
+
+    // Times an asynchronous call up to the completion of its future
+    <T> CompletableFuture<T> timeAsync(ContractCall call, Supplier<CompletableFuture<T>> body) {
+        long start = System.nanoTime();
+        return body.get().whenComplete((result, error) -> contractCall(call, System.nanoTime() - start, error));
+    }
+
+    // Counted by the class of the underlying cause, e.g. SocketTimeoutException
+    void error(Throwable error) {
+        Throwable cause = error;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        errorsByType.computeIfAbsent(cause.getClass().getSimpleName(), type -> new LongAdder()).increment();
+    }
+
+    void pollCycle(long elapsedNanos) {
+        pollCycles.record(elapsedNanos);
+    }
+
+    void walletsPolled(int read, int failed) {
+        walletsRead.add(read);
+        walletsFailed.add(failed);
+        lastCycleWallets = read;
+    }
+
+    void flush(Store store, long elapsedNanos, long bytes) {
+        flushes[store.ordinal()].record(elapsedNanos);
+        bytesWritten[store.ordinal()].add(bytes);
+    }
+
+    // Main thread time of a /zkc command, keyed by a fixed name such as "rank assign"
+    void command(String name, long elapsedNanos) {
+        Histogram histogram = commands.get(name);
+        if (histogram == null) histogram = commands.computeIfAbsent(name, key -> new Histogram());
+        histogram.record(elapsedNanos);
+    }
+
+    /** Short lines for /zkc metrics: call counts, error counts and latency percentiles. */
+    List<String> summary() {
+        List<String> lines = new ArrayList<>();
+        for (ContractCall call : ContractCall.values()) {
+            Histogram histogram = contractCalls[call.ordinal()];
+            long count = histogram.count();
+            if (count == 0) continue;
+            lines.add("Call " + call.method + ": " + count + " calls, " + contractErrors[call.ordinal()].sum() + " failed, "
+                    + histogram.describe());
+        }
+        if (pollCycles.count() > 0) {
+            lines.add("Poll: " + pollCycles.count() + " cycles, " + pollCycles.describe() + ", "
+                    + walletsRead.sum() + " wallets read (" + lastCycleWallets + " last cycle), " + walletsFailed.sum() + " failed");
+        }
+        for (Store store : Store.values()) {
+            Histogram histogram = flushes[store.ordinal()];
+            if (histogram.count() == 0) continue;
+            lines.add("Storage " + store.label + ": " + histogram.count() + " flushes, " + histogram.describe() + ", "
+                    + bytesWritten[store.ordinal()].sum() / 1024 + " KB written");
+        }
+        for (Map.Entry<String, Histogram> entry : new TreeMap<>(commands).entrySet()) {
+            lines.add("Command " + entry.getKey() + ": " + entry.getValue().count() + " runs, " + entry.getValue().describe() + " on the main thread");
+        }
+        if (!errorsByType.isEmpty()) {
+            StringBuilder errors = new StringBuilder("Errors:");
+            for (Map.Entry<String, LongAdder> entry : new TreeMap<>(errorsByType).entrySet()) {
+                errors.append(' ').append(entry.getKey()).append('=').append(entry.getValue().sum());
+            }
+            lines.add(errors.toString());
+        }
+        if (lines.isEmpty()) lines.add("Nothing recorded yet");
+        return lines;
+    }
+
+    /** Every series in the Prometheus text exposition format. */
+    String prometheus() {
+        StringBuilder out = new StringBuilder(8192);
+        header(out, "zkcraft_contract_call_seconds", "histogram", "Latency of ZKCAsset contract calls");
+        for (ContractCall call : ContractCall.values()) {
+            contractCalls[call.ordinal()].write(out, "zkcraft_contract_call_seconds", "method=\"" + call.method + "\"");
+        }
+        header(out, "zkcraft_contract_call_errors_total", "counter", "ZKCAsset contract calls that failed");
+        for (ContractCall call : ContractCall.values()) {
+            sample(out, "zkcraft_contract_call_errors_total", "method=\"" + call.method + "\"", contractErrors[call.ordinal()].sum());
+        }
+        header(out, "zkcraft_errors_total", "counter", "Failed blockchain calls by exception type");
+        for (Map.Entry<String, LongAdder> entry : new TreeMap<>(errorsByType).entrySet()) {
+            sample(out, "zkcraft_errors_total", "type=\"" + entry.getKey() + "\"", entry.getValue().sum());
+        }
+        header(out, "zkcraft_poll_cycle_seconds", "histogram", "Duration of blockchain poll cycles");
+        pollCycles.write(out, "zkcraft_poll_cycle_seconds", null);
+        header(out, "zkcraft_poll_wallets_read_total", "counter", "Wallets read by the poller");
+        sample(out, "zkcraft_poll_wallets_read_total", null, walletsRead.sum());
+        header(out, "zkcraft_poll_wallets_failed_total", "counter", "Wallet reads by the poller that failed");
+        sample(out, "zkcraft_poll_wallets_failed_total", null, walletsFailed.sum());
+        header(out, "zkcraft_poll_last_cycle_wallets", "gauge", "Wallets read by the last poll cycle");
+        sample(out, "zkcraft_poll_last_cycle_wallets", null, lastCycleWallets);
+        header(out, "zkcraft_storage_flush_seconds", "histogram", "Duration of background data file flushes");
+        for (Store store : Store.values()) {
+            flushes[store.ordinal()].write(out, "zkcraft_storage_flush_seconds", "store=\"" + store.label + "\"");
+        }
+        header(out, "zkcraft_storage_written_bytes_total", "counter", "Bytes written to data files");
+        for (Store store : Store.values()) {
+            sample(out, "zkcraft_storage_written_bytes_total", "store=\"" + store.label + "\"", bytesWritten[store.ordinal()].sum());
+        }
+        header(out, "zkcraft_command_main_thread_seconds", "histogram", "Main thread time spent on /zkc commands");
+        for (Map.Entry<String, Histogram> entry : new TreeMap<>(commands).entrySet()) {
+            entry.getValue().write(out, "zkcraft_command_main_thread_seconds", "command=\"" + entry.getKey() + "\"");
+        }
+        return out.toString();
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, long value) {
+        out.append(name);
+        if (labels != null) out.append('{').append(labels).append('}');
+        out.append(' ').append(value).append('\n');
+    }
+
+    /**
+     * Latency histogram with fixed buckets doubling from 0.01ms to about 84s,
+     * enough for both a main thread callback and a stalled RPC.
+     */
+    static class Histogram {
+        private static final long[] BOUNDS = new long[24];
+        private static final String[] BOUND_LABELS = new String[BOUNDS.length];
+
+        static {
+            for (int i = 0; i < BOUNDS.length; i++) {
+                BOUNDS[i] = TimeUnit.MICROSECONDS.toNanos(10L << i);
+                BOUND_LABELS[i] = Double.toString(BOUNDS[i] / 1e9);
+            }
+        }
+
+        private final LongAdder[] buckets = new LongAdder[BOUNDS.length + 1];
+        private final LongAdder sumNanos = new LongAdder();
+
+        Histogram() {
+            for (int i = 0; i < buckets.length; i++) buckets[i] = new LongAdder();
+        }
+
+        void record(long nanos) {
+            int bucket = 0;
+            while (bucket < BOUNDS.length && nanos > BOUNDS[bucket]) bucket++;
+            buckets[bucket].increment();
+            sumNanos.add(nanos);
+        }
+
+        long count() {
+            long count = 0;
+            for (LongAdder bucket : buckets) count += bucket.sum();
+            return count;
+        }
+
+        // Upper bound of the bucket holding the given quantile, in nanoseconds
+        long quantileNanos(double quantile) {
+            long[] counts = new long[buckets.length];
+            long total = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                counts[i] = buckets[i].sum();
+                total += counts[i];
+            }
+            long rank = (long) Math.ceil(quantile * total);
+            long seen = 0;
+            for (int i = 0; i < BOUNDS.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) return BOUNDS[i];
+            }
+            return Long.MAX_VALUE;
+        }
+
+        String describe() {
+            long count = count();
+            if (count == 0) return "no samples";
+            return "mean " + formatMillis(sumNanos.sum() / count) + ", p50 <" + formatMillis(quantileNanos(0.5))
+                    + ", p99 <" + formatMillis(quantileNanos(0.99));
+        }
+
+        void write(StringBuilder out, String name, String labels) {
+            String prefix = labels != null ? labels + "," : "";
+            long cumulative = 0;
+            for (int i = 0; i < BOUNDS.length; i++) {
+                cumulative += buckets[i].sum();
+                out.append(name).append("_bucket{").append(prefix).append("le=\"").append(BOUND_LABELS[i]).append("\"} ")
+                        .append(cumulative).append('\n');
+            }
+            cumulative += buckets[BOUNDS.length].sum();
+            out.append(name).append("_bucket{").append(prefix).append("le=\"+Inf\"} ").append(cumulative).append('\n');
+            String braces = labels != null ? "{" + labels + "}" : "";
+            out.append(name).append("_sum").append(braces).append(' ').append(sumNanos.sum() / 1e9).append('\n');
+            out.append(name).append("_count").append(braces).append(' ').append(cumulative).append('\n');
+        }
+
+        private static String formatMillis(long nanos) {
+            if (nanos == Long.MAX_VALUE) return "over 84s";
+            return nanos < 1_000_000 ? String.format("%.2fms", nanos / 1e6) : TimeUnit.NANOSECONDS.toMillis(nanos) + "ms";
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.zkcraft;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Logger;
+
+/**
+ * Serves the plugin's metrics at /metrics in Prometheus text format, on a
+ * single daemon thread. Bound to localhost unless configured otherwise,
+ * since the numbers are for the operator's scraper, not for players.
+ */
+class MetricsEndpoint {
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    private MetricsEndpoint(HttpServer server, ExecutorService executor) {
+        this.server = server;
+        this.executor = executor;
+    }
+
+    static MetricsEndpoint start(String bindAddress, int port, Metrics metrics, Logger logger) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(bindAddress, port), 0);
+        ExecutorService executor = Executors.newSingleThreadExecutor(
+                new ThreadFactoryBuilder().setNameFormat("ZKCraftTrade-Metrics").setDaemon(true).build());
+        server.setExecutor(executor);
+        server.createContext("/metrics", exchange -> {
+            try {
+                if (!exchange.getRequestMethod().equals("GET") && !exchange.getRequestMethod().equals("HEAD")) {
+                    respond(exchange, 405, "Method not allowed\n");
+                } else if (!exchange.getRequestURI().getPath().equals("/metrics")) {
+                    respond(exchange, 404, "Not found\n");
+                } else {
+                    respond(exchange, 200, metrics.prometheus());
+                }
+            } catch (Exception e) {
+                logger.warning("Failed to serve metrics: " + e.getMessage());
+            } finally {
+                exchange.close();
+            }
+        });
+        server.start();
+        logger.info("Serving metrics on http://" + bindAddress + ":" + server.getAddress().getPort() + "/metrics");
+        return new MetricsEndpoint(server, executor);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+        boolean head = exchange.getRequestMethod().equals("HEAD");
+        exchange.sendResponseHeaders(status, head ? -1 : bytes.length);
+        if (head) return;
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,34 @@
+package com.zkcraft;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.logging.Logger;
+
+/**
+ * One-time move of the YAML data files into the journal backend. The YAML
+ * files are renamed to *.migrated afterwards so the import never runs twice.
+ */
+final class PlayerDataMigrator {
+    private PlayerDataMigrator() {
+    }
+
+    static void migrateYamlToJournal(File dataFolder, JournalPlayerDataStore journal, Metrics metrics, Logger logger) throws IOException {
+        if (!YamlPlayerDataStore.exists(dataFolder)) return;
+        long start = System.currentTimeMillis();
+        YamlPlayerDataStore yaml = new YamlPlayerDataStore(dataFolder, 1000, metrics, logger);
+        try {
+            yaml.open();
+            journal.importFrom(yaml);
+        } finally {
+            yaml.close();
+        }
+        // The snapshot has to be durable before the source files go away
+        journal.compactNow();
+        for (File file : yaml.files()) {
+            if (file.exists() && !file.renameTo(new File(file.getParentFile(), file.getName() + ".migrated"))) {
+                logger.warning("Could not rename " + file.getName() + " after migration, remove it by hand");
+            }
+        }
+        logger.info("Migrated YAML player data to the journal store in " + (System.currentTimeMillis() - start) + "ms");
+    }
+}
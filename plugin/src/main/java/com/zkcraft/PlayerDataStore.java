@@ -0,0 +1,57 @@
+package com.zkcraft;
+
+import org.bukkit.inventory.ItemStack;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Persistent player state: linked wallets, the stored cross-server item and
+ * the YAML fallback ranks. Setters take null to remove a record and only
+ * schedule the write; flush and close make it durable. The per-player
+ * lookups are safe to call from any thread.
+ */
+interface PlayerDataStore {
+    void open() throws IOException;
+
+    /**
+     * Re-reads the backing files, keeping nothing that wasn't flushed first,
+     * and returns the records that differ from what was held before.
+     */
+    Changes reload() throws IOException;
+
+    Map<UUID, String> loadWallets();
+
+    Map<UUID, ItemStack> loadInventory();
+
+    Map<String, String> loadRanks();
+
+    String loadWallet(UUID uuid);
+
+    ItemStack loadItem(UUID uuid);
+
+    String loadRank(String wallet);
+
+    void setWallet(UUID uuid, String address);
+
+    void setItem(UUID uuid, ItemStack item);
+
+    void setRank(String wallet, String rank);
+
+    void flush();
+
+    void close();
+
+    // Players whose wallet or stored item changed in a reload, and wallets whose fallback rank did
+    final class Changes {
+        final Set<UUID> players = new HashSet<>();
+        final Set<String> rankWallets = new HashSet<>();
+
+        boolean isEmpty() {
+            return players.isEmpty() && rankWallets.isEmpty();
+        }
+    }
+}
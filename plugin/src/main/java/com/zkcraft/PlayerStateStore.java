@@ -0,0 +1,190 @@
+package com.zkcraft;
+
+import com.google.common.util.concurrent.Striped;
+
+import org.bukkit.inventory.ItemStack;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Supplier;
+
+/**
+ * Thread-safe view of the loaded players' wallets, stored items and fallback
+ * ranks, written through to the PlayerDataStore. Reads never lock; a change
+ * to one player takes only that player's stripe lock, so compound updates
+ * stay atomic without serializing unrelated players. Item transfers that
+ * span a blockchain round trip also reserve the player's item slot, so two
+ * of them can never overlap and duplicate an item.
+ */
+class PlayerStateStore {
+    private static final int LOCK_STRIPES = 64;
+
+    private final PlayerDataStore store;
+    private final Striped<Lock> locks = Striped.lock(LOCK_STRIPES);
+    private final Map<UUID, String> wallets = new ConcurrentHashMap<>(); // UUID -> Wallet Address
+    private final Map<UUID, ItemStack> items = new ConcurrentHashMap<>(); // UUID -> Single Item
+    private final Map<String, String> ranks = new ConcurrentHashMap<>(); // Wallet Address -> Rank (YAML fallback)
+    private final Set<UUID> itemTransfers = ConcurrentHashMap.newKeySet();
+
+    PlayerStateStore(PlayerDataStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Runs action while holding the stripe lock of key, a player UUID or a
+     * wallet address. The lock is reentrant, so the action may call the
+     * other methods of this class.
+     */
+    <T> T withLock(Object key, Supplier<T> action) {
+        Lock lock = locks.get(key);
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void load(UUID uuid) {
+        withLock(uuid, () -> {
+            String wallet = store.loadWallet(uuid);
+            ItemStack item = store.loadItem(uuid);
+            if (wallet != null) {
+                wallets.put(uuid, wallet);
+                String rank = store.loadRank(wallet);
+                if (rank != null) ranks.put(wallet, rank);
+            }
+            if (item != null) items.put(uuid, item);
+            return null;
+        });
+    }
+
+    void evict(UUID uuid) {
+        withLock(uuid, () -> {
+            String wallet = wallets.remove(uuid);
+            if (wallet != null) ranks.remove(wallet);
+            items.remove(uuid);
+            return null;
+        });
+    }
+
+    // Re-reads one loaded player after a reload found their records changed on disk
+    void reload(UUID uuid) {
+        withLock(uuid, () -> {
+            evict(uuid);
+            load(uuid);
+            return null;
+        });
+    }
+
+    // Re-reads the fallback rank of a loaded wallet; returns false if no loaded player has it
+    boolean reloadRank(String wallet) {
+        return withLock(wallet, () -> {
+            if (!wallets.containsValue(wallet)) return false;
+            String rank = store.loadRank(wallet);
+            if (rank != null) ranks.put(wallet, rank); else ranks.remove(wallet);
+            return true;
+        });
+    }
+
+    String wallet(UUID uuid) {
+        return wallets.get(uuid);
+    }
+
+    // Read-only live views, for the poller and /zkc info
+    Map<UUID, String> wallets() {
+        return Collections.unmodifiableMap(wallets);
+    }
+
+    Map<UUID, ItemStack> items() {
+        return Collections.unmodifiableMap(items);
+    }
+
+    Map<String, String> ranks() {
+        return Collections.unmodifiableMap(ranks);
+    }
+
+    void linkWallet(UUID uuid, String address) {
+        withLock(uuid, () -> {
+            wallets.put(uuid, address);
+            store.setWallet(uuid, address);
+            String rank = store.loadRank(address);
+            if (rank != null) ranks.put(address, rank);
+            return null;
+        });
+    }
+
+    // Returns the wallet that was linked, or null
+    String unlinkWallet(UUID uuid) {
+        return withLock(uuid, () -> {
+            String wallet = wallets.remove(uuid);
+            store.setWallet(uuid, null);
+            return wallet;
+        });
+    }
+
+    // Fallback rank for any wallet, read from the store when its owner isn't loaded
+    String fallbackRank(String wallet) {
+        String rank = ranks.get(wallet);
+        return rank != null ? rank : store.loadRank(wallet);
+    }
+
+    void setRank(String wallet, String rank) {
+        withLock(wallet, () -> {
+            if (rank != null) ranks.put(wallet, rank); else ranks.remove(wallet);
+            store.setRank(wallet, rank);
+            return null;
+        });
+    }
+
+    ItemStack item(UUID uuid) {
+        return items.get(uuid);
+    }
+
+    /**
+     * Reserves the player's item slot for a set or get that goes through the
+     * chain. Returns false if another transfer already holds it.
+     */
+    boolean beginItemTransfer(UUID uuid) {
+        return itemTransfers.add(uuid);
+    }
+
+    void endItemTransfer(UUID uuid) {
+        itemTransfers.remove(uuid);
+    }
+
+    // Records item unless one is already stored; returns whether it was recorded
+    boolean storeItem(UUID uuid, ItemStack item) {
+        return withLock(uuid, () -> {
+            // A player evicted mid-transfer is no longer in memory, so ask the store instead
+            boolean loaded = wallets.containsKey(uuid) || items.containsKey(uuid);
+            if (items.containsKey(uuid) || (!loaded && store.loadItem(uuid) != null)) return false;
+            if (loaded) items.put(uuid, item);
+            store.setItem(uuid, item);
+            return true;
+        });
+    }
+
+    // Removes and returns the stored item in one step, so it can only be handed out once
+    ItemStack takeItem(UUID uuid) {
+        return withLock(uuid, () -> {
+            ItemStack item = items.remove(uuid);
+            if (item != null) store.setItem(uuid, null);
+            return item;
+        });
+    }
+
+    // Drops the rank and item of a wallet that was just unlinked from uuid
+    void clearWalletAssets(UUID uuid, String wallet) {
+        withLock(uuid, () -> {
+            setRank(wallet, null);
+            items.remove(uuid);
+            store.setItem(uuid, null);
+            return null;
+        });
+    }
+}
@@ -0,0 +1,283 @@
+package com.zkcraft;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+/**
+ * Decides which online players' wallets are read from the chain and when.
+ * Wallets wait in a due queue ordered by recent trades and activity, each
+ * cycle spends at most the requests-per-second budget on them, and the
+ * interval between cycles stretches while the RPC endpoint is slow or
+ * failing and shrinks again once it recovers.
+ */
+class PollScheduler {
+    // Tokens a log sync needs to start: eth_blockNumber, eth_getLogs and eth_getBlockByNumber for the reorg check
+    private static final int LOG_SYNC_REQUESTS = 3;
+    private static final long TRADE_PRIORITY_MILLIS = 5 * 60 * 1000L;
+    private static final double EWMA_WEIGHT = 0.3;
+    private static final double MAX_ERROR_RATE = 0.25;
+
+    /** The chain side of a poll cycle, supplied by the plugin. */
+    interface Source {
+        boolean available();
+
+        // Lowercase wallets changed on chain since the last call, or null if every wallet must be read
+        Set<String> changedWallets() throws Exception;
+
+        // Running count of the RPC requests changedWallets has sent
+        long logSyncRequests();
+
+        // Reads the wallets into the asset cache and returns the ones that were read
+        Set<String> read(List<String> wallets);
+    }
+
+    private final Source source;
+    private final Function<UUID, String> walletOf;
+    private final boolean eventsMode;
+    private final double requestsPerSecond;
+    private final long baseIntervalMillis, minIntervalMillis, maxIntervalMillis, slowLatencyMillis;
+    private final Metrics metrics;
+    private final Logger logger;
+    private final ScheduledExecutorService pollThread;
+    private final Set<UUID> online = ConcurrentHashMap.newKeySet();
+    private final Set<UUID> due = ConcurrentHashMap.newKeySet();
+    private final Map<UUID, Long> lastActive = new ConcurrentHashMap<>();
+    private final Map<UUID, Long> lastTraded = new ConcurrentHashMap<>();
+    private ScheduledFuture<?> nextCycle;
+    private long generation; // bumped by start, so a cycle still running from before a stop can't reschedule itself
+    private volatile long intervalMillis;
+    private volatile double latencyMillis;
+    private volatile double errorRate;
+    private double lastCycleErrorRate;
+    private double tokens;
+    private long lastRefill;
+
+    PollScheduler(Source source, Function<UUID, String> walletOf, boolean eventsMode, double requestsPerSecond,
+                  long baseIntervalMillis, long minIntervalMillis, long maxIntervalMillis, long slowLatencyMillis, Metrics metrics, Logger logger) {
+        this.source = source;
+        this.walletOf = walletOf;
+        this.eventsMode = eventsMode;
+        this.requestsPerSecond = Math.max(0.1, requestsPerSecond);
+        this.minIntervalMillis = Math.max(100, minIntervalMillis);
+        this.maxIntervalMillis = Math.max(this.minIntervalMillis, maxIntervalMillis);
+        this.baseIntervalMillis = Math.min(this.maxIntervalMillis, Math.max(this.minIntervalMillis, baseIntervalMillis));
+        this.slowLatencyMillis = slowLatencyMillis;
+        this.metrics = metrics;
+        this.logger = logger;
+        this.intervalMillis = this.baseIntervalMillis;
+        this.pollThread = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("ZKCraftTrade-Poller").setDaemon(true).build());
+    }
+
+    synchronized void start() {
+        if (nextCycle != null) return;
+        lastRefill = System.nanoTime();
+        long current = ++generation;
+        nextCycle = pollThread.schedule(() -> cycle(current), 0, TimeUnit.MILLISECONDS);
+    }
+
+    // A cycle already running finishes, but no further one is scheduled
+    synchronized void stop() {
+        if (nextCycle == null) return;
+        nextCycle.cancel(false);
+        nextCycle = null;
+    }
+
+    synchronized boolean isRunning() {
+        return nextCycle != null;
+    }
+
+    void shutdown() {
+        stop();
+        pollThread.shutdownNow();
+    }
+
+    void playerOnline(UUID uuid) {
+        online.add(uuid);
+        markActive(uuid);
+        // Whatever is cached for a player who just joined may be stale
+        due.add(uuid);
+    }
+
+    void playerOffline(UUID uuid) {
+        online.remove(uuid);
+        due.remove(uuid);
+        lastActive.remove(uuid);
+        lastTraded.remove(uuid);
+    }
+
+    void markActive(UUID uuid) {
+        lastActive.put(uuid, System.currentTimeMillis());
+    }
+
+    // A player who just traded is read first on the next cycle
+    void markTraded(UUID uuid) {
+        long now = System.currentTimeMillis();
+        lastActive.put(uuid, now);
+        lastTraded.put(uuid, now);
+        if (online.contains(uuid)) due.add(uuid);
+    }
+
+    int queueDepth() {
+        return due.size();
+    }
+
+    long intervalMillis() {
+        return intervalMillis;
+    }
+
+    double latencyMillis() {
+        return latencyMillis;
+    }
+
+    double errorRate() {
+        return errorRate;
+    }
+
+    private void cycle(long cycleGeneration) {
+        try {
+            if (source.available()) {
+                long start = System.nanoTime();
+                pollDue();
+                metrics.pollCycle(System.nanoTime() - start);
+            }
+        } catch (Exception e) {
+            metrics.error(e);
+            logger.warning("Blockchain poll failed: " + e.getMessage());
+        } finally {
+            adaptInterval();
+            scheduleNext(cycleGeneration);
+        }
+    }
+
+    private void pollDue() {
+        refillTokens();
+        long start = System.nanoTime();
+        if (eventsMode && tokens >= LOG_SYNC_REQUESTS) {
+            // Charged for what was sent, which after downtime can be more than the bucket held; the debt delays wallet reads
+            long requestsBefore = source.logSyncRequests();
+            Set<String> changed;
+            try {
+                changed = source.changedWallets();
+            } catch (Exception e) {
+                metrics.error(e);
+                logger.warning("Failed to sync asset logs: " + e.getMessage());
+                observe(System.nanoTime() - start, 1.0);
+                return;
+            } finally {
+                // A log sync rebuilt by a reload starts counting from zero
+                tokens -= Math.max(0, source.logSyncRequests() - requestsBefore);
+            }
+            markChanged(changed);
+        } else if (!eventsMode) {
+            markChanged(null);
+        }
+
+        int budget = (int) Math.floor(tokens);
+        if (budget <= 0 || due.isEmpty()) return;
+        List<UUID> batch = takeHighestPriority(budget);
+        List<String> wallets = new ArrayList<>(batch.size());
+        for (UUID uuid : batch) {
+            String wallet = walletOf.apply(uuid);
+            if (wallet != null) wallets.add(wallet);
+        }
+        if (wallets.isEmpty()) return;
+        tokens -= wallets.size();
+        long readStart = System.nanoTime();
+        Set<String> read = source.read(wallets);
+        for (UUID uuid : batch) {
+            String wallet = walletOf.apply(uuid);
+            // Failed reads go back in the queue for the next cycle
+            if (wallet != null && !read.contains(wallet) && online.contains(uuid)) due.add(uuid);
+        }
+        observe(System.nanoTime() - readStart, (wallets.size() - read.size()) / (double) wallets.size());
+        metrics.walletsPolled(read.size(), wallets.size() - read.size());
+        logger.fine("Polled " + read.size() + " wallets in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+                + "ms, " + due.size() + " still queued");
+    }
+
+    private void markChanged(Set<String> changed) {
+        for (UUID uuid : online) {
+            if (changed == null) {
+                due.add(uuid);
+                continue;
+            }
+            String wallet = walletOf.apply(uuid);
+            if (wallet != null && changed.contains(wallet.toLowerCase())) due.add(uuid);
+        }
+    }
+
+    // Players who traded recently come first, then the most recently active
+    private List<UUID> takeHighestPriority(int limit) {
+        long now = System.currentTimeMillis();
+        List<UUID> candidates = new ArrayList<>(due);
+        candidates.sort(Comparator
+                .comparing((UUID uuid) -> now - lastTraded.getOrDefault(uuid, 0L) > TRADE_PRIORITY_MILLIS)
+                .thenComparing(uuid -> -lastActive.getOrDefault(uuid, 0L)));
+        List<UUID> batch = new ArrayList<>(candidates.subList(0, Math.min(limit, candidates.size())));
+        due.removeAll(batch);
+        return batch;
+    }
+
+    /**
+     * The bucket holds at most one interval's worth of requests, so an idle
+     * period can't turn into a burst, but never less than one log sync, or a
+     * low budget would keep the sync from ever running.
+     */
+    private void refillTokens() {
+        long now = System.nanoTime();
+        double elapsedSeconds = (now - lastRefill) / 1e9;
+        lastRefill = now;
+        double capacity = Math.max(eventsMode ? LOG_SYNC_REQUESTS : 1.0, requestsPerSecond * intervalMillis / 1000.0);
+        tokens = Math.min(capacity, tokens + elapsedSeconds * requestsPerSecond);
+    }
+
+    private void observe(long elapsedNanos, double cycleErrorRate) {
+        latencyMillis = latencyMillis == 0 ? TimeUnit.NANOSECONDS.toMillis(elapsedNanos)
+                : latencyMillis + EWMA_WEIGHT * (TimeUnit.NANOSECONDS.toMillis(elapsedNanos) - latencyMillis);
+        errorRate = errorRate + EWMA_WEIGHT * (cycleErrorRate - errorRate);
+        lastCycleErrorRate = cycleErrorRate;
+    }
+
+    /**
+     * Backs off exponentially while the endpoint is slow or failing. Once a
+     * cycle succeeds again the interval shrinks toward the configured one, or
+     * below it down to the minimum while wallets are still queued.
+     */
+    private void adaptInterval() {
+        long interval = intervalMillis;
+        boolean failing = errorRate > MAX_ERROR_RATE && lastCycleErrorRate > 0;
+        if (failing || latencyMillis > slowLatencyMillis) {
+            interval = Math.min(maxIntervalMillis, interval * 2);
+        } else if (!due.isEmpty()) {
+            interval = Math.max(minIntervalMillis, interval * 3 / 4);
+        } else if (interval > baseIntervalMillis) {
+            interval = Math.max(baseIntervalMillis, interval * 3 / 4);
+        } else if (interval < baseIntervalMillis) {
+            interval = Math.min(baseIntervalMillis, interval * 4 / 3);
+        }
+        if (interval != intervalMillis) {
+            logger.fine("Poll interval " + intervalMillis + "ms -> " + interval + "ms (latency "
+                    + Math.round(latencyMillis) + "ms, error rate " + Math.round(errorRate * 100) + "%)");
+            intervalMillis = interval;
+        }
+    }
+
+    private synchronized void scheduleNext(long cycleGeneration) {
+        if (nextCycle == null || cycleGeneration != generation || pollThread.isShutdown()) return;
+        nextCycle = pollThread.schedule(() -> cycle(cycleGeneration), intervalMillis, TimeUnit.MILLISECONDS);
+    }
+}
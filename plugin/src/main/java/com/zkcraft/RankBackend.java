@@ -0,0 +1,30 @@
+package com.zkcraft;
+
+import org.bukkit.entity.Player;
+
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Where granted ranks end up: LuckPerms groups when LuckPerms is installed,
+ * player metadata otherwise. Changes may be buffered; flush hands them to
+ * the backend and is called once per tick and on shutdown, where its
+ * future is waited on so the last tick's changes are saved.
+ */
+interface RankBackend {
+    void grant(Player player, String rank);
+
+    void revoke(Player player, String rank);
+
+    // Whether the online player already holds the rank, changes not flushed yet aside
+    boolean holds(Player player, String rank);
+
+    // Completes once the flushed changes are saved, failed ones included; those are logged
+    CompletableFuture<Void> flush();
+
+    // Players, online or not, who currently hold the rank; call it from the main thread
+    CompletableFuture<Set<UUID>> members(String rank);
+
+    String name();
+}
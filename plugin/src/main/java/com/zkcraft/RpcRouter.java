@@ -0,0 +1,242 @@
+package com.zkcraft;
+
+import io.reactivex.Flowable;
+
+import okhttp3.ConnectionPool;
+import okhttp3.OkHttpClient;
+
+import org.web3j.protocol.Web3jService;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.BatchResponse;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.exceptions.ClientConnectionException;
+import org.web3j.protocol.http.HttpService;
+import org.web3j.protocol.websocket.events.Notification;
+import org.web3j.utils.Async;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * A Web3jService over several RPC endpoints. Reads go to the endpoint with
+ * the lowest recent median latency and fail over to the next one on errors;
+ * writes, and the nonce and receipt queries that go with them, stay pinned
+ * to one endpoint so its view of the sender's nonce is consistent. All
+ * endpoints share one OkHttp client, so connections are pooled and kept
+ * alive across them and responses are transparently gzip-decoded.
+ */
+class RpcRouter implements Web3jService {
+    // Methods whose answers depend on the node's mempool, so they must hit the node the transaction was sent to
+    private static final Set<String> PINNED_METHODS = new HashSet<>(Arrays.asList(
+            "eth_sendRawTransaction", "eth_sendTransaction", "eth_getTransactionCount",
+            "eth_getTransactionByHash", "eth_getTransactionReceipt"));
+    private static final int LATENCY_SAMPLES = 32;
+
+    private final OkHttpClient httpClient;
+    // Replaced as a whole by reconfigure, so a request never sees it half-updated
+    private volatile List<Endpoint> endpoints;
+    private volatile long failureCooldownMillis;
+    private final Logger logger;
+    private volatile Endpoint writeEndpoint;
+
+    RpcRouter(List<String> urls, int maxIdleConnections, long keepAliveSeconds, long timeoutMillis, long failureCooldownMillis, Logger logger) {
+        if (urls.isEmpty()) throw new IllegalArgumentException("No RPC endpoints configured");
+        this.httpClient = new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(Math.max(1, maxIdleConnections), keepAliveSeconds, TimeUnit.SECONDS))
+                .connectTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
+                .readTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
+                .writeTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
+                .retryOnConnectionFailure(true)
+                .build();
+        List<Endpoint> created = new ArrayList<>();
+        for (String url : urls) {
+            created.add(new Endpoint(url, new HttpService(url, httpClient)));
+        }
+        this.endpoints = created;
+        this.writeEndpoint = created.get(0);
+        this.failureCooldownMillis = failureCooldownMillis;
+        this.logger = logger;
+    }
+
+    @Override
+    public <T extends Response> T send(Request request, Class<T> responseType) throws IOException {
+        if (PINNED_METHODS.contains(request.getMethod())) {
+            return sendPinned(endpoint -> endpoint.service.send(request, responseType));
+        }
+        return sendRouted(endpoint -> endpoint.service.send(request, responseType));
+    }
+
+    @Override
+    public <T extends Response> CompletableFuture<T> sendAsync(Request request, Class<T> responseType) {
+        return Async.run(() -> send(request, responseType));
+    }
+
+    @Override
+    public BatchResponse sendBatch(BatchRequest batchRequest) throws IOException {
+        for (Request<?, ? extends Response<?>> request : batchRequest.getRequests()) {
+            if (PINNED_METHODS.contains(request.getMethod())) {
+                return sendPinned(endpoint -> endpoint.service.sendBatch(batchRequest));
+            }
+        }
+        return sendRouted(endpoint -> endpoint.service.sendBatch(batchRequest));
+    }
+
+    @Override
+    public CompletableFuture<BatchResponse> sendBatchAsync(BatchRequest batchRequest) {
+        return Async.run(() -> sendBatch(batchRequest));
+    }
+
+    @Override
+    public <T extends Notification<?>> Flowable<T> subscribe(Request request, String unsubscribeMethod, Class<T> responseType) {
+        throw new UnsupportedOperationException("RPC router endpoints are HTTP and do not support subscriptions");
+    }
+
+    @Override
+    public void close() {
+        httpClient.dispatcher().executorService().shutdown();
+        httpClient.connectionPool().evictAll();
+    }
+
+    /**
+     * Swaps in a new endpoint list on the same OkHttp client, so a reload
+     * that only changes URLs keeps the pooled connections. Endpoints that
+     * stay keep their latency samples; if the write endpoint is dropped,
+     * writes move to the first of the new list.
+     */
+    void reconfigure(List<String> urls, long failureCooldownMillis) {
+        if (urls.isEmpty()) throw new IllegalArgumentException("No RPC endpoints configured");
+        List<Endpoint> updated = new ArrayList<>();
+        for (String url : urls) {
+            Endpoint existing = null;
+            for (Endpoint endpoint : endpoints) {
+                if (endpoint.url.equals(url)) existing = endpoint;
+            }
+            updated.add(existing != null ? existing : new Endpoint(url, new HttpService(url, httpClient)));
+        }
+        this.failureCooldownMillis = failureCooldownMillis;
+        this.endpoints = updated;
+        if (!updated.contains(writeEndpoint)) {
+            writeEndpoint = updated.get(0);
+            logger.info("Write endpoint is no longer configured, pinning writes to " + writeEndpoint.url);
+        }
+    }
+
+    // One line per endpoint for /zkc info
+    List<String> describe() {
+        List<String> lines = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (Endpoint endpoint : endpoints) {
+            lines.add(endpoint.url + (endpoint == writeEndpoint ? " (writes)" : "") + ": p50 " + endpoint.medianLatencyMillis() + "ms"
+                    + (endpoint.coolingDown(now) ? ", failing" : ""));
+        }
+        return lines;
+    }
+
+    private <T> T sendRouted(Call<T> call) throws IOException {
+        Exception lastError = null;
+        for (Endpoint endpoint : readOrder()) {
+            try {
+                return endpoint.timed(call);
+            } catch (IOException | ClientConnectionException e) {
+                lastError = e;
+                logger.fine("RPC read from " + endpoint.url + " failed, trying the next endpoint: " + e.getMessage());
+            }
+        }
+        if (lastError instanceof IOException) throw (IOException) lastError;
+        throw (ClientConnectionException) lastError;
+    }
+
+    /**
+     * Writes go to the pinned endpoint only. If it can't be reached the pin
+     * moves to the fastest healthy endpoint for later calls, and the caller
+     * sees the error; the transaction pipeline then resyncs its nonce.
+     */
+    private <T> T sendPinned(Call<T> call) throws IOException {
+        Endpoint pinned = writeEndpoint;
+        try {
+            return pinned.timed(call);
+        } catch (IOException | ClientConnectionException e) {
+            for (Endpoint candidate : readOrder()) {
+                if (candidate != pinned) {
+                    writeEndpoint = candidate;
+                    logger.warning("RPC endpoint " + pinned.url + " failed for a write, pinning writes to " + candidate.url);
+                    break;
+                }
+            }
+            throw e;
+        }
+    }
+
+    // Healthy endpoints by median latency, then the ones cooling down after a failure as a last resort
+    private List<Endpoint> readOrder() {
+        long now = System.currentTimeMillis();
+        List<Endpoint> healthy = new ArrayList<>();
+        List<Endpoint> coolingDown = new ArrayList<>();
+        for (Endpoint endpoint : endpoints) {
+            (endpoint.coolingDown(now) ? coolingDown : healthy).add(endpoint);
+        }
+        healthy.sort(Comparator.comparingLong(Endpoint::medianLatencyMillis));
+        coolingDown.sort(Comparator.comparingLong(endpoint -> endpoint.failedAt));
+        healthy.addAll(coolingDown);
+        return healthy;
+    }
+
+    private interface Call<T> {
+        T send(Endpoint endpoint) throws IOException;
+    }
+
+    private final class Endpoint {
+        final String url;
+        final HttpService service;
+        private final long[] latencies = new long[LATENCY_SAMPLES];
+        private int samples;
+        private int next;
+        volatile long failedAt;
+
+        Endpoint(String url, HttpService service) {
+            this.url = url;
+            this.service = service;
+        }
+
+        // ClientConnectionException is unchecked in web3j and means the endpoint answered with an HTTP error
+        <T> T timed(Call<T> call) throws IOException {
+            long start = System.nanoTime();
+            try {
+                T result = call.send(this);
+                recordLatency(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                failedAt = 0;
+                return result;
+            } catch (IOException | ClientConnectionException e) {
+                failedAt = System.currentTimeMillis();
+                throw e;
+            }
+        }
+
+        boolean coolingDown(long now) {
+            return failedAt != 0 && now - failedAt < failureCooldownMillis;
+        }
+
+        private synchronized void recordLatency(long millis) {
+            latencies[next] = millis;
+            next = (next + 1) % latencies.length;
+            if (samples < latencies.length) samples++;
+        }
+
+        // Endpoints without samples sort first, so each one gets measured
+        synchronized long medianLatencyMillis() {
+            if (samples == 0) return 0;
+            long[] sorted = Arrays.copyOf(latencies, samples);
+            Arrays.sort(sorted);
+            return sorted[samples / 2];
+        }
+    }
+}
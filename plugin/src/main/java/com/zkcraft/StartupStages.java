@@ -0,0 +1,102 @@
+package com.zkcraft;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Logger;
+
+/**
+ * Runs the startup stages that don't need the main thread in parallel and
+ * logs how long each one took. The plugin marks itself ready once every
+ * stage has finished, failed or not, and the main thread has wired up what
+ * depends on them; until then commands reply that it is starting up and the
+ * poller is not started.
+ */
+class StartupStages {
+    interface Stage {
+        void run() throws Exception;
+    }
+
+    private final Logger logger;
+    private final ExecutorService executor;
+    private final long startedAt = System.nanoTime();
+    private final Map<String, CompletableFuture<Void>> stages = new LinkedHashMap<>();
+    private volatile boolean ready;
+
+    StartupStages(int threads, Logger logger) {
+        this.logger = logger;
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threads),
+                new ThreadFactoryBuilder().setNameFormat("ZKCraftTrade-Startup-%d").setDaemon(true).build());
+    }
+
+    // A failed stage is logged and doesn't hold back the others; the plugin falls back where it can
+    synchronized CompletableFuture<Void> run(String name, Stage stage) {
+        CompletableFuture<Void> future = CompletableFuture.runAsync(() -> {
+            long start = System.nanoTime();
+            try {
+                stage.run();
+                logger.info("Startup stage '" + name + "' finished in " + millisSince(start) + "ms");
+            } catch (Exception e) {
+                logger.severe("Startup stage '" + name + "' failed after " + millisSince(start) + "ms: " + e.getMessage());
+            }
+        }, executor);
+        stages.put(name, future);
+        return future;
+    }
+
+    // Completes once every stage started so far has finished
+    synchronized CompletableFuture<Void> whenStagesDone() {
+        List<CompletableFuture<Void>> running = new ArrayList<>(stages.values());
+        return CompletableFuture.allOf(running.toArray(new CompletableFuture<?>[0]));
+    }
+
+    /**
+     * Blocks until the named stage finished or the timeout passed, and
+     * returns whether it finished. Only for threads that may wait, such as
+     * the async pre-login; never the main thread.
+     */
+    boolean await(String name, long timeoutMillis) {
+        CompletableFuture<Void> stage;
+        synchronized (this) {
+            stage = stages.get(name);
+        }
+        if (stage == null) return true;
+        try {
+            stage.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            return true;
+        }
+    }
+
+    void markReady() {
+        ready = true;
+        executor.shutdown();
+        logger.info("ZKCraftTrade ready " + millisSince(startedAt) + "ms after enabling");
+    }
+
+    boolean isReady() {
+        return ready;
+    }
+
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static long millisSince(long start) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+}
@@ -0,0 +1,461 @@
+package com.zkcraft;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import org.web3j.crypto.Credentials;
+import org.web3j.crypto.Hash;
+import org.web3j.crypto.RawTransaction;
+import org.web3j.crypto.TransactionEncoder;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.BatchResponse;
+import org.web3j.protocol.core.DefaultBlockParameterName;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.core.methods.response.EthGetTransactionReceipt;
+import org.web3j.protocol.core.methods.response.EthSendTransaction;
+import org.web3j.protocol.core.methods.response.TransactionReceipt;
+import org.web3j.tx.gas.ContractGasProvider;
+import org.web3j.utils.Numeric;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Signs and sends contract transactions with locally tracked nonces so
+ * several can be in flight at once. Submitted calls are queued and sent in
+ * order by one sender thread, which waits while the in-flight limit is
+ * reached, so callers never block. A send the node rejects for its nonce
+ * is re-signed with the node's nonce and sent again, and a send whose
+ * outcome is unknown (e.g. a timeout) keeps its nonce and is tracked by
+ * hash as if it went out. Receipts for every pending hash are polled
+ * together in one batch request, and transactions that drop out of the
+ * mempool are re-signed with the same nonce and a higher gas price. A nonce
+ * given up on is taken by a 0-value transfer to our own address, so later
+ * transactions are not stuck behind the gap. Every RPC goes through the
+ * circuit breaker. A pipeline a reload replaced hands what it hasn't sent
+ * to its successor, so two never sign nonces for one account at once.
+ */
+class TransactionPipeline {
+    private final Web3j web3j;
+    private final Credentials credentials;
+    private final long chainId;
+    private final String contractAddress;
+    private final ContractGasProvider gasProvider;
+    private final CircuitBreaker breaker;
+    private final Metrics metrics;
+    private final Logger logger;
+    private final Semaphore inFlight;
+    private final long resubmitAfterMillis;
+    private final int maxResubmits;
+    private static final int MAX_NONCE_RETRIES = 3;
+    private static final BigInteger FILLER_GAS_LIMIT = BigInteger.valueOf(21_000);
+
+    private final Map<String, PendingTransaction> pending = new ConcurrentHashMap<>();
+    // Submitted but not sent yet
+    private final Set<PendingTransaction> queued = ConcurrentHashMap.newKeySet();
+    // Fillers for abandoned nonces the node did not take yet, retried by the receipt poller
+    private final Queue<PendingTransaction> unfilled = new ConcurrentLinkedQueue<>();
+    private final ExecutorService sender;
+    private final ScheduledExecutorService receiptPoller;
+    private final Object nonceLock = new Object();
+    private BigInteger nextNonce;
+    // Set under nonceLock once everything unsent went to it
+    private volatile TransactionPipeline successor;
+
+    TransactionPipeline(Web3j web3j, Credentials credentials, long chainId, String contractAddress, ContractGasProvider gasProvider,
+                        CircuitBreaker breaker, int maxInFlight, long receiptPollMillis, long resubmitAfterMillis, int maxResubmits,
+                        Metrics metrics, Logger logger) {
+        this.web3j = web3j;
+        this.credentials = credentials;
+        this.chainId = chainId;
+        this.contractAddress = contractAddress;
+        this.gasProvider = gasProvider;
+        this.breaker = breaker;
+        this.inFlight = new Semaphore(Math.max(1, maxInFlight));
+        this.resubmitAfterMillis = resubmitAfterMillis;
+        this.maxResubmits = maxResubmits;
+        this.metrics = metrics;
+        this.logger = logger;
+        this.sender = Executors.newSingleThreadExecutor(
+                new ThreadFactoryBuilder().setNameFormat("ZKCraftTrade-Sender").setDaemon(true).build());
+        this.receiptPoller = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("ZKCraftTrade-Receipts").setDaemon(true).build());
+        this.receiptPoller.scheduleWithFixedDelay(this::pollReceipts, receiptPollMillis, receiptPollMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Queues a call to the contract to be signed and sent, and returns
+     * without waiting for either. The future completes with the receipt, or
+     * fails if the transaction reverted or could not be sent or confirmed.
+     * Its latency, from sending to the receipt, is recorded under the
+     * function's name.
+     */
+    CompletableFuture<TransactionReceipt> submit(String functionName, String encodedFunction) {
+        CompletableFuture<TransactionReceipt> future = new CompletableFuture<>();
+        enqueue(new PendingTransaction(functionName, contractAddress, encodedFunction, future));
+        return future;
+    }
+
+    private void enqueue(PendingTransaction tx) {
+        TransactionPipeline next = successor;
+        if (next != null) {
+            next.enqueue(tx);
+            return;
+        }
+        queued.add(tx);
+        try {
+            sender.execute(() -> sendQueued(tx));
+        } catch (RejectedExecutionException e) {
+            // Not there any more if a hand-over already took it
+            if (!queued.remove(tx)) return;
+            next = successor;
+            if (next != null) {
+                next.enqueue(tx);
+            } else {
+                tx.future.completeExceptionally(new IOException("Transaction pipeline shut down before " + tx.functionName + " was sent"));
+            }
+        }
+    }
+
+    /**
+     * For a pipeline a reload replaced with one sending from the same
+     * account: stops sending and passes the calls not sent yet, in order, to
+     * successor, which continues from this one's next nonce. This one then
+     * only confirms and re-sends what it already sent, until drained. Does
+     * nothing for a successor sending from another account, since their
+     * nonces can't collide. Call before successor takes any submissions.
+     */
+    void handOver(TransactionPipeline successor) {
+        if (chainId != successor.chainId || !credentials.getAddress().equalsIgnoreCase(successor.credentials.getAddress())) return;
+        synchronized (nonceLock) {
+            if (nextNonce != null) {
+                synchronized (successor.nonceLock) {
+                    if (successor.nextNonce == null || successor.nextNonce.compareTo(nextNonce) < 0) successor.nextNonce = nextNonce;
+                }
+            }
+            this.successor = successor;
+            List<PendingTransaction> unsent = new ArrayList<>(queued);
+            unsent.sort(Comparator.comparingLong(tx -> tx.sequence));
+            for (PendingTransaction tx : unsent) {
+                if (queued.remove(tx)) successor.enqueue(tx);
+            }
+            // Only after the queue is empty, or a send waiting for a slot would fail its call when interrupted
+            sender.shutdownNow();
+        }
+    }
+
+    int pendingCount() {
+        return pending.size() + queued.size();
+    }
+
+    /**
+     * For a pipeline a reload replaced: keeps polling receipts until nothing
+     * is pending or timeoutMillis passed, then shuts down. Returns how many
+     * transactions were still unconfirmed and got failed.
+     */
+    int drain(long timeoutMillis) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        try {
+            while ((!pending.isEmpty() || !queued.isEmpty()) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(100);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        int unconfirmed = pendingCount();
+        shutdown();
+        return unconfirmed;
+    }
+
+    void shutdown() {
+        sender.shutdownNow();
+        receiptPoller.shutdownNow();
+        for (PendingTransaction tx : queued) {
+            if (queued.remove(tx)) tx.future.completeExceptionally(new IOException("Transaction pipeline shut down before " + tx.functionName + " was sent"));
+        }
+        for (PendingTransaction tx : pending.values()) {
+            tx.future.completeExceptionally(new IOException("Transaction pipeline shut down before " + tx.hash + " was confirmed"));
+        }
+        pending.clear();
+    }
+
+    // On the sender thread; waits for an in-flight slot so transactions go out in the order they were submitted
+    private void sendQueued(PendingTransaction tx) {
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (queued.remove(tx)) tx.future.completeExceptionally(new IOException("Transaction pipeline shut down before " + tx.functionName + " was sent"));
+            return;
+        }
+        synchronized (nonceLock) {
+            // Already failed by a shutdown, or handed to a successor
+            if (!queued.remove(tx)) {
+                inFlight.release();
+                return;
+            }
+            long start = System.nanoTime();
+            Metrics.ContractCall call = Metrics.ContractCall.of(tx.functionName);
+            tx.future.whenComplete((receipt, error) -> {
+                inFlight.release();
+                if (call != null) metrics.contractCall(call, System.nanoTime() - start, error);
+            });
+            try {
+                if (nextNonce == null) nextNonce = fetchPendingNonce();
+                tx.gasPrice = gasProvider.getGasPrice(tx.functionName);
+                for (int attempt = 0; ; attempt++) {
+                    tx.nonce = nextNonce;
+                    try {
+                        send(tx);
+                        break;
+                    } catch (NonceMismatchException e) {
+                        // Our nonce view is wrong (e.g. another sender used the key), take the node's again
+                        nextNonce = fetchPendingNonce();
+                        logger.warning("Nonce mismatch while sending " + tx.functionName + ", resynced nonce to " + nextNonce);
+                        if (attempt >= MAX_NONCE_RETRIES) throw e;
+                    }
+                }
+                nextNonce = nextNonce.add(BigInteger.ONE);
+            } catch (Exception e) {
+                tx.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    /*
+     * Caller holds nonceLock. Throws only when the node certainly did not take
+     * the transaction: NonceMismatchException if its nonce is already used.
+     * When the call itself failed the node may still have taken it, so it is
+     * tracked by hash anyway; if it never arrived, resubmitDropped re-sends it.
+     */
+    private void send(PendingTransaction tx) throws IOException {
+        RawTransaction raw = tx.isFiller()
+                ? RawTransaction.createEtherTransaction(tx.nonce, tx.gasPrice, FILLER_GAS_LIMIT, credentials.getAddress(), BigInteger.ZERO)
+                : RawTransaction.createTransaction(tx.nonce, tx.gasPrice, gasProvider.getGasLimit(tx.functionName), tx.to, tx.encodedFunction);
+        String signed = Numeric.toHexString(TransactionEncoder.signMessage(raw, chainId, credentials));
+        String hash = Hash.sha3(signed);
+        EthSendTransaction response;
+        try {
+            response = rpc(() -> web3j.ethSendRawTransaction(signed).send());
+        } catch (CircuitBreaker.OpenException e) {
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            logger.warning("Sending " + tx.functionName + " with nonce " + tx.nonce + " failed (" + e.getMessage() + "), tracking it as " + hash);
+            track(tx, hash);
+            return;
+        }
+        if (response.hasError()) {
+            String message = response.getError().getMessage();
+            String lower = message != null ? message.toLowerCase() : "";
+            if (!lower.contains("already known")) {
+                // "nonce too low", or "replacement transaction underpriced" when the node holds another transaction with it
+                if (lower.contains("nonce") || lower.contains("replacement")) {
+                    throw new NonceMismatchException("Failed to send " + tx.functionName + ": " + message);
+                }
+                throw new IOException("Failed to send " + tx.functionName + ": " + message);
+            }
+        }
+        track(tx, hash);
+    }
+
+    private void track(PendingTransaction tx, String hash) {
+        if (tx.hash != null) pending.remove(tx.hash);
+        tx.hash = hash;
+        tx.sentAt = System.currentTimeMillis();
+        pending.put(hash, tx);
+    }
+
+    // Caller holds nonceLock. A nonce nothing takes would keep every later one queued in the node forever
+    private void fillNonce(BigInteger nonce, BigInteger gasPrice) {
+        PendingTransaction filler = new PendingTransaction("nonce filler", credentials.getAddress(), null, new CompletableFuture<>());
+        filler.nonce = nonce;
+        filler.gasPrice = gasPrice;
+        sendFiller(filler);
+    }
+
+    // Caller holds nonceLock
+    private void sendFiller(PendingTransaction filler) {
+        try {
+            send(filler);
+            logger.warning("Filled abandoned nonce " + filler.nonce + " with " + filler.hash);
+        } catch (NonceMismatchException e) {
+            // Something else took the nonce, so there is no gap
+        } catch (IOException e) {
+            logger.warning("Failed to fill abandoned nonce " + filler.nonce + ", retrying: " + e.getMessage());
+            filler.sentAt = System.currentTimeMillis();
+            unfilled.add(filler);
+        }
+    }
+
+    private void retryFillers() {
+        long now = System.currentTimeMillis();
+        for (int i = unfilled.size(); i > 0; i--) {
+            PendingTransaction filler = unfilled.poll();
+            if (filler == null) break;
+            if (now - filler.sentAt < resubmitAfterMillis) {
+                unfilled.add(filler);
+                continue;
+            }
+            synchronized (nonceLock) {
+                sendFiller(filler);
+            }
+        }
+    }
+
+    private static BigInteger bumped(BigInteger gasPrice) {
+        return gasPrice.multiply(BigInteger.valueOf(110)).divide(BigInteger.valueOf(100)).add(BigInteger.ONE);
+    }
+
+    private BigInteger fetchPendingNonce() throws IOException {
+        return rpc(() -> web3j.ethGetTransactionCount(credentials.getAddress(), DefaultBlockParameterName.PENDING).send()).getTransactionCount();
+    }
+
+    private <T> T rpc(Callable<T> call) throws IOException {
+        try {
+            return breaker.call(call);
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    private void pollReceipts() {
+        retryFillers();
+        if (pending.isEmpty()) return;
+        try {
+            List<PendingTransaction> snapshot = new ArrayList<>(pending.values());
+            BatchRequest batch = web3j.newBatch();
+            Map<Long, PendingTransaction> byId = new HashMap<>();
+            for (PendingTransaction tx : snapshot) {
+                Request<?, EthGetTransactionReceipt> request = web3j.ethGetTransactionReceipt(tx.hash);
+                byId.put(request.getId(), tx);
+                batch.add(request);
+            }
+            BatchResponse response = rpc(batch::send);
+            List<PendingTransaction> unconfirmed = new ArrayList<>();
+            for (Response<?> raw : response.getResponses()) {
+                PendingTransaction tx = byId.remove(raw.getId());
+                if (tx == null || !(raw instanceof EthGetTransactionReceipt)) continue;
+                TransactionReceipt receipt = ((EthGetTransactionReceipt) raw).getTransactionReceipt().orElse(null);
+                if (receipt == null) {
+                    unconfirmed.add(tx);
+                    continue;
+                }
+                pending.remove(tx.hash);
+                if (receipt.isStatusOK()) {
+                    tx.future.complete(receipt);
+                } else {
+                    tx.future.completeExceptionally(new IOException(tx.functionName + " reverted in " + tx.hash));
+                }
+            }
+            unconfirmed.addAll(byId.values());
+            resubmitDropped(unconfirmed);
+        } catch (Exception e) {
+            logger.warning("Failed to poll transaction receipts: " + e.getMessage());
+        }
+    }
+
+    // Transactions unconfirmed for too long and unknown to the node are re-signed with the same nonce. Fillers are never given up on
+    private void resubmitDropped(List<PendingTransaction> unconfirmed) throws IOException {
+        long now = System.currentTimeMillis();
+        BigInteger minedNonce = null;
+        for (PendingTransaction tx : unconfirmed) {
+            if (now - tx.sentAt < resubmitAfterMillis) continue;
+            if (rpc(() -> web3j.ethGetTransactionByHash(tx.hash).send()).getTransaction().isPresent()) continue;
+            if (minedNonce == null) {
+                minedNonce = rpc(() -> web3j.ethGetTransactionCount(credentials.getAddress(), DefaultBlockParameterName.LATEST).send()).getTransactionCount();
+            }
+            if (minedNonce.compareTo(tx.nonce) > 0) {
+                // The nonce was used by a transaction we no longer track, so this one can never be mined
+                pending.remove(tx.hash);
+                tx.future.completeExceptionally(new IOException(tx.functionName + " " + tx.hash + " was replaced on chain"));
+                continue;
+            }
+            if (tx.resubmits >= maxResubmits && !tx.isFiller()) {
+                pending.remove(tx.hash);
+                tx.future.completeExceptionally(new IOException(tx.functionName + " " + tx.hash + " was dropped " + tx.resubmits + " times"));
+                synchronized (nonceLock) {
+                    fillNonce(tx.nonce, bumped(tx.gasPrice));
+                }
+                continue;
+            }
+            synchronized (nonceLock) {
+                tx.resubmits++;
+                tx.gasPrice = bumped(tx.gasPrice);
+                String oldHash = tx.hash;
+                try {
+                    send(tx);
+                    logger.warning(tx.functionName + " " + oldHash + " was dropped, re-sent as " + tx.hash + " with nonce " + tx.nonce);
+                } catch (NonceMismatchException e) {
+                    // Taken by a transaction we don't track, so there is no gap
+                    pending.remove(oldHash);
+                    tx.future.completeExceptionally(e);
+                } catch (IOException e) {
+                    pending.remove(oldHash);
+                    tx.future.completeExceptionally(e);
+                    if (tx.isFiller()) {
+                        tx.sentAt = System.currentTimeMillis();
+                        unfilled.add(tx);
+                    } else {
+                        fillNonce(tx.nonce, tx.gasPrice);
+                    }
+                }
+            }
+        }
+    }
+
+    private static class NonceMismatchException extends IOException {
+        NonceMismatchException(String message) {
+            super(message);
+        }
+    }
+
+    private static class PendingTransaction {
+        private static final AtomicLong SUBMITTED = new AtomicLong();
+
+        final long sequence = SUBMITTED.getAndIncrement();
+        final String functionName;
+        // The contract it was submitted for, kept when a successor sends it
+        final String to;
+        final String encodedFunction;
+        final CompletableFuture<TransactionReceipt> future;
+        BigInteger nonce;
+        BigInteger gasPrice;
+        String hash;
+        long sentAt;
+        int resubmits;
+
+        PendingTransaction(String functionName, String to, String encodedFunction, CompletableFuture<TransactionReceipt> future) {
+            this.functionName = functionName;
+            this.to = to;
+            this.encodedFunction = encodedFunction;
+            this.future = future;
+        }
+
+        // A 0-value transfer to our own address taking an abandoned nonce
+        boolean isFiller() {
+            return encodedFunction == null;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.zkcraft;
+
+import com.google.common.hash.Hashing;
+
+import org.bukkit.inventory.ItemStack;
+import org.web3j.crypto.Hash;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The Merkle tree ZKCAsset commits a vault with. Leaves are in slot order,
+ * each the double keccak256 of the slot number and the SHA-256 of the
+ * slot's encoded item (zero for an empty slot), as vaultLeaf computes it on
+ * chain. Pairs are hashed in sorted order and an odd node is carried up as
+ * it is, which is what OpenZeppelin's MerkleProof expects, so a proof built
+ * here verifies with verifyVaultSlot.
+ */
+final class VaultMerkle {
+    static final byte[] EMPTY = new byte[32];
+
+    private VaultMerkle() {
+    }
+
+    static byte[] itemHash(ItemStack item) throws IOException {
+        if (item == null) return EMPTY;
+        return Hashing.sha256().hashBytes(ItemCodec.encode(item)).asBytes();
+    }
+
+    static byte[] leaf(int slot, byte[] itemHash) {
+        byte[] encoded = new byte[64];
+        byte[] slotBytes = BigInteger.valueOf(slot).toByteArray();
+        System.arraycopy(slotBytes, 0, encoded, 32 - slotBytes.length, slotBytes.length);
+        System.arraycopy(itemHash, 0, encoded, 32, 32);
+        return Hash.sha3(Hash.sha3(encoded));
+    }
+
+    static List<byte[]> leaves(byte[][] itemHashes) {
+        List<byte[]> leaves = new ArrayList<>(itemHashes.length);
+        for (int slot = 0; slot < itemHashes.length; slot++) leaves.add(leaf(slot, itemHashes[slot]));
+        return leaves;
+    }
+
+    // Zero for a vault with nothing in it, matching what the contract holds for a wallet that never stored one
+    static byte[] root(byte[][] itemHashes) {
+        boolean empty = true;
+        for (byte[] itemHash : itemHashes) {
+            if (!isEmpty(itemHash)) {
+                empty = false;
+                break;
+            }
+        }
+        if (empty) return EMPTY;
+        List<List<byte[]>> levels = levels(leaves(itemHashes));
+        return levels.get(levels.size() - 1).get(0);
+    }
+
+    // The siblings from the leaf of slot up to the root
+    static List<byte[]> proof(byte[][] itemHashes, int slot) {
+        List<List<byte[]>> levels = levels(leaves(itemHashes));
+        List<byte[]> proof = new ArrayList<>();
+        int index = slot;
+        for (int level = 0; level < levels.size() - 1; level++) {
+            int sibling = index ^ 1;
+            if (sibling < levels.get(level).size()) proof.add(levels.get(level).get(sibling));
+            index >>= 1;
+        }
+        return proof;
+    }
+
+    static boolean verify(List<byte[]> proof, byte[] root, int slot, byte[] itemHash) {
+        if (isEmpty(root)) return false;
+        byte[] node = leaf(slot, itemHash);
+        for (byte[] sibling : proof) node = hashPair(node, sibling);
+        return Arrays.equals(node, root);
+    }
+
+    static boolean isEmpty(byte[] hash) {
+        for (byte b : hash) {
+            if (b != 0) return false;
+        }
+        return true;
+    }
+
+    private static List<List<byte[]>> levels(List<byte[]> leaves) {
+        List<List<byte[]>> levels = new ArrayList<>();
+        levels.add(leaves);
+        while (levels.get(levels.size() - 1).size() > 1) {
+            List<byte[]> level = levels.get(levels.size() - 1);
+            List<byte[]> next = new ArrayList<>((level.size() + 1) / 2);
+            for (int i = 0; i < level.size(); i += 2) {
+                next.add(i + 1 < level.size() ? hashPair(level.get(i), level.get(i + 1)) : level.get(i));
+            }
+            levels.add(next);
+        }
+        return levels;
+    }
+
+    private static byte[] hashPair(byte[] a, byte[] b) {
+        byte[] pair = new byte[64];
+        boolean aFirst = compareUnsigned(a, b) < 0;
+        System.arraycopy(aFirst ? a : b, 0, pair, 0, 32);
+        System.arraycopy(aFirst ? b : a, 0, pair, 32, 32);
+        return Hash.sha3(pair);
+    }
+
+    private static int compareUnsigned(byte[] a, byte[] b) {
+        for (int i = 0; i < a.length; i++) {
+            int difference = (a[i] & 0xFF) - (b[i] & 0xFF);
+            if (difference != 0) return difference;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,357 @@
+package com.zkcraft;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import org.bukkit.inventory.ItemStack;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Logger;
+
+/**
+ * Paged vaults, one per player, each kept in its own file under the vault
+ * folder: the wallet the vault is committed to and the last root the chain
+ * confirmed for it, then every slot as one ItemCodec bulk record, so an
+ * empty slot takes a byte. Loads, updates, unloads and file writes all run
+ * on one vault thread in the order they were asked for, so a page opened
+ * right after a close sees that close's changes and the main thread never
+ * touches the files. Vaults are loaded when opened and dropped when their
+ * owner leaves with nothing left to commit; at startup only those whose
+ * root the chain hasn't confirmed are loaded, so their commit can be
+ * retried.
+ */
+class VaultStore {
+    static final int PAGE_SIZE = 54;
+    private static final int MAGIC = 0x5A56; // "ZV"
+    private static final int VERSION = 1;
+
+    static final class Vault {
+        final UUID player;
+        String wallet;
+        ItemStack[] slots;
+        byte[][] itemHashes;
+        byte[] root;
+        // Null until the chain confirmed a root for wallet
+        byte[] committedRoot;
+        // A setVaultRoot still waiting for its receipt
+        Commit committing;
+
+        private Vault(UUID player, String wallet, ItemStack[] slots, byte[][] itemHashes, byte[] committedRoot) {
+            this.player = player;
+            this.wallet = wallet;
+            this.slots = slots;
+            this.itemHashes = itemHashes;
+            this.root = VaultMerkle.root(itemHashes);
+            this.committedRoot = committedRoot;
+        }
+
+        private boolean uncommitted() {
+            return wallet != null && !Arrays.equals(root, committedRoot);
+        }
+    }
+
+    static final class Commit {
+        final Vault vault;
+        final String wallet;
+        final byte[] root;
+
+        private Commit(Vault vault, String wallet, byte[] root) {
+            this.vault = vault;
+            this.wallet = wallet;
+            this.root = root;
+        }
+    }
+
+    private final File folder;
+    private final Logger logger;
+    private final ExecutorService ioThread;
+    private final Map<UUID, Vault> vaults = new HashMap<>();
+
+    VaultStore(File folder, Logger logger) {
+        this.folder = folder;
+        this.logger = logger;
+        this.ioThread = Executors.newSingleThreadExecutor(
+                new ThreadFactoryBuilder().setNameFormat("ZKCraftTrade-Vaults").setDaemon(true).build());
+    }
+
+    synchronized void open() throws IOException {
+        if (!folder.exists()) folder.mkdirs();
+        File[] files = folder.listFiles((dir, name) -> name.endsWith(".vault"));
+        if (files == null) return;
+        for (File file : files) {
+            UUID player;
+            try {
+                player = UUID.fromString(file.getName().substring(0, file.getName().length() - ".vault".length()));
+            } catch (IllegalArgumentException e) {
+                continue;
+            }
+            try {
+                Vault vault = read(player, file);
+                if (vault.uncommitted()) vaults.put(player, vault);
+            } catch (IOException e) {
+                logger.severe("Failed to read vault " + file.getName() + ": " + e.getMessage());
+            }
+        }
+        if (!vaults.isEmpty()) logger.info(vaults.size() + " vaults have changes the chain hasn't confirmed yet");
+    }
+
+    // The vault of player with at least slotCount slots, loaded from its file or created empty
+    CompletableFuture<Vault> load(UUID player, int slotCount) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return get(player, slotCount);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, ioThread);
+    }
+
+    /**
+     * Replaces one page of vault with contents, ties the vault to wallet and
+     * saves it. Completes with whether its root changed, that is whether it
+     * needs a commit.
+     */
+    CompletableFuture<Boolean> updateAsync(Vault vault, int page, ItemStack[] contents, String wallet) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return update(vault, page, contents, wallet);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, ioThread);
+    }
+
+    // Keeps the vault while its root still has to reach the chain; after any update already asked for
+    void unload(UUID player) {
+        try {
+            ioThread.execute(() -> {
+                synchronized (this) {
+                    Vault vault = vaults.get(player);
+                    if (vault != null && !vault.uncommitted() && vault.committing == null) vaults.remove(player);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Closed, nothing left to free
+        }
+    }
+
+    // On the vault thread; the file is read outside the lock so the main thread never waits on it
+    private Vault get(UUID player, int slotCount) throws IOException {
+        Vault vault;
+        synchronized (this) {
+            vault = vaults.get(player);
+        }
+        if (vault == null) {
+            File file = fileOf(player);
+            Vault read = file.exists() ? read(player, file)
+                    : new Vault(player, null, new ItemStack[slotCount], emptyHashes(slotCount), null);
+            synchronized (this) {
+                vault = vaults.computeIfAbsent(player, ignored -> read);
+            }
+        }
+        synchronized (this) {
+            if (vault.slots.length < slotCount) grow(vault, slotCount);
+        }
+        return vault;
+    }
+
+    // Caller holds the lock
+    private void grow(Vault vault, int slotCount) {
+        int oldCount = vault.slots.length;
+        vault.slots = Arrays.copyOf(vault.slots, slotCount);
+        vault.itemHashes = Arrays.copyOf(vault.itemHashes, slotCount);
+        for (int slot = oldCount; slot < slotCount; slot++) vault.itemHashes[slot] = VaultMerkle.EMPTY;
+        // The slot count is part of the root, so a vault grown by a new vault.pages needs a commit too
+        vault.root = VaultMerkle.root(vault.itemHashes);
+        save(vault);
+    }
+
+    synchronized ItemStack[] page(Vault vault, int page) {
+        ItemStack[] contents = new ItemStack[PAGE_SIZE];
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            ItemStack item = vault.slots[page * PAGE_SIZE + i];
+            contents[i] = item != null ? item.clone() : null;
+        }
+        return contents;
+    }
+
+    // On the vault thread; items are hashed before the lock is taken
+    private boolean update(Vault vault, int page, ItemStack[] contents, String wallet) throws IOException {
+        ItemStack[] items = new ItemStack[PAGE_SIZE];
+        byte[][] itemHashes = new byte[PAGE_SIZE][];
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            items[i] = i < contents.length && contents[i] != null && !contents[i].getType().isAir() ? contents[i].clone() : null;
+            itemHashes[i] = VaultMerkle.itemHash(items[i]);
+        }
+        synchronized (this) {
+            return apply(vault, page, items, itemHashes, wallet);
+        }
+    }
+
+    // Caller holds the lock
+    private boolean apply(Vault vault, int page, ItemStack[] items, byte[][] itemHashes, String wallet) {
+        boolean changed = false;
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            int slot = page * PAGE_SIZE + i;
+            if (Arrays.equals(itemHashes[i], vault.itemHashes[slot])) continue;
+            vault.slots[slot] = items[i];
+            vault.itemHashes[slot] = itemHashes[i];
+            changed = true;
+        }
+        if (wallet != null && !wallet.equals(vault.wallet)) {
+            // Nothing is known about what the new wallet holds, so its root is always sent
+            vault.wallet = wallet;
+            vault.committedRoot = null;
+            changed = true;
+        }
+        if (!changed) return false;
+        vault.root = VaultMerkle.root(vault.itemHashes);
+        save(vault);
+        return vault.uncommitted();
+    }
+
+    // The root to send for vault, or null if it is committed or a commit is already in flight
+    synchronized Commit beginCommit(Vault vault) {
+        if (vault.committing != null || !vault.uncommitted()) return null;
+        vault.committing = new Commit(vault, vault.wallet, vault.root.clone());
+        return vault.committing;
+    }
+
+    synchronized void endCommit(Commit commit, boolean confirmed) {
+        Vault vault = commit.vault;
+        vault.committing = null;
+        // A root confirmed for a wallet the vault has since moved away from says nothing about the new one
+        if (confirmed && commit.wallet.equals(vault.wallet)) {
+            vault.committedRoot = commit.root;
+            save(vault);
+        }
+    }
+
+    // Loaded vaults whose root still has to be sent
+    synchronized List<Vault> uncommitted() {
+        List<Vault> uncommitted = new ArrayList<>();
+        for (Vault vault : vaults.values()) {
+            if (vault.uncommitted() && vault.committing == null) uncommitted.add(vault);
+        }
+        return uncommitted;
+    }
+
+    synchronized boolean isUncommitted(Vault vault) {
+        return vault.uncommitted();
+    }
+
+    synchronized byte[][] itemHashes(Vault vault) {
+        return vault.itemHashes.clone();
+    }
+
+    synchronized byte[] root(Vault vault) {
+        return vault.root.clone();
+    }
+
+    synchronized int loaded() {
+        return vaults.size();
+    }
+
+    synchronized int uncommittedCount() {
+        int count = 0;
+        for (Vault vault : vaults.values()) {
+            if (vault.uncommitted()) count++;
+        }
+        return count;
+    }
+
+    // Waits for updates already asked for, then for the writes they queued
+    void close() {
+        try {
+            ioThread.submit(() -> { }).get(10, TimeUnit.SECONDS);
+            ioThread.shutdown();
+            if (!ioThread.awaitTermination(10, TimeUnit.SECONDS)) logger.warning("Timed out writing vaults");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            logger.warning("Timed out writing vaults");
+            ioThread.shutdown();
+        }
+    }
+
+    // Caller holds the lock; the bytes are taken now so later updates can't leak into this write
+    private void save(Vault vault) {
+        byte[] bytes;
+        try {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(buffer);
+            out.writeShort(MAGIC);
+            out.writeByte(VERSION);
+            out.writeUTF(vault.wallet != null ? vault.wallet : "");
+            out.writeBoolean(vault.committedRoot != null);
+            out.write(vault.committedRoot != null ? vault.committedRoot : VaultMerkle.EMPTY);
+            byte[] slots = ItemCodec.encodeAll(Arrays.asList(vault.slots));
+            out.writeInt(slots.length);
+            out.write(slots);
+            out.flush();
+            bytes = buffer.toByteArray();
+        } catch (IOException e) {
+            logger.severe("Failed to encode vault of " + vault.player + ": " + e.getMessage());
+            return;
+        }
+        File file = fileOf(vault.player);
+        try {
+            ioThread.execute(() -> {
+                try {
+                    DataFileWriter.writeAtomically(file, bytes);
+                } catch (IOException e) {
+                    logger.severe("Failed to write " + file.getName() + ": " + e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            logger.severe("Vaults already closed, " + file.getName() + " was not written");
+        }
+    }
+
+    private Vault read(UUID player, File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            if (in.readUnsignedShort() != MAGIC) throw new IOException("Not a vault file");
+            int version = in.readUnsignedByte();
+            if (version != VERSION) throw new IOException("Unsupported vault version " + version);
+            String wallet = in.readUTF();
+            boolean committed = in.readBoolean();
+            byte[] committedRoot = new byte[32];
+            in.readFully(committedRoot);
+            byte[] slots = new byte[in.readInt()];
+            in.readFully(slots);
+            List<ItemStack> items = ItemCodec.decodeAll(slots);
+            ItemStack[] contents = items.toArray(new ItemStack[0]);
+            byte[][] itemHashes = new byte[contents.length][];
+            for (int slot = 0; slot < contents.length; slot++) itemHashes[slot] = VaultMerkle.itemHash(contents[slot]);
+            return new Vault(player, wallet.isEmpty() ? null : wallet, contents, itemHashes, committed ? committedRoot : null);
+        }
+    }
+
+    private File fileOf(UUID player) {
+        return new File(folder, player + ".vault");
+    }
+
+    private static byte[][] emptyHashes(int slotCount) {
+        byte[][] itemHashes = new byte[slotCount][];
+        Arrays.fill(itemHashes, VaultMerkle.EMPTY);
+        return itemHashes;
+    }
+}
@@ -0,0 +1,69 @@
+package com.zkcraft;
+
+import org.bukkit.entity.Player;
+import org.bukkit.event.Event;
+import org.bukkit.event.HandlerList;
+
+/**
+ * Fired on the main thread when reconciliation finds that an online
+ * player's on-chain rank or item differs from what was last applied.
+ */
+public class WalletAssetChangeEvent extends Event {
+    private static final HandlerList HANDLERS = new HandlerList();
+
+    public enum Kind {
+        RANK_GRANTED, RANK_REVOKED, RANK_CHANGED, ITEM_STORED, ITEM_REMOVED
+    }
+
+    private final Player player;
+    private final String wallet;
+    private final Kind kind;
+    private final String oldValue;
+    private final String newValue;
+    private final boolean initial;
+
+    public WalletAssetChangeEvent(Player player, String wallet, Kind kind, String oldValue, String newValue, boolean initial) {
+        this.player = player;
+        this.wallet = wallet;
+        this.kind = kind;
+        this.oldValue = oldValue;
+        this.newValue = newValue;
+        this.initial = initial;
+    }
+
+    public Player getPlayer() {
+        return player;
+    }
+
+    public String getWallet() {
+        return wallet;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    // null for a grant or a newly stored item
+    public String getOldValue() {
+        return oldValue;
+    }
+
+    // null for a revoke or a removed item
+    public String getNewValue() {
+        return newValue;
+    }
+
+    // True for the first state read after the player came online, rather than a change while they were on
+    public boolean isInitial() {
+        return initial;
+    }
+
+    @Override
+    public HandlerList getHandlers() {
+        return HANDLERS;
+    }
+
+    public static HandlerList getHandlerList() {
+        return HANDLERS;
+    }
+}
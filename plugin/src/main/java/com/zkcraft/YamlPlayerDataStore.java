@@ -0,0 +1,240 @@
+package com.zkcraft;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.inventory.ItemStack;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+/**
+ * The original storage layout: wallets.yml, inventory.yml and ranks.yml,
+ * written behind mutations by a DataFileWriter. Every document stays
+ * parsed, so memory grows with every player ever recorded; large servers
+ * should use the journal backend, which reads players on demand.
+ */
+class YamlPlayerDataStore implements PlayerDataStore {
+    private final File walletFile, inventoryFile, rankFile;
+    private final DataFileWriter dataFiles;
+    private final Logger logger;
+    private volatile FileConfiguration walletData, inventoryData, rankData;
+
+    YamlPlayerDataStore(File dataFolder, long flushIntervalMillis, Metrics metrics, Logger logger) {
+        this.walletFile = new File(dataFolder, "wallets.yml");
+        this.inventoryFile = new File(dataFolder, "inventory.yml");
+        this.rankFile = new File(dataFolder, "ranks.yml");
+        this.dataFiles = new DataFileWriter(flushIntervalMillis, metrics, logger);
+        this.logger = logger;
+    }
+
+    static boolean exists(File dataFolder) {
+        return new File(dataFolder, "wallets.yml").exists()
+                || new File(dataFolder, "inventory.yml").exists()
+                || new File(dataFolder, "ranks.yml").exists();
+    }
+
+    File[] files() {
+        return new File[] { walletFile, inventoryFile, rankFile };
+    }
+
+    @Override
+    public void open() throws IOException {
+        if (!walletFile.exists()) walletFile.createNewFile();
+        if (!inventoryFile.exists()) inventoryFile.createNewFile();
+        if (!rankFile.exists()) rankFile.createNewFile();
+        walletData = load(null, walletFile);
+        inventoryData = load(null, inventoryFile);
+        rankData = load(null, rankFile);
+    }
+
+    /**
+     * Only files edited on disk since they were last read or written are
+     * parsed again. Setters take the same lock, so none can write into a
+     * document between its flush and its replacement, where the change would
+     * land in a document nothing tracks any more.
+     */
+    @Override
+    public synchronized Changes reload() {
+        // Pending writes go to disk first so the reload doesn't drop them
+        dataFiles.flushNow();
+        Changes changes = new Changes();
+        if (dataFiles.changedOnDisk(walletData)) {
+            FileConfiguration old = walletData;
+            walletData = load(old, walletFile);
+            for (String key : changedRecords(old, walletData)) addPlayer(changes, key);
+        }
+        if (dataFiles.changedOnDisk(inventoryData)) {
+            FileConfiguration old = inventoryData;
+            inventoryData = load(old, inventoryFile);
+            for (String key : changedRecords(old, inventoryData)) addPlayer(changes, key);
+        }
+        if (dataFiles.changedOnDisk(rankData)) {
+            FileConfiguration old = rankData;
+            rankData = load(old, rankFile);
+            changes.rankWallets.addAll(changedRecords(old, rankData));
+        }
+        return changes;
+    }
+
+    // Top-level keys, one per player or wallet, that were added, removed or changed between two parses of a file
+    private static Set<String> changedRecords(FileConfiguration old, FileConfiguration updated) {
+        Set<String> keys = new HashSet<>(old.getKeys(false));
+        keys.addAll(updated.getKeys(false));
+        Set<String> changed = new HashSet<>();
+        for (String key : keys) {
+            Map<String, Object> before, after;
+            synchronized (old) {
+                before = ConfigDiff.snapshot(section(old, key));
+            }
+            after = ConfigDiff.snapshot(section(updated, key));
+            if (!Objects.equals(before, after)) changed.add(key);
+        }
+        return changed;
+    }
+
+    private static ConfigurationSection section(FileConfiguration data, String key) {
+        ConfigurationSection section = data.getConfigurationSection(key);
+        return section != null ? section : new YamlConfiguration();
+    }
+
+    private void addPlayer(Changes changes, String key) {
+        try {
+            changes.players.add(UUID.fromString(key));
+        } catch (IllegalArgumentException e) {
+            logger.warning("Ignoring data file entry that is not a player UUID: " + key);
+        }
+    }
+
+    private FileConfiguration load(FileConfiguration old, File file) {
+        if (old != null) dataFiles.untrack(old);
+        FileConfiguration data = YamlConfiguration.loadConfiguration(file);
+        dataFiles.track(data, file);
+        return data;
+    }
+
+    @Override
+    public Map<UUID, String> loadWallets() {
+        Map<UUID, String> wallets = new HashMap<>();
+        for (String key : walletData.getKeys(false)) {
+            wallets.put(UUID.fromString(key), walletData.getString(key + ".address"));
+        }
+        return wallets;
+    }
+
+    @Override
+    public Map<UUID, ItemStack> loadInventory() {
+        Map<UUID, ItemStack> inventory = new HashMap<>();
+        for (String key : inventoryData.getKeys(false)) {
+            ItemStack item = deserializeItem(key, inventoryData.get(key + ".item"));
+            if (item != null) inventory.put(UUID.fromString(key), item);
+        }
+        return inventory;
+    }
+
+    @Override
+    public Map<String, String> loadRanks() {
+        Map<String, String> ranks = new HashMap<>();
+        for (String wallet : rankData.getKeys(false)) {
+            String rank = rankData.getString(wallet + ".rank");
+            if (rank != null) ranks.put(wallet, rank);
+        }
+        return ranks;
+    }
+
+    // Reads lock the document like DataFileWriter.set does, so a concurrent write is never seen half-applied
+    @Override
+    public String loadWallet(UUID uuid) {
+        FileConfiguration data = walletData;
+        synchronized (data) {
+            return data.getString(uuid + ".address");
+        }
+    }
+
+    @Override
+    public ItemStack loadItem(UUID uuid) {
+        FileConfiguration data = inventoryData;
+        Object itemObj;
+        synchronized (data) {
+            itemObj = data.get(uuid + ".item");
+        }
+        return deserializeItem(uuid.toString(), itemObj);
+    }
+
+    @Override
+    public String loadRank(String wallet) {
+        FileConfiguration data = rankData;
+        synchronized (data) {
+            return data.getString(wallet + ".rank");
+        }
+    }
+
+    /**
+     * Items are written as base64 of the binary ItemCodec form. Entries from
+     * before that are item.serialize() maps, which come back from disk as a
+     * section and are still read that way.
+     */
+    private ItemStack deserializeItem(String key, Object itemObj) {
+        try {
+            if (itemObj instanceof String) {
+                return ItemCodec.decode(Base64.getDecoder().decode((String) itemObj));
+            }
+            if (itemObj instanceof ConfigurationSection) {
+                return ItemStack.deserialize(((ConfigurationSection) itemObj).getValues(false));
+            }
+            if (itemObj instanceof Map) {
+                @SuppressWarnings("unchecked")
+                Map<String, Object> itemMap = (Map<String, Object>) itemObj;
+                return ItemStack.deserialize(itemMap);
+            }
+            return null;
+        } catch (Exception e) {
+            logger.warning("Failed to deserialize ItemStack for UUID " + key + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public synchronized void setWallet(UUID uuid, String address) {
+        dataFiles.set(walletData, address != null ? uuid + ".address" : uuid.toString(), address);
+    }
+
+    @Override
+    public void setItem(UUID uuid, ItemStack item) {
+        String encoded = null;
+        if (item != null) {
+            try {
+                encoded = Base64.getEncoder().encodeToString(ItemCodec.encode(item));
+            } catch (IOException e) {
+                logger.severe("Failed to serialize ItemStack for UUID " + uuid + ": " + e.getMessage());
+                return;
+            }
+        }
+        synchronized (this) {
+            dataFiles.set(inventoryData, encoded != null ? uuid + ".item" : uuid.toString(), encoded);
+        }
+    }
+
+    @Override
+    public synchronized void setRank(String wallet, String rank) {
+        dataFiles.set(rankData, rank != null ? wallet + ".rank" : wallet, rank);
+    }
+
+    @Override
+    public void flush() {
+        dataFiles.flushNow();
+    }
+
+    @Override
+    public void close() {
+        dataFiles.close();
+    }
+}
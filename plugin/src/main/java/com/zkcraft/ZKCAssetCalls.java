@@ -0,0 +1,75 @@
+package com.zkcraft;
+
+import com.zkcraft.zkcasset.ZKCAsset;
+
+import org.web3j.abi.FunctionEncoder;
+import org.web3j.abi.TypeReference;
+import org.web3j.abi.Utils;
+import org.web3j.abi.datatypes.Address;
+import org.web3j.abi.datatypes.DynamicArray;
+import org.web3j.abi.datatypes.Function;
+import org.web3j.abi.datatypes.Type;
+import org.web3j.abi.datatypes.Utf8String;
+import org.web3j.abi.datatypes.generated.Bytes32;
+import org.web3j.abi.datatypes.generated.Uint256;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * ABI encoding of ZKCAsset transactions for senders that sign their own
+ * raw transactions instead of going through the generated wrapper.
+ */
+final class ZKCAssetCalls {
+    private ZKCAssetCalls() {
+    }
+
+    static String mint(String wallet, String assetType, String value) {
+        return FunctionEncoder.encode(new Function(
+                ZKCAsset.FUNC_MINT,
+                Arrays.<Type>asList(new Address(160, wallet), new Utf8String(assetType), new Utf8String(value)),
+                Collections.<TypeReference<?>>emptyList()));
+    }
+
+    static String burn(BigInteger tokenId) {
+        return FunctionEncoder.encode(new Function(
+                ZKCAsset.FUNC_BURN,
+                Arrays.<Type>asList(new Uint256(tokenId)),
+                Collections.<TypeReference<?>>emptyList()));
+    }
+
+    static String mintBatch(List<String> wallets, List<String> assetTypes, List<String> values) {
+        return FunctionEncoder.encode(new Function(
+                ZKCAsset.FUNC_MINTBATCH,
+                Arrays.<Type>asList(
+                        new DynamicArray<>(Address.class, Utils.typeMap(wallets, Address.class)),
+                        new DynamicArray<>(Utf8String.class, Utils.typeMap(assetTypes, Utf8String.class)),
+                        new DynamicArray<>(Utf8String.class, Utils.typeMap(values, Utf8String.class))),
+                Collections.<TypeReference<?>>emptyList()));
+    }
+
+    static String burnBatch(List<BigInteger> tokenIds) {
+        return FunctionEncoder.encode(new Function(
+                ZKCAsset.FUNC_BURNBATCH,
+                Arrays.<Type>asList(new DynamicArray<>(Uint256.class, Utils.typeMap(tokenIds, Uint256.class))),
+                Collections.<TypeReference<?>>emptyList()));
+    }
+
+    static String setVaultRoot(String wallet, byte[] root) {
+        return FunctionEncoder.encode(new Function(
+                ZKCAsset.FUNC_SETVAULTROOT,
+                Arrays.<Type>asList(new Address(160, wallet), new Bytes32(root)),
+                Collections.<TypeReference<?>>emptyList()));
+    }
+
+    static String setVaultRoots(List<String> wallets, List<byte[]> roots) {
+        return FunctionEncoder.encode(new Function(
+                ZKCAsset.FUNC_SETVAULTROOTS,
+                Arrays.<Type>asList(
+                        new DynamicArray<>(Address.class, Utils.typeMap(wallets, Address.class)),
+                        new DynamicArray<>(Bytes32.class, Utils.typeMap(roots, Bytes32.class))),
+                Collections.<TypeReference<?>>emptyList()));
+    }
+}
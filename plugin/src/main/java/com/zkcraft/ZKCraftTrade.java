@@ -4,53 +4,109 @@ import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerLoginEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.bukkit.configuration.file.FileConfiguration;
-import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.event.inventory.InventoryCloseEvent;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryHolder;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.PlayerInventory;
 
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.zkcraft.zkcasset.ZKCAsset;
 
 import org.web3j.protocol.Web3j;
-import org.web3j.protocol.http.HttpService;
+import org.web3j.protocol.core.methods.response.EthBlockNumber;
+import org.web3j.protocol.core.methods.response.EthChainId;
 import org.web3j.tx.gas.DefaultGasProvider;
 import org.web3j.crypto.Credentials;
 import org.web3j.tx.RawTransactionManager;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.UUID;
 import java.util.List;
+import java.util.Set;
 import org.bukkit.command.TabCompleter;
-import org.bukkit.command.TabExecutor;
 import org.bukkit.Bukkit;
-import org.bukkit.scheduler.BukkitRunnable;
+import org.bukkit.scheduler.BukkitTask;
+import org.bukkit.OfflinePlayer;
 import org.bukkit.ChatColor;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
 
 public class ZKCraftTrade extends JavaPlugin {
     private FileConfiguration config;
-    private File walletFile, inventoryFile, rankFile;
-    private FileConfiguration walletData, inventoryData, rankData;
-    private Map<UUID, String> playerWallets = new HashMap<>(); // UUID -> Wallet Address
-    private Map<UUID, ItemStack> crossServerInventory = new HashMap<>(); // UUID -> Single Item
-    private Map<String, String> walletRanks = new HashMap<>(); // Wallet Address -> Rank (YAML fallback)
-    private Web3j web3j;
-    private ZKCAsset zkcAsset;
-    private boolean blockchainEnabled;
-    private BukkitRunnable blockchainPoller;
+    // The settings the running components were built from; a reload rebuilds what differs from them
+    private Map<String, Object> appliedConfig;
+    private PlayerDataStore playerDataStore;
+    // Only players who are online or recently quit are loaded; everyone else stays in the store.
+    // Set by the data startup stage, so it stays null until the data files are loaded
+    private volatile PlayerStateStore playerState;
+    private ItemBlobStore itemBlobs;
+    private final Map<UUID, BukkitTask> pendingEvictions = new ConcurrentHashMap<>();
+    // Chain components are swapped by reloads while worker threads use them
+    private volatile Web3j web3j;
+    private volatile RpcRouter rpcRouter;
+    private volatile ZKCAsset zkcAsset;
+    private volatile BatchAssetReader batchAssetReader;
+    private volatile AssetLogSync assetLogSync;
+    private volatile AssetCache assetCache;
+    private final AssetReconciler assetReconciler = new AssetReconciler();
+    private CommandPipeline commandPipeline;
+    private ChainOutbox chainOutbox;
+    private ItemEscrow itemEscrow;
+    private VaultStore vaultStore;
+    private volatile TransactionPipeline transactionPipeline;
+    private volatile boolean blockchainConfigured;
+    private volatile CircuitBreaker circuitBreaker;
+    // Components replaced by a reload, still draining their pending transactions
+    private final List<Thread> retiring = new CopyOnWriteArrayList<>();
+    private static final ThreadFactory RETIRE_THREADS = new ThreadFactoryBuilder().setNameFormat("ZKCraftTrade-Retire-%d").setDaemon(true).build();
+    private PollScheduler pollScheduler;
+    // At most one bulk rank job runs at a time
+    private volatile BulkRankJob bulkRankJob;
     private boolean setupComplete = false;
     private boolean luckPermsAvailable = false;
+    private RankBackend rankBackend;
+    // Kept across reloads, so counters cover the whole time the plugin has been enabled
+    private final Metrics metrics = new Metrics();
+    private MetricsEndpoint metricsEndpoint;
+    private StartupStages startup;
 
     private static final String PLACEHOLDER_RANK = "[BLOCKCHAIN OFFLINE]";
     private static final String PLACEHOLDER_ITEM = "[BLOCKCHAIN OFFLINE]";
     private static final String PLACEHOLDER_WALLET = "[NO WALLET LINKED]";
+    private static final List<String> SUBCOMMANDS = Arrays.asList("wallet", "rank", "inventory", "vault", "reload", "info", "metrics",
+            "config", "probe", "pausepoll", "resumepoll");
 
     @Override
     public void onEnable() {
+        long enableStart = System.nanoTime();
         saveDefaultConfig();
         config = getConfig();
         // Ensure config values exist
@@ -71,46 +127,240 @@ public class ZKCraftTrade extends JavaPlugin {
             saveConfig();
             getLogger().warning("config.yml was missing required values. Default placeholders have been set. Please update config.yml and reload the plugin.");
         }
-        initializeDataFiles();
-        initializeBlockchain();
+        appliedConfig = ConfigDiff.snapshot(config);
+        assetCache = new AssetCache(config.getLong("cache.max-wallets", 10000), config.getLong("cache.ttl-seconds", 30));
+        // Parsing the data files and connecting to the chain don't touch the server, so they run in parallel off the main thread
+        startup = new StartupStages(2, getLogger());
+        List<UUID> onlineAtEnable = new ArrayList<>();
+        for (Player online : Bukkit.getOnlinePlayers()) onlineAtEnable.add(online.getUniqueId());
+        startup.run("data", () -> {
+            initializeDataFiles();
+            if (playerState == null) throw new IOException("player data could not be loaded");
+            initializeOutbox();
+            itemEscrow = new ItemEscrow(new File(new File(getDataFolder(), "data"), "escrow.yml"), getLogger());
+            itemEscrow.open();
+            vaultStore = new VaultStore(new File(new File(getDataFolder(), "data"), "vaults"), getLogger());
+            vaultStore.open();
+            for (UUID uuid : onlineAtEnable) playerState.load(uuid);
+        });
+        startup.run("chain", () -> {
+            initializeBlockchain();
+            checkChainConnection();
+        });
+        getServer().getPluginManager().registerEvents(new PlayerDataListener(), this);
+        getServer().getPluginManager().registerEvents(new VaultListener(), this);
+        commandPipeline = new CommandPipeline(this, config.getInt("commands.threads", 4), config.getLong("commands.timeout-seconds", 30) * 1000L, metrics);
         getCommand("zkc").setExecutor(new ZKCCommandExecutor());
-        getCommand("zkc").setTabCompleter(new ZKCTabCompleter());
-        startBlockchainPoller();
+        getCommand("zkc").setTabCompleter(new ZKCTabCompleter(() -> Math.max(1, config.getInt("vault.pages", 3))));
+        createBlockchainPoller();
+        startReconciler();
         if (!setupComplete) {
             runSetupWizard();
         }
         checkForLuckPerms();
-        getLogger().info("ZKCraftTrade plugin enabled!");
+        startMetricsEndpoint();
+        startup.whenStagesDone().whenComplete((ignored, error) -> Bukkit.getScheduler().runTask(this, this::finishStartup));
+        getLogger().info("ZKCraftTrade plugin enabled in " + (System.nanoTime() - enableStart) / 1000000
+                + "ms on the main thread; loading data and connecting to the blockchain in the background");
+    }
+
+    // Main thread part of startup, once the data and chain stages are done
+    private void finishStartup() {
+        if (!isEnabled()) return;
+        pollScheduler.start();
+        if (chainOutbox != null) chainOutbox.start();
+        if (itemEscrow != null) {
+            Bukkit.getScheduler().runTaskTimerAsynchronously(this, this::settleOrphanedEscrows, 20L, 20L * 30);
+        }
+        if (vaultStore != null) {
+            long retryTicks = Math.max(1, config.getLong("vault.retry-interval-seconds", 30)) * 20L;
+            Bukkit.getScheduler().runTaskTimerAsynchronously(this, this::commitVaults, retryTicks, retryTicks);
+        }
+        startup.markReady();
     }
 
     @Override
     public void onDisable() {
-        saveDataFiles();
+        if (startup != null) {
+            startup.shutdown();
+        }
+        if (metricsEndpoint != null) {
+            metricsEndpoint.stop();
+        }
+        if (pollScheduler != null) {
+            pollScheduler.shutdown();
+        }
+        if (bulkRankJob != null) {
+            bulkRankJob.cancel();
+        }
+        if (vaultStore != null) {
+            // Close events fired after this would find the plugin disabled, so open vault pages are saved now
+            for (Player online : Bukkit.getOnlinePlayers()) {
+                if (online.getOpenInventory().getTopInventory().getHolder() instanceof VaultPage) online.closeInventory();
+            }
+            vaultStore.close();
+        }
+        if (commandPipeline != null) {
+            commandPipeline.shutdown();
+        }
+        // Interrupted, a draining pipeline stops waiting for receipts and shuts down with its client
+        for (Thread thread : retiring) {
+            thread.interrupt();
+        }
+        for (Thread thread : retiring) {
+            try {
+                thread.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (transactionPipeline != null) {
+            transactionPipeline.shutdown();
+        }
+        // After every pipeline, so the mints and burns their shutdown fails are still queued durably
+        if (chainOutbox != null) {
+            chainOutbox.close();
+        }
+        if (rankBackend != null) {
+            // LuckPerms saves asynchronously, and the last tick's changes would be lost if the server stopped first
+            try {
+                rankBackend.flush().get(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException | TimeoutException e) {
+                getLogger().warning("Timed out saving rank changes to " + rankBackend.name());
+            }
+        }
         if (web3j != null) {
             web3j.shutdown();
         }
-        if (blockchainPoller != null) {
-            blockchainPoller.cancel();
+        if (circuitBreaker != null) {
+            circuitBreaker.shutdown();
+        }
+        // Last, so fallbacks recorded by the shutdowns above are flushed too
+        if (playerDataStore != null) {
+            playerDataStore.close();
+        }
+        if (itemBlobs != null) {
+            itemBlobs.close();
         }
         getLogger().info("ZKCraftTrade plugin disabled!");
     }
 
-    private void startBlockchainPoller() {
-        if (blockchainPoller != null) blockchainPoller.cancel();
-        blockchainPoller = new BukkitRunnable() {
+    // The poller tracks online players from the start but only polls once startup is done
+    private void createBlockchainPoller() {
+        if (pollScheduler != null) pollScheduler.shutdown();
+        PollScheduler.Source source = new PollScheduler.Source() {
             @Override
-            public void run() {
-                // Example: poll all player wallets for rank/item updates
-                for (Map.Entry<UUID, String> entry : playerWallets.entrySet()) {
-                    String wallet = entry.getValue();
-                    if (wallet != null) {
-                        getAssetFromBlockchain(wallet, "rank");
-                        getAssetFromBlockchain(wallet, "item");
-                    }
-                }
+            public boolean available() {
+                return blockchainEnabled() && batchAssetReader != null;
+            }
+
+            @Override
+            public Set<String> changedWallets() throws Exception {
+                // null means no checkpoint yet, so every wallet gets read once
+                return assetLogSync != null ? circuitBreaker.call(assetLogSync::poll) : null;
+            }
+
+            @Override
+            public long logSyncRequests() {
+                AssetLogSync logSync = assetLogSync;
+                return logSync != null ? logSync.requestsSent() : 0;
+            }
+
+            @Override
+            public Set<String> read(List<String> wallets) {
+                return pollWalletsBatched(wallets);
             }
         };
-        blockchainPoller.runTaskTimerAsynchronously(this, 0L, 100L); // 100 ticks = 5 seconds
+        pollScheduler = new PollScheduler(source, uuid -> playerState.wallet(uuid),
+                config.getString("poller.mode", "events").equalsIgnoreCase("events"),
+                config.getDouble("poller.requests-per-second", 20),
+                config.getLong("poller.interval-millis", 5000),
+                config.getLong("poller.min-interval-millis", 1000),
+                config.getLong("poller.max-interval-millis", 60000),
+                config.getLong("poller.slow-latency-millis", 2000),
+                metrics,
+                getLogger());
+        for (Player online : Bukkit.getOnlinePlayers()) {
+            pollScheduler.playerOnline(online.getUniqueId());
+        }
+    }
+
+    // One getWalletAssets read per wallet, packed into JSON-RPC batches; returns the wallets that were read
+    private Set<String> pollWalletsBatched(List<String> wallets) {
+        long readStartedAt = System.currentTimeMillis();
+        long start = System.nanoTime();
+        Map<String, List<ZKCAsset.Asset>> assets = batchAssetReader.readWalletAssets(wallets);
+        // The batch reader logs and skips failed batches, so a read that got nothing back counts as one failed call
+        circuitBreaker.record(System.nanoTime() - start, assets.isEmpty());
+        for (Map.Entry<String, List<ZKCAsset.Asset>> entry : assets.entrySet()) {
+            assetCache.put(entry.getKey(), entry.getValue());
+            // The chain hasn't caught up with a wallet that has queued operations yet, so what it holds isn't news
+            if (!chainOutbox.hasPending(entry.getKey())) assetReconciler.reconcile(entry.getKey(), entry.getValue(), readStartedAt);
+        }
+        if (assets.size() < wallets.size()) {
+            getLogger().warning("Blockchain poll could not read " + (wallets.size() - assets.size()) + " of " + wallets.size() + " wallets");
+        }
+        return assets.keySet();
+    }
+
+    // Applies reconciled changes to online players a few per tick, then flushes the rank backend
+    private void startReconciler() {
+        int changesPerTick = Math.max(1, config.getInt("reconcile.changes-per-tick", 10));
+        Bukkit.getScheduler().runTaskTimer(this, () -> {
+            if (assetReconciler.hasPending()) drainReconciledChanges(changesPerTick);
+            // Rank changes made this tick, by reconciliation or by commands, go to the backend together
+            if (rankBackend != null) rankBackend.flush();
+        }, 1L, 1L);
+    }
+
+    private void drainReconciledChanges(int changesPerTick) {
+        Map<String, Player> byWallet = new HashMap<>();
+        for (Player online : Bukkit.getOnlinePlayers()) {
+            String wallet = playerState.wallet(online.getUniqueId());
+            if (wallet != null) byWallet.put(wallet.toLowerCase(), online);
+        }
+        assetReconciler.drain(changesPerTick, change -> {
+            Player target = byWallet.get(change.wallet.toLowerCase());
+            if (target != null) applyAssetChange(target, change);
+        });
+    }
+
+    private void applyAssetChange(Player player, AssetReconciler.Change change) {
+        getServer().getPluginManager().callEvent(new WalletAssetChangeEvent(player, change.wallet, change.kind,
+                change.oldValue, change.newValue, change.initial));
+        switch (change.kind) {
+            case RANK_GRANTED:
+                // The first poll after every login reports the rank the player kept from earlier sessions
+                if (change.initial && change.newValue != null && rankBackend.holds(player, change.newValue)) break;
+                applyRank(player, change.newValue);
+                break;
+            case RANK_REVOKED:
+                removeRank(player, change.oldValue);
+                break;
+            case RANK_CHANGED:
+                removeRank(player, change.oldValue);
+                applyRank(player, change.newValue);
+                break;
+            case ITEM_STORED:
+                if (!change.initial) player.sendMessage(ChatColor.AQUA + "[ZKCraftTrade] An item was stored to your wallet: " + change.newValue);
+                break;
+            case ITEM_REMOVED:
+                player.sendMessage(ChatColor.AQUA + "[ZKCraftTrade] Your stored item " + change.oldValue + " was removed from your wallet");
+                break;
+        }
+    }
+
+    // Optional Prometheus scrape endpoint; off by default
+    private void startMetricsEndpoint() {
+        if (!config.getBoolean("metrics.http.enabled", false)) return;
+        try {
+            metricsEndpoint = MetricsEndpoint.start(config.getString("metrics.http.bind-address", "127.0.0.1"),
+                    config.getInt("metrics.http.port", 9464), metrics, getLogger());
+        } catch (IOException e) {
+            getLogger().warning("Failed to start the metrics endpoint: " + e.getMessage());
+        }
     }
 
     private void runSetupWizard() {
@@ -135,11 +385,44 @@ public class ZKCraftTrade extends JavaPlugin {
         });
     }
 
+    // The chain is used only when it's configured and the circuit breaker lets calls through
+    private boolean blockchainEnabled() {
+        return blockchainConfigured && circuitBreaker != null && circuitBreaker.allowsCalls();
+    }
+
+    private void onCircuitStateChange(CircuitBreaker.State state) {
+        switch (state) {
+            case OPEN:
+                getLogger().warning("Blockchain RPC endpoint is failing or too slow; using fallback data until it recovers");
+                if (isEnabled()) broadcastBlockchainError("RPC endpoint unavailable, showing fallback data until it recovers.");
+                break;
+            case HALF_OPEN:
+                getLogger().info("Blockchain RPC endpoint answered the health probe, letting calls through again");
+                break;
+            case CLOSED:
+                getLogger().info("Blockchain RPC endpoint recovered");
+                if (chainOutbox != null) chainOutbox.kick();
+                break;
+        }
+    }
+
     private void reportBlockchainUnavailable(Player player) {
         player.sendMessage(ChatColor.RED + "[ZKCraftTrade] Blockchain is currently unavailable. Showing placeholder data.");
     }
 
+    // Builds every chain component, as at startup
     private void initializeBlockchain() {
+        applyBlockchainConfig(null);
+    }
+
+    /**
+     * Rebuilds the chain components configured by the keys in diff, and the
+     * ones built on top of them; a null diff, or a chain that is not up,
+     * builds all of them. Replaced components are retired in the background.
+     * Returns the names of what was rebuilt.
+     */
+    private List<String> applyBlockchainConfig(ConfigDiff diff) {
+        List<String> rebuilt = new ArrayList<>();
         try {
             String rpcUrl = config.getString("blockchain.rpc-url", "https://sepolia.api.zk.netlify.app");
             String privateKey = config.getString("blockchain.private-key");
@@ -147,142 +430,485 @@ public class ZKCraftTrade extends JavaPlugin {
 
             if (privateKey == null || contractAddress == null) {
                 broadcastBlockchainError("Missing private-key or zkcasset-contract-address in config.yml");
-                blockchainEnabled = false;
-                return;
+                blockchainConfigured = false;
+                return rebuilt;
             }
 
-            web3j = Web3j.build(new HttpService(rpcUrl));
+            boolean all = diff == null || !blockchainConfigured || web3j == null;
+            boolean newClient = all || diff.any("rpc.max-idle-connections", "rpc.keep-alive-seconds", "rpc.timeout-millis");
+            boolean newBreaker = newClient || diff.any("breaker");
+            boolean newContract = newClient || diff.any("blockchain.private-key", "blockchain.chain-id", "blockchain.zkcasset-contract-address");
+            boolean newPipeline = newContract || newBreaker || diff.any("transactions");
+            boolean newReader = newClient || diff.any("blockchain.zkcasset-contract-address", "poller.batch-size", "poller.max-concurrent-batches");
+            boolean newLogSync = newClient || diff.any("blockchain.zkcasset-contract-address", "poller.confirmations", "poller.max-block-range",
+                    "poller.max-ranges-per-poll");
+
+            // A running bulk job holds the pipeline and reader it was started with
+            if ((newPipeline || newReader) && bulkRankJob != null && bulkRankJob.isRunning()) {
+                bulkRankJob.cancel();
+                rebuilt.add("bulk rank job cancelled (" + bulkRankJob.progressLine() + ")");
+            }
+
+            List<String> rpcUrls = config.getStringList("blockchain.rpc-urls");
+            if (rpcUrls.isEmpty()) rpcUrls = Collections.singletonList(rpcUrl);
+            Web3j oldWeb3j = null;
+            if (newClient) {
+                oldWeb3j = web3j;
+                rpcRouter = new RpcRouter(rpcUrls,
+                        config.getInt("rpc.max-idle-connections", 16),
+                        config.getLong("rpc.keep-alive-seconds", 300),
+                        config.getLong("rpc.timeout-millis", 10000),
+                        config.getLong("rpc.failure-cooldown-millis", 10000),
+                        getLogger());
+                web3j = Web3j.build(rpcRouter);
+                rebuilt.add("RPC client");
+            } else if (diff.any("blockchain.rpc-url", "blockchain.rpc-urls", "rpc.failure-cooldown-millis")) {
+                // Only the endpoint list changed, so the pooled connections are kept
+                rpcRouter.reconfigure(rpcUrls, config.getLong("rpc.failure-cooldown-millis", 10000));
+                rebuilt.add("RPC endpoints");
+            }
+            CircuitBreaker oldBreaker = null;
+            if (newBreaker) {
+                oldBreaker = circuitBreaker;
+                Web3j probeClient = web3j;
+                circuitBreaker = new CircuitBreaker(() -> {
+                            EthBlockNumber blockNumber = probeClient.ethBlockNumber().send();
+                            if (blockNumber.hasError()) throw new IOException(blockNumber.getError().getMessage());
+                            return blockNumber.getBlockNumber();
+                        },
+                        config.getInt("breaker.window-size", 20),
+                        config.getInt("breaker.minimum-calls", 5),
+                        config.getDouble("breaker.failure-rate-threshold", 0.5),
+                        config.getLong("breaker.slow-call-millis", 3000),
+                        config.getDouble("breaker.slow-call-rate-threshold", 0.8),
+                        config.getLong("breaker.probe-interval-millis", 2000),
+                        this::onCircuitStateChange,
+                        getLogger());
+                rebuilt.add("circuit breaker");
+            }
             Credentials credentials = Credentials.create(privateKey);
-            RawTransactionManager txManager = new RawTransactionManager(web3j, credentials, 1377); // Chain ID for Xsolla ZK
-            zkcAsset = ZKCAsset.load(contractAddress, web3j, txManager, new DefaultGasProvider());
-            blockchainEnabled = true;
-            getLogger().info("Blockchain initialized: Connected to Xsolla ZK Sepolia Testnet");
+            long chainId = config.getLong("blockchain.chain-id", 1377); // 1377 = Xsolla ZK, 31337 = local Hardhat node
+            if (newContract) {
+                RawTransactionManager txManager = new RawTransactionManager(web3j, credentials, chainId);
+                zkcAsset = ZKCAsset.load(contractAddress, web3j, txManager, new DefaultGasProvider());
+                rebuilt.add("contract");
+            }
+            TransactionPipeline oldPipeline = null;
+            if (newPipeline) {
+                oldPipeline = transactionPipeline;
+                TransactionPipeline pipeline = new TransactionPipeline(web3j, credentials, chainId, contractAddress, new DefaultGasProvider(), circuitBreaker,
+                        config.getInt("transactions.max-in-flight", 16),
+                        config.getLong("transactions.receipt-poll-millis", 1000),
+                        config.getLong("transactions.resubmit-after-seconds", 60) * 1000L,
+                        config.getInt("transactions.max-resubmits", 3),
+                        metrics,
+                        getLogger());
+                // Before anything can submit to it, so the old one has stopped taking nonces from the same account
+                if (oldPipeline != null) oldPipeline.handOver(pipeline);
+                transactionPipeline = pipeline;
+                rebuilt.add("transaction pipeline");
+            }
+            if (newReader) {
+                batchAssetReader = new BatchAssetReader(web3j, contractAddress,
+                        config.getInt("poller.batch-size", 100),
+                        config.getInt("poller.max-concurrent-batches", 4),
+                        metrics,
+                        getLogger());
+                rebuilt.add("asset reader");
+            }
+            if (newLogSync) {
+                assetLogSync = new AssetLogSync(web3j, contractAddress, new File(getDataFolder(), "sync.yml"),
+                        config.getInt("poller.confirmations", 3),
+                        config.getInt("poller.max-block-range", 2000),
+                        config.getInt("poller.max-ranges-per-poll", 5),
+                        getLogger());
+                rebuilt.add("event log sync");
+            }
+            blockchainConfigured = true;
+            retire(oldPipeline, oldBreaker, oldWeb3j);
+            if (all) getLogger().info("Blockchain initialized: Connected to Xsolla ZK Sepolia Testnet");
         } catch (Exception e) {
             broadcastBlockchainError("Failed to initialize blockchain: " + e.getMessage());
-            blockchainEnabled = false;
+            blockchainConfigured = false;
         }
+        return rebuilt;
     }
 
-    private void loadPlayerWallets() {
-        for (String key : walletData.getKeys(false)) {
-            UUID uuid = UUID.fromString(key);
-            String address = walletData.getString(key + ".address");
-            playerWallets.put(uuid, address);
-        }
+    /**
+     * Lets a replaced pipeline confirm what it already sent (what it hadn't
+     * sent went to its successor), then shuts it down along with the breaker and client only it still uses. Runs on its
+     * own thread so the reload doesn't wait for receipts.
+     */
+    private void retire(TransactionPipeline pipeline, CircuitBreaker breaker, Web3j client) {
+        if (pipeline == null && breaker == null && client == null) return;
+        long drainMillis = config.getLong("reload.drain-timeout-seconds", 60) * 1000L;
+        // Reads already started on the old client get up to one RPC timeout to finish
+        long readGraceMillis = config.getLong("rpc.timeout-millis", 10000);
+        Thread thread = RETIRE_THREADS.newThread(() -> {
+            try {
+                if (pipeline != null) {
+                    int unconfirmed = pipeline.drain(drainMillis);
+                    if (unconfirmed > 0) {
+                        getLogger().warning(unconfirmed + " transactions sent before the reload were not confirmed within "
+                                + drainMillis / 1000 + "s and were reported as failed");
+                    }
+                }
+                if (client != null && !Thread.currentThread().isInterrupted()) Thread.sleep(readGraceMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                if (breaker != null) breaker.shutdown();
+                if (client != null) client.shutdown();
+                retiring.remove(Thread.currentThread());
+            }
+        });
+        retiring.add(thread);
+        thread.start();
     }
 
-    private void loadCrossServerInventory() {
-        crossServerInventory.clear();
-        for (String key : inventoryData.getKeys(false)) {
-            UUID uuid = UUID.fromString(key);
-            Object itemObj = inventoryData.get(key + ".item");
-            if (itemObj instanceof Map) {
+    // Reads, retries and fallbacks of a bulk job go through the same components as single commands
+    private BulkRankJob.Host bulkRankHost(UUID admin) {
+        return new BulkRankJob.Host() {
+            @Override
+            public boolean available() {
+                return blockchainEnabled() && batchAssetReader != null;
+            }
+
+            @Override
+            public String wallet(String player) {
+                UUID uuid;
                 try {
-                    @SuppressWarnings("unchecked")
-                    Map<String, Object> itemMap = (Map<String, Object>) itemObj;
-                    ItemStack item = ItemStack.deserialize(itemMap);
-                    crossServerInventory.put(uuid, item);
-                } catch (Exception e) {
-                    getLogger().warning("Failed to deserialize ItemStack for UUID " + key + ": " + e.getMessage());
+                    uuid = UUID.fromString(player);
+                } catch (IllegalArgumentException e) {
+                    return lookupWallet(player);
                 }
+                String wallet = playerState.wallet(uuid);
+                return wallet != null ? wallet : playerDataStore.loadWallet(uuid);
+            }
+
+            @Override
+            public void fallback(String wallet, String rank) {
+                playerState.setRank(wallet, rank);
+                chainOutbox.enqueue(wallet, "rank", rank);
             }
-        }
-    }
 
-    private void loadWalletRanks() {
-        for (String wallet : rankData.getKeys(false)) {
-            String rank = rankData.getString(wallet + ".rank");
-            if (rank != null) {
-                walletRanks.put(wallet, rank);
+            @Override
+            public void changed(BulkRankJob.Entry entry, String oldRank, String newRank) {
+                assetCache.invalidate(entry.wallet);
+                commandPipeline.runOnMainThread(() -> {
+                    for (Player online : Bukkit.getOnlinePlayers()) {
+                        if (!entry.wallet.equalsIgnoreCase(playerState.wallet(online.getUniqueId()))) continue;
+                        removeRank(online, oldRank);
+                        applyRank(online, newRank);
+                        assetReconciler.recordApplied(playerState.wallet(online.getUniqueId()), "rank", newRank);
+                        pollScheduler.markTraded(online.getUniqueId());
+                    }
+                });
+            }
+
+            @Override
+            public void progress(String message) {
+                getLogger().info(message);
+                commandPipeline.runOnMainThread(() -> {
+                    Player player = Bukkit.getPlayer(admin);
+                    if (player != null) player.sendMessage(ChatColor.AQUA + "[ZKCraftTrade] " + message);
+                });
             }
+        };
+    }
+
+    // An unreachable node only delays the first reads, but one on another chain would reject every signed transaction
+    private void checkChainConnection() {
+        if (!blockchainConfigured) return;
+        long expectedChainId = config.getLong("blockchain.chain-id", 1377);
+        EthChainId response;
+        try {
+            response = circuitBreaker.call(() -> web3j.ethChainId().send());
+            if (response.hasError()) throw new IOException(response.getError().getMessage());
+        } catch (Exception e) {
+            getLogger().warning("Blockchain RPC endpoint unreachable at startup (" + e.getMessage() + "), the circuit breaker will keep trying it");
+            return;
         }
+        long chainId = response.getChainId().longValue();
+        if (chainId != expectedChainId) {
+            blockchainConfigured = false;
+            broadcastBlockchainError("RPC endpoint is on chain " + chainId + " but blockchain.chain-id is " + expectedChainId
+                    + "; blockchain disabled until config.yml is fixed and reloaded");
+            getLogger().severe("RPC endpoint is on chain " + chainId + " but blockchain.chain-id is " + expectedChainId);
+            return;
+        }
+        getLogger().info("Connected to chain " + chainId);
+    }
+
+    // Wallet of a player who may be offline; blocking, so only call it off the main thread
+    @SuppressWarnings("deprecation")
+    private String lookupWallet(String playerName) {
+        OfflinePlayer offline = Bukkit.getOfflinePlayer(playerName);
+        if (!offline.isOnline() && !offline.hasPlayedBefore()) return null;
+        String wallet = playerState.wallet(offline.getUniqueId());
+        return wallet != null ? wallet : playerDataStore.loadWallet(offline.getUniqueId());
     }
 
     private void applyRank(Player player, String rank) {
         if (rank != null && !rank.isEmpty()) {
-            try {
-                // Try to use LuckPerms if available
-                getServer().dispatchCommand(getServer().getConsoleSender(), "lp user " + player.getName() + " group add " + rank);
-                getLogger().info("Applied rank " + rank + " to player " + player.getName() + " via LuckPerms");
-            } catch (Exception e) {
-                // Fallback for testing without LuckPerms
-                getLogger().info("LuckPerms not found or command failed. For testing only: Applied virtual rank " + rank + " to player " + player.getName());
-                player.sendMessage("§a[ZKCraftTrade] §7Virtual rank applied: §e" + rank + " §7(LuckPerms not detected)");
-                // Store the rank in metadata for display purposes only
-                player.setMetadata("zkc_rank", new org.bukkit.metadata.FixedMetadataValue(this, rank));
-            }
+            rankBackend.grant(player, rank);
         }
     }
 
     private void removeRank(Player player, String rank) {
         if (rank != null && !rank.isEmpty()) {
-            try {
-                // Try to use LuckPerms if available
-                getServer().dispatchCommand(getServer().getConsoleSender(), "lp user " + player.getName() + " group remove " + rank);
-                getLogger().info("Removed rank " + rank + " from player " + player.getName() + " via LuckPerms");
-            } catch (Exception e) {
-                // Fallback for testing without LuckPerms
-                getLogger().info("LuckPerms not found or command failed. For testing only: Removed virtual rank " + rank + " from player " + player.getName());
-                player.sendMessage("§a[ZKCraftTrade] §7Virtual rank removed: §e" + rank + " §7(LuckPerms not detected)");
-                // Remove the metadata
-                player.removeMetadata("zkc_rank", this);
-            }
+            rankBackend.revoke(player, rank);
         }
     }
 
-    private void mintAsset(String wallet, String assetType, String value) {
-        if (!blockchainEnabled) {
-            if (assetType.equals("rank")) {
-                walletRanks.put(wallet, value);
-                rankData.set(wallet + ".rank", value);
-            } else if (assetType.equals("item")) {
-                // Handled in inventory logic
+    // Rank fallbacks also go to ranks.yml so the rank shows while the chain is unavailable
+    private void queueForChain(String wallet, String assetType, String value) {
+        if (assetType.equals("rank")) {
+            playerState.setRank(wallet, value);
+        }
+        chainOutbox.enqueue(wallet, assetType, value);
+    }
+
+    // Operations behind queued ones for the same asset join the queue, so they can't land before them
+    private CompletableFuture<Void> mintAsset(String wallet, String assetType, String value) {
+        if (!blockchainEnabled() || chainOutbox.queued(wallet, assetType) != null) {
+            queueForChain(wallet, assetType, value);
+            return CompletableFuture.completedFuture(null);
+        }
+        return transactionPipeline.submit(ZKCAsset.FUNC_MINT, ZKCAssetCalls.mint(wallet, assetType, value)).handle((receipt, error) -> {
+            if (error == null) {
+                assetCache.added(wallet, new ZKCAsset.Asset(assetType, value));
+                return null;
             }
-            saveDataFiles();
+            assetCache.invalidate(wallet);
+            getLogger().warning("Failed to mint " + assetType + " on blockchain, queued for retry: " + error.getMessage());
+            queueForChain(wallet, assetType, value);
+            return null;
+        });
+    }
+
+    private CompletableFuture<Void> burnAsset(String wallet, String assetType) {
+        if (!blockchainEnabled() || chainOutbox.queued(wallet, assetType) != null) {
+            queueForChain(wallet, assetType, null);
+            return CompletableFuture.completedFuture(null);
+        }
+        return circuitBreaker.callAsync(() -> metrics.timeAsync(Metrics.ContractCall.GET_TOKEN_ID,
+                () -> zkcAsset.getTokenId(wallet, assetType).sendAsync())).thenCompose(tokenId -> {
+            if (tokenId.signum() == 0) return CompletableFuture.<Void>completedFuture(null);
+            return transactionPipeline.submit(ZKCAsset.FUNC_BURN, ZKCAssetCalls.burn(tokenId))
+                    .thenAccept(receipt -> assetCache.removed(wallet, assetType));
+        }).handle((ignored, error) -> {
+            if (error == null) return null;
+            assetCache.invalidate(wallet);
+            getLogger().warning("Failed to burn " + assetType + " from blockchain, queued for retry: " + error.getMessage());
+            queueForChain(wallet, assetType, null);
+            return null;
+        });
+    }
+
+    /**
+     * Ends an escrowed item transfer once its transaction finished. A
+     * transaction that was never sent rolls back right away; one that was sent
+     * but failed may still have landed, so the chain decides.
+     */
+    private void finishEscrow(ItemEscrow.Entry entry, Throwable error, boolean sent) {
+        if (error == null) {
+            completeEscrow(entry);
+            return;
+        }
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (!sent) {
+            rollbackEscrow(entry, cause.getMessage());
             return;
         }
+        getLogger().warning("Item " + entry.kind.name().toLowerCase() + " transaction for " + entry.wallet + " failed, checking the chain: " + cause.getMessage());
+        entry.orphaned = true;
+        commandPipeline.supplyAsync(() -> {
+            settleEscrow(entry);
+            return null;
+        });
+    }
+
+    // Reads the wallet straight from the chain and completes or rolls back entry; if the read fails it is retried later
+    private void settleEscrow(ItemEscrow.Entry entry) {
+        if (!entry.settling.compareAndSet(false, true)) return;
+        String onChain;
         try {
-            zkcAsset.mint(wallet, assetType, value).send();
+            onChain = itemOnChain(entry.wallet);
         } catch (Exception e) {
-            getLogger().warning("Failed to mint " + assetType + " on blockchain: " + e.getMessage());
-            if (assetType.equals("rank")) {
-                walletRanks.put(wallet, value);
-                rankData.set(wallet + ".rank", value);
-            }
-            saveDataFiles();
+            getLogger().warning("Failed to settle escrowed item of " + entry.wallet + ", retrying later: " + e.getMessage());
+            entry.settling.set(false);
+            return;
+        }
+        boolean landed = entry.kind == ItemEscrow.Kind.SET ? entry.value.equals(onChain) : !entry.value.equals(onChain);
+        if (landed) {
+            completeEscrow(entry);
+        } else {
+            rollbackEscrow(entry, "the transaction did not go through");
         }
     }
 
-    private void burnAsset(String wallet, String assetType) {
-        if (!blockchainEnabled) {
-            if (assetType.equals("rank")) {
-                walletRanks.remove(wallet);
-                rankData.set(wallet, null);
-            } else if (assetType.equals("item")) {
-                // Handled in inventory logic
+    /**
+     * The item value the chain holds for wallet, or null for none. Read past
+     * the cache and the outbox, and a failed read throws instead of turning
+     * into a placeholder, so escrow decisions are only made on real data.
+     */
+    private String itemOnChain(String wallet) throws Exception {
+        assetCache.invalidate(wallet);
+        @SuppressWarnings("unchecked")
+        List<ZKCAsset.Asset> assets = circuitBreaker.call(() ->
+                metrics.time(Metrics.ContractCall.GET_WALLET_ASSETS, () -> zkcAsset.getWalletAssets(wallet).send()));
+        for (ZKCAsset.Asset asset : assets) {
+            if (asset.assetType.equals("item")) return asset.value;
+        }
+        return null;
+    }
+
+    // Escrows whose command is gone, from a restart or a failed settle; left alone for a grace period so their transactions can land
+    private void settleOrphanedEscrows() {
+        if (itemEscrow == null || !blockchainEnabled()) return;
+        long cutoff = System.currentTimeMillis() - config.getLong("escrow.recovery-grace-seconds", 300) * 1000L;
+        for (ItemEscrow.Entry entry : itemEscrow.unsettled()) {
+            if (entry.createdAt <= cutoff) settleEscrow(entry);
+        }
+    }
+
+    // The transaction landed: the item moves on to where it was going
+    private void completeEscrow(ItemEscrow.Entry entry) {
+        commandPipeline.runOnMainThread(() -> {
+            Player player = Bukkit.getPlayer(entry.player);
+            if (entry.kind == ItemEscrow.Kind.SET) {
+                assetCache.added(entry.wallet, new ZKCAsset.Asset("item", entry.value));
+                assetReconciler.recordApplied(entry.wallet, "item", entry.value);
+                if (ItemBlobStore.isHash(entry.value) && (!entry.orphaned || itemBlobs.get(entry.value) == null)) {
+                    String stored = entry.value;
+                    try {
+                        stored = itemBlobs.put(entry.item);
+                    } catch (IOException e) {
+                        getLogger().severe("Failed to store item blob " + entry.value + ": " + e.getMessage());
+                    }
+                    if (!stored.equals(entry.value)) {
+                        // The item no longer encodes to what was minted, e.g. after its trip through escrow.yml, so nothing
+                        // could verify it against the token; it stays in escrow, settled no more, for an operator to recover
+                        itemBlobs.release(stored);
+                        entry.orphaned = false;
+                        getLogger().severe("Escrowed item of " + entry.wallet + " hashes to " + stored + " but its token holds "
+                                + entry.value + ", leaving it in escrow.yml (entry " + entry.id + ") for an operator to recover");
+                        if (player != null) {
+                            player.sendMessage(ChatColor.RED + "[ZKCraftTrade] Your item was minted but could not be verified, it stays in escrow until an admin recovers it.");
+                            pollScheduler.markTraded(entry.player);
+                        }
+                        playerState.endItemTransfer(entry.player);
+                        return;
+                    }
+                }
+                playerState.storeItem(entry.player, entry.item);
+                itemEscrow.release(entry);
+                if (player != null) player.sendMessage(ChatColor.GREEN + "[ZKCraftTrade] Item stored as NFT: " + describeItem(entry.value));
+            } else {
+                assetCache.removed(entry.wallet, "item");
+                assetReconciler.recordApplied(entry.wallet, "item", null);
+                if (ItemBlobStore.isHash(entry.value)) itemBlobs.release(entry.value);
+                handOver(entry, player, ChatColor.GREEN + "[ZKCraftTrade] Retrieved item: " + entry.item.getType());
+            }
+            if (player != null) pollScheduler.markTraded(entry.player);
+            playerState.endItemTransfer(entry.player);
+        });
+    }
+
+    // The transaction did not land: the item goes back to where it came from
+    private void rollbackEscrow(ItemEscrow.Entry entry, String reason) {
+        commandPipeline.runOnMainThread(() -> {
+            Player player = Bukkit.getPlayer(entry.player);
+            if (entry.kind == ItemEscrow.Kind.SET) {
+                handOver(entry, player, ChatColor.RED + "[ZKCraftTrade] Could not store your item (" + reason + "), it was returned to you.");
+            } else if (playerState.storeItem(entry.player, entry.item)) {
+                itemEscrow.release(entry);
+                if (player != null) player.sendMessage(ChatColor.RED + "[ZKCraftTrade] Could not retrieve your item (" + reason + "), it stays stored.");
+            } else {
+                // The slot was filled meanwhile, so the player gets the item rather than losing it
+                handOver(entry, player, ChatColor.RED + "[ZKCraftTrade] Could not retrieve your item (" + reason + "), it was returned to you.");
             }
-            saveDataFiles();
+            getLogger().info("Rolled back item " + entry.kind.name().toLowerCase() + " for " + entry.wallet + ": " + reason);
+            playerState.endItemTransfer(entry.player);
+        });
+    }
+
+    // Gives the escrowed item to player, or keeps it owed until they join
+    private void handOver(ItemEscrow.Entry entry, Player player, String message) {
+        if (player == null) {
+            itemEscrow.owe(entry);
             return;
         }
-        try {
-            java.math.BigInteger tokenId = zkcAsset.getTokenId(wallet, assetType).send();
-            if (tokenId.intValue() != 0) {
-                zkcAsset.burn(tokenId).send();
+        giveItem(player, entry.item);
+        player.saveData();
+        itemEscrow.release(entry);
+        player.sendMessage(message);
+    }
+
+    // What doesn't fit in the inventory is dropped at the player's feet
+    private void giveItem(Player player, ItemStack item) {
+        for (ItemStack overflow : player.getInventory().addItem(item.clone()).values()) {
+            player.getWorld().dropItemNaturally(player.getLocation(), overflow);
+        }
+    }
+
+    // Material and short hash for a blob-backed value, the value itself for older tokens
+    private String describeItem(String valueOnChain) {
+        if (!ItemBlobStore.isHash(valueOnChain)) return valueOnChain;
+        ItemStack blob = itemBlobs.get(valueOnChain);
+        return (blob != null ? blob.getType() + " " : "") + "#" + valueOnChain.substring(0, 12);
+    }
+
+    // One setVaultRoot per vault update, however many slots it changed; a failed one is retried by commitVaults
+    private void commitVault(VaultStore.Vault vault) {
+        if (!blockchainEnabled()) return;
+        VaultStore.Commit commit = vaultStore.beginCommit(vault);
+        if (commit == null) return;
+        transactionPipeline.submit(ZKCAsset.FUNC_SETVAULTROOT, ZKCAssetCalls.setVaultRoot(commit.wallet, commit.root)).whenComplete((receipt, error) -> {
+            vaultStore.endCommit(commit, error == null);
+            if (error != null) {
+                getLogger().warning("Failed to commit the vault root of " + commit.wallet + ", retrying later: " + error.getMessage());
+            } else {
+                // Changes made while it was in flight
+                commitVault(vault);
             }
-        } catch (Exception e) {
-            getLogger().warning("Failed to burn " + assetType + " from blockchain: " + e.getMessage());
-            if (assetType.equals("rank")) {
-                walletRanks.remove(wallet);
-                rankData.set(wallet, null);
+        });
+    }
+
+    // Vault roots that didn't reach the chain, sent together by setVaultRoots
+    private void commitVaults() {
+        if (vaultStore == null || !blockchainEnabled()) return;
+        List<VaultStore.Commit> commits = new ArrayList<>();
+        for (VaultStore.Vault vault : vaultStore.uncommitted()) {
+            VaultStore.Commit commit = vaultStore.beginCommit(vault);
+            if (commit != null) commits.add(commit);
+        }
+        int batchSize = Math.max(1, config.getInt("vault.batch-size", 50));
+        for (int start = 0; start < commits.size(); start += batchSize) {
+            List<VaultStore.Commit> batch = commits.subList(start, Math.min(start + batchSize, commits.size()));
+            List<String> wallets = new ArrayList<>();
+            List<byte[]> roots = new ArrayList<>();
+            for (VaultStore.Commit commit : batch) {
+                wallets.add(commit.wallet);
+                roots.add(commit.root);
             }
-            saveDataFiles();
+            transactionPipeline.submit(ZKCAsset.FUNC_SETVAULTROOTS, ZKCAssetCalls.setVaultRoots(wallets, roots)).whenComplete((receipt, error) -> {
+                for (VaultStore.Commit commit : batch) vaultStore.endCommit(commit, error == null);
+                if (error != null) getLogger().warning("Failed to commit " + batch.size() + " vault roots, retrying later: " + error.getMessage());
+            });
         }
     }
 
     private ZKCAsset.Asset getAssetFromBlockchain(String wallet, String assetType) {
-        if (!blockchainEnabled) {
+        // What is queued for the chain is what it will hold, and what the player should see until then
+        ChainOutbox.Intent queued = chainOutbox.queued(wallet, assetType);
+        if (queued != null) {
+            return queued.value != null ? new ZKCAsset.Asset(assetType, queued.value) : null;
+        }
+        if (!blockchainEnabled()) {
             if (assetType.equals("rank")) {
-                String rank = walletRanks.get(wallet);
+                String rank = playerState.fallbackRank(wallet);
                 if (rank != null) {
                     return new ZKCAsset.Asset(assetType, rank);
                 } else {
@@ -294,7 +920,9 @@ public class ZKCraftTrade extends JavaPlugin {
             return null;
         }
         try {
-            List<ZKCAsset.Asset> assets = zkcAsset.getWalletAssets(wallet).send();
+            @SuppressWarnings("unchecked")
+            List<ZKCAsset.Asset> assets = assetCache.get(wallet, () -> circuitBreaker.call(() ->
+                    metrics.time(Metrics.ContractCall.GET_WALLET_ASSETS, () -> zkcAsset.getWalletAssets(wallet).send())));
             for (ZKCAsset.Asset asset : assets) {
                 if (asset.assetType.equals(assetType)) {
                     return asset;
@@ -304,7 +932,7 @@ public class ZKCraftTrade extends JavaPlugin {
         } catch (Exception e) {
             getLogger().warning("Failed to fetch " + assetType + " from blockchain: " + e.getMessage());
             if (assetType.equals("rank")) {
-                String rank = walletRanks.get(wallet);
+                String rank = playerState.fallbackRank(wallet);
                 if (rank != null) {
                     return new ZKCAsset.Asset(assetType, rank);
                 } else {
@@ -338,66 +966,170 @@ public class ZKCraftTrade extends JavaPlugin {
         }
     }
 
+    // Picks the rank backend: the LuckPerms API when it's installed, player metadata otherwise
     private void checkForLuckPerms() {
-        if (getServer().getPluginManager().getPlugin("LuckPerms") != null) {
+        RankBackend luckPerms = getServer().getPluginManager().getPlugin("LuckPerms") != null
+                ? LuckPermsRankBackend.create(getServer(), getLogger()) : null;
+        if (luckPerms != null) {
             luckPermsAvailable = true;
+            rankBackend = luckPerms;
             getLogger().info("LuckPerms detected. Rank management will use LuckPerms.");
         } else {
             luckPermsAvailable = false;
+            rankBackend = new MetadataRankBackend(this);
             getLogger().warning("LuckPerms not detected. Rank management will be in 'testing mode' only.");
             getLogger().warning("In testing mode, ranks are only simulated and not actually applied to players.");
             getLogger().warning("Install LuckPerms for full rank functionality in production.");
         }
     }
 
-    // Initialize YAML data files for wallets, inventory, and ranks
+    // Mints and burns that could not reach the chain, replayed once it is available; reads the components current at replay time
+    private void initializeOutbox() throws IOException {
+        ChainOutbox.Host host = new ChainOutbox.Host() {
+            @Override
+            public boolean available() {
+                return blockchainEnabled() && batchAssetReader != null && transactionPipeline != null;
+            }
+
+            @Override
+            public BatchAssetReader reader() {
+                return batchAssetReader;
+            }
+
+            @Override
+            public TransactionPipeline pipeline() {
+                return transactionPipeline;
+            }
+
+            @Override
+            public void applied(ChainOutbox.Intent intent) {
+                assetCache.invalidate(intent.wallet);
+            }
+        };
+        chainOutbox = new ChainOutbox(new File(new File(getDataFolder(), "data"), "outbox.log"), host,
+                config.getInt("outbox.batch-size", 25),
+                config.getInt("outbox.max-concurrent-batches", 2),
+                config.getLong("outbox.retry-interval-seconds", 15) * 1000L,
+                getLogger());
+        chainOutbox.open();
+    }
+
+    // Open the configured player data store for wallets, inventory, and ranks
     private void initializeDataFiles() {
         try {
             File dataFolder = getDataFolder();
             if (!dataFolder.exists()) dataFolder.mkdirs();
+            long flushInterval = config.getLong("storage.flush-interval-millis", 1000);
 
-            walletFile = new File(dataFolder, "wallets.yml");
-            if (!walletFile.exists()) walletFile.createNewFile();
-            walletData = YamlConfiguration.loadConfiguration(walletFile);
-
-            inventoryFile = new File(dataFolder, "inventory.yml");
-            if (!inventoryFile.exists()) inventoryFile.createNewFile();
-            inventoryData = YamlConfiguration.loadConfiguration(inventoryFile);
-
-            rankFile = new File(dataFolder, "ranks.yml");
-            if (!rankFile.exists()) rankFile.createNewFile();
-            rankData = YamlConfiguration.loadConfiguration(rankFile);
+            if (config.getString("storage.backend", "yaml").equalsIgnoreCase("journal")) {
+                File journalFolder = new File(dataFolder, "data");
+                boolean migrate = !JournalPlayerDataStore.exists(journalFolder);
+                JournalPlayerDataStore journal = new JournalPlayerDataStore(journalFolder, flushInterval,
+                        config.getLong("storage.compact-after-records", 10000), metrics, getLogger());
+                journal.open();
+                if (migrate) PlayerDataMigrator.migrateYamlToJournal(dataFolder, journal, metrics, getLogger());
+                playerDataStore = journal;
+            } else {
+                playerDataStore = new YamlPlayerDataStore(dataFolder, flushInterval, metrics, getLogger());
+                playerDataStore.open();
+                getLogger().warning("storage.backend yaml keeps every player's data in memory, online or not; "
+                        + "set storage.backend to journal on servers with many players");
+            }
+            playerState = new PlayerStateStore(playerDataStore);
+            itemBlobs = new ItemBlobStore(new File(new File(dataFolder, "data"), "items.blob"), flushInterval, metrics, getLogger());
+            itemBlobs.open();
 
-            loadPlayerWallets();
-            loadCrossServerInventory();
-            loadWalletRanks();
         } catch (Exception e) {
             getLogger().severe("Failed to initialize data files: " + e.getMessage());
         }
     }
 
-    // Save all YAML data files
-    private void saveDataFiles() {
-        try {
-            if (walletData != null && walletFile != null) walletData.save(walletFile);
-            if (inventoryData != null && inventoryFile != null) inventoryData.save(inventoryFile);
-            if (rankData != null && rankFile != null) rankData.save(rankFile);
-        } catch (Exception e) {
-            getLogger().severe("Failed to save data files: " + e.getMessage());
+    /**
+     * Re-reads config.yml and rebuilds only the components whose keys
+     * changed since they were built. Returns the lines to report to the admin.
+     */
+    private List<String> reloadConfiguration() {
+        reloadConfig();
+        config = getConfig();
+        Map<String, Object> updated = ConfigDiff.snapshot(config);
+        ConfigDiff diff = ConfigDiff.between(appliedConfig, updated);
+        appliedConfig = updated;
+        if (!diff.isEmpty()) getLogger().info("Reloading changed config keys: " + diff.keys());
+        boolean chainDown = !blockchainConfigured;
+        List<String> rebuilt = new ArrayList<>();
+        // A chain that failed to come up is retried on every reload, changed or not
+        if (chainDown || diff.any("blockchain", "rpc", "breaker", "transactions",
+                "poller.batch-size", "poller.max-concurrent-batches", "poller.confirmations", "poller.max-block-range",
+                "poller.max-ranges-per-poll")) {
+            rebuilt.addAll(applyBlockchainConfig(diff));
+            if (blockchainConfigured && (chainDown || diff.any("blockchain.rpc-url", "blockchain.rpc-urls", "blockchain.chain-id", "rpc"))) {
+                commandPipeline.supplyAsync(() -> {
+                    checkChainConnection();
+                    return null;
+                });
+            }
+        }
+        if (diff.any("cache")) {
+            assetCache = new AssetCache(config.getLong("cache.max-wallets", 10000), config.getLong("cache.ttl-seconds", 30));
+            rebuilt.add("asset cache");
+        } else if (chainDown || diff.any("blockchain.zkcasset-contract-address", "blockchain.rpc-url", "blockchain.rpc-urls")) {
+            // Reads cached from another contract or node may not hold for the new one
+            assetCache.invalidateAll();
+        }
+        if (diff.any("poller.mode", "poller.requests-per-second", "poller.interval-millis", "poller.min-interval-millis",
+                "poller.max-interval-millis", "poller.slow-latency-millis")) {
+            boolean running = pollScheduler.isRunning();
+            createBlockchainPoller();
+            if (running) pollScheduler.start();
+            rebuilt.add("poll scheduler");
+        }
+        if (diff.any("metrics.http")) {
+            if (metricsEndpoint != null) metricsEndpoint.stop();
+            metricsEndpoint = null;
+            startMetricsEndpoint();
+            rebuilt.add("metrics endpoint");
         }
+        List<String> report = new ArrayList<>();
+        if (diff.isEmpty() && rebuilt.isEmpty()) {
+            report.add("config.yml unchanged");
+        } else {
+            report.add("Config keys changed: " + diff.keys().size() + (rebuilt.isEmpty() ? "" : "; rebuilt " + String.join(", ", rebuilt)));
+        }
+        // Built once at startup; changing these at runtime would strand the threads or data they own
+        List<String> needRestart = new ArrayList<>();
+        for (String key : diff.keys()) {
+            if (key.startsWith("storage.") || key.startsWith("commands.") || key.startsWith("startup.") || key.startsWith("reconcile.")
+                    || key.startsWith("outbox.") || key.equals("vault.retry-interval-seconds")) needRestart.add(key);
+        }
+        if (!needRestart.isEmpty()) report.add(ChatColor.YELLOW + "Takes effect after a restart: " + String.join(", ", needRestart));
+        return report;
     }
 
-    // Reload all YAML data files
-    private void reloadDataFiles() {
+    /**
+     * Re-reads the data files and refreshes only the loaded players and
+     * wallets whose records changed on disk. Returns a line for the admin.
+     */
+    private String reloadDataFiles() {
         try {
-            if (walletFile != null) walletData = YamlConfiguration.loadConfiguration(walletFile);
-            if (inventoryFile != null) inventoryData = YamlConfiguration.loadConfiguration(inventoryFile);
-            if (rankFile != null) rankData = YamlConfiguration.loadConfiguration(rankFile);
-            loadPlayerWallets();
-            loadCrossServerInventory();
-            loadWalletRanks();
+            PlayerDataStore.Changes changes = playerDataStore.reload();
+            Set<UUID> loaded = new HashSet<>(pendingEvictions.keySet());
+            for (Player online : Bukkit.getOnlinePlayers()) loaded.add(online.getUniqueId());
+            int players = 0;
+            for (UUID uuid : changes.players) {
+                if (!loaded.contains(uuid)) continue;
+                playerState.reload(uuid);
+                players++;
+            }
+            int ranks = 0;
+            for (String wallet : changes.rankWallets) {
+                if (playerState.reloadRank(wallet)) ranks++;
+            }
+            if (changes.isEmpty()) return "Data files unchanged";
+            return "Data files: " + changes.players.size() + " players and " + changes.rankWallets.size() + " ranks changed on disk, "
+                    + players + " players and " + ranks + " ranks refreshed in memory";
         } catch (Exception e) {
             getLogger().severe("Failed to reload data files: " + e.getMessage());
+            return ChatColor.RED + "Failed to reload data files: " + e.getMessage();
         }
     }
 
@@ -416,7 +1148,7 @@ public class ZKCraftTrade extends JavaPlugin {
         });
     }
 
-    class ZKCCommandExecutor implements TabExecutor {
+    class ZKCCommandExecutor implements CommandExecutor {
         @Override
         public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
             if (!(sender instanceof Player)) {
@@ -424,10 +1156,28 @@ public class ZKCraftTrade extends JavaPlugin {
                 return true;
             }
             Player player = (Player) sender;
+            if (!startup.isReady()) {
+                player.sendMessage(ChatColor.YELLOW + "[ZKCraftTrade] Still starting up (loading player data and connecting to the blockchain), please try again in a moment.");
+                return true;
+            }
+            pollScheduler.markActive(player.getUniqueId());
+            long start = System.nanoTime();
+            dispatch(player, args);
+            metrics.command(metricName(args), System.nanoTime() - start);
+            return true;
+        }
 
+        // Unknown subcommands share one name, so typos can't create new series
+        private String metricName(String[] args) {
+            if (args.length == 0) return "usage";
+            String subcommand = args[0].toLowerCase();
+            return SUBCOMMANDS.contains(subcommand) ? subcommand : "unknown";
+        }
+
+        private void dispatch(Player player, String[] args) {
             if (args.length == 0) {
-                player.sendMessage("Usage: /zkc <wallet|rank|inventory|reload|info>");
-                return true;
+                player.sendMessage("Usage: /zkc <wallet|rank|inventory|vault|reload|info>");
+                return;
             }
 
             switch (args[0].toLowerCase()) {
@@ -440,11 +1190,13 @@ public class ZKCraftTrade extends JavaPlugin {
                 case "inventory":
                     handleInventoryCommands(player, args);
                     break;
+                case "vault":
+                    handleVaultCommands(player, args);
+                    break;
                 case "reload":
                     if (player.hasPermission("zkcraft.admin")) {
-                        reloadConfig();
-                        reloadDataFiles();
-                        initializeBlockchain();
+                        for (String line : reloadConfiguration()) player.sendMessage(line);
+                        player.sendMessage(reloadDataFiles());
                         player.sendMessage("Plugin configuration and data reloaded!");
                     } else {
                         player.sendMessage("You don't have permission!");
@@ -452,10 +1204,27 @@ public class ZKCraftTrade extends JavaPlugin {
                     break;
                 case "info":
                     if (player.hasPermission("zkcraft.admin")) {
-                        player.sendMessage("Wallets: " + playerWallets);
-                        player.sendMessage("Inventory: " + crossServerInventory);
-                        player.sendMessage("Ranks: " + walletRanks);
-                        player.sendMessage("Blockchain Enabled: " + blockchainEnabled);
+                        player.sendMessage("Wallets: " + playerState.wallets());
+                        player.sendMessage("Inventory: " + playerState.items());
+                        player.sendMessage("Ranks: " + playerState.ranks());
+                        player.sendMessage("Blockchain Enabled: " + blockchainEnabled()
+                                + (circuitBreaker != null ? " (circuit " + circuitBreaker.state() + ")" : ""));
+                        if (rpcRouter != null) {
+                            for (String endpoint : rpcRouter.describe()) player.sendMessage("RPC " + endpoint);
+                        }
+                        player.sendMessage("Rank backend: " + rankBackend.name());
+                        player.sendMessage("Poller: " + (pollScheduler.isRunning() ? "running" : "paused") + ", "
+                                + pollScheduler.queueDepth() + " wallets queued, every " + pollScheduler.intervalMillis() + "ms ("
+                                + Math.round(pollScheduler.latencyMillis()) + "ms latency, "
+                                + Math.round(pollScheduler.errorRate() * 100) + "% errors)");
+                        player.sendMessage("Item blobs: " + itemBlobs.size() + " (" + itemBlobs.liveBytes() / 1024 + " KB live, "
+                                + itemBlobs.deadBytes() / 1024 + " KB awaiting compaction)");
+                        player.sendMessage("Outbox: " + chainOutbox.describe());
+                        player.sendMessage("Item escrow: " + itemEscrow.size() + " items in transfer");
+                        player.sendMessage("Vaults: " + vaultStore.loaded() + " loaded, " + vaultStore.uncommittedCount() + " awaiting their root on chain");
+                        CacheStats cacheStats = assetCache.stats();
+                        player.sendMessage("Asset cache: " + assetCache.size() + " wallets, " + cacheStats.hitCount() + " hits, "
+                                + cacheStats.missCount() + " misses (" + String.format("%.1f", cacheStats.hitRate() * 100) + "% hit rate)");
                     } else {
                         player.sendMessage("You don't have permission!");
                     }
@@ -472,10 +1241,16 @@ public class ZKCraftTrade extends JavaPlugin {
                 case "resumepoll":
                     handleResumePollCommand(player);
                     break;
+                case "metrics":
+                    if (player.hasPermission("zkcraft.admin")) {
+                        for (String line : metrics.summary()) player.sendMessage(line);
+                    } else {
+                        player.sendMessage("You don't have permission!");
+                    }
+                    break;
                 default:
-                    player.sendMessage("Unknown subcommand! Use: /zkc <wallet|rank|inventory|reload|info>");
+                    player.sendMessage("Unknown subcommand! Use: /zkc <wallet|rank|inventory|vault|reload|info>");
             }
-            return true;
         }
 
         private void handleWalletCommands(Player player, String[] args) {
@@ -496,33 +1271,39 @@ public class ZKCraftTrade extends JavaPlugin {
                         player.sendMessage("Invalid private key format. Please check your private key and try again.");
                         return;
                     }
-                    playerWallets.put(uuid, address);
-                    walletData.set(uuid.toString() + ".address", address);
-                    saveDataFiles();
+                    playerState.linkWallet(uuid, address);
                     player.sendMessage("Wallet linked successfully!");
                     player.sendMessage("Derived address: " + address);
-                    if (!blockchainEnabled) reportBlockchainUnavailable(player);
+                    if (!blockchainEnabled()) reportBlockchainUnavailable(player);
                     break;
                 case "unlink":
-                    String wallet = playerWallets.remove(uuid);
-                    if (wallet != null) {
+                    if (itemEscrow.pending(uuid) != null) {
+                        player.sendMessage("An item transfer is still in progress, please wait before unlinking.");
+                        return;
+                    }
+                    String wallet = playerState.unlinkWallet(uuid);
+                    if (wallet == null) {
+                        player.sendMessage("Wallet unlinked!");
+                        return;
+                    }
+                    assetCache.invalidate(wallet);
+                    commandPipeline.runAsync(player, "wallet unlink", () -> {
                         ZKCAsset.Asset rank = getAssetFromBlockchain(wallet, "rank");
+                        ZKCAsset.Asset item = getAssetFromBlockchain(wallet, "item");
+                        CompletableFuture<Void> rankBurn = rank != null ? burnAsset(wallet, "rank") : CompletableFuture.completedFuture(null);
+                        CompletableFuture<Void> itemBurn = item != null ? burnAsset(wallet, "item") : CompletableFuture.completedFuture(null);
+                        return CompletableFuture.allOf(rankBurn, itemBurn).thenApply(ignored -> {
+                            if (item != null && ItemBlobStore.isHash(item.value)) itemBlobs.release(item.value);
+                            return rank;
+                        });
+                    }, rank -> {
                         if (rank != null) {
-                            burnAsset(wallet, "rank");
                             removeRank(player, rank.value);
                         }
-                        ZKCAsset.Asset item = getAssetFromBlockchain(wallet, "item");
-                        if (item != null) {
-                            burnAsset(wallet, "item");
-                        }
-                        walletRanks.remove(wallet);
-                        rankData.set(wallet, null);
-                        crossServerInventory.remove(uuid);
-                        inventoryData.set(uuid.toString(), null);
-                    }
-                    walletData.set(uuid.toString(), null);
-                    saveDataFiles();
-                    player.sendMessage("Wallet unlinked!");
+                        playerState.clearWalletAssets(uuid, wallet);
+                        assetReconciler.forget(wallet);
+                        player.sendMessage("Wallet unlinked!");
+                    });
                     break;
                 default:
                     player.sendMessage("Usage: /zkc wallet <link|unlink>");
@@ -535,7 +1316,7 @@ public class ZKCraftTrade extends JavaPlugin {
                 return;
             }
             UUID uuid = player.getUniqueId();
-            String wallet = playerWallets.get(uuid);
+            String wallet = playerState.wallet(uuid);
             switch (args[1].toLowerCase()) {
                 case "assign":
                     if (!player.hasPermission("zkcraft.admin")) {
@@ -551,20 +1332,28 @@ public class ZKCraftTrade extends JavaPlugin {
                         player.sendMessage("Player not found!");
                         return;
                     }
-                    String targetWallet = playerWallets.get(target.getUniqueId());
+                    String targetWallet = playerState.wallet(target.getUniqueId());
                     if (targetWallet == null) {
                         player.sendMessage("Target player has no linked wallet!");
                         return;
                     }
                     String rank = args[3];
-                    ZKCAsset.Asset existingRank = getAssetFromBlockchain(targetWallet, "rank");
-                    if (existingRank != null) {
-                        player.sendMessage("Player already has a rank: " + existingRank.value);
-                        return;
-                    }
-                    mintAsset(targetWallet, "rank", rank);
-                    applyRank(target, rank);
-                    player.sendMessage("Assigned rank " + rank + " to " + args[2] + "'s wallet (" + targetWallet + ")");
+                    commandPipeline.runAsync(player, "rank assign", () -> {
+                        ZKCAsset.Asset existingRank = getAssetFromBlockchain(targetWallet, "rank");
+                        if (existingRank != null) {
+                            return CompletableFuture.completedFuture(existingRank);
+                        }
+                        return mintAsset(targetWallet, "rank", rank).thenApply(ignored -> (ZKCAsset.Asset) null);
+                    }, existingRank -> {
+                        if (existingRank != null) {
+                            player.sendMessage("Player already has a rank: " + existingRank.value);
+                            return;
+                        }
+                        applyRank(target, rank);
+                        assetReconciler.recordApplied(targetWallet, "rank", rank);
+                        pollScheduler.markTraded(target.getUniqueId());
+                        player.sendMessage("Assigned rank " + rank + " to " + args[2] + "'s wallet (" + targetWallet + ")");
+                    });
                     break;
                 case "remove":
                     if (!player.hasPermission("zkcraft.admin")) {
@@ -580,72 +1369,160 @@ public class ZKCraftTrade extends JavaPlugin {
                         player.sendMessage("Player not found!");
                         return;
                     }
-                    String removeWallet = playerWallets.get(removeTarget.getUniqueId());
+                    String removeWallet = playerState.wallet(removeTarget.getUniqueId());
                     if (removeWallet == null) {
                         player.sendMessage("Target player has no linked wallet!");
                         return;
                     }
-                    ZKCAsset.Asset rankAsset = getAssetFromBlockchain(removeWallet, "rank");
-                    if (rankAsset == null) {
-                        player.sendMessage("Player has no rank!");
-                        return;
-                    }
-                    burnAsset(removeWallet, "rank");
-                    removeRank(removeTarget, rankAsset.value);
-                    player.sendMessage("Removed rank " + rankAsset.value + " from " + args[2] + "'s wallet (" + removeWallet + ")");
+                    commandPipeline.runAsync(player, "rank remove", () -> {
+                        ZKCAsset.Asset rankAsset = getAssetFromBlockchain(removeWallet, "rank");
+                        if (rankAsset == null) {
+                            return CompletableFuture.completedFuture((ZKCAsset.Asset) null);
+                        }
+                        return burnAsset(removeWallet, "rank").thenApply(ignored -> rankAsset);
+                    }, rankAsset -> {
+                        if (rankAsset == null) {
+                            player.sendMessage("Player has no rank!");
+                            return;
+                        }
+                        removeRank(removeTarget, rankAsset.value);
+                        assetReconciler.recordApplied(removeWallet, "rank", null);
+                        pollScheduler.markTraded(removeTarget.getUniqueId());
+                        player.sendMessage("Removed rank " + rankAsset.value + " from " + args[2] + "'s wallet (" + removeWallet + ")");
+                    });
                     break;
                 case "sync":
                     if (wallet == null) {
                         player.sendMessage("You must link a wallet first! Use /zkc wallet link <privateKey>");
                         return;
                     }
-                    ZKCAsset.Asset rank = getAssetFromBlockchain(wallet, "rank");
-                    if (rank != null) {
-                        applyRank(player, rank.value);
-                        player.sendMessage("Rank synced: " + rank.value);
-                    } else {
-                        player.sendMessage("No rank found for your wallet!");
-                    }
+                    commandPipeline.run(player, "rank sync", () -> getAssetFromBlockchain(wallet, "rank"), syncRank -> {
+                        if (syncRank != null) {
+                            if (!syncRank.value.equals(assetReconciler.appliedValue(wallet, "rank"))) {
+                                applyRank(player, syncRank.value);
+                                assetReconciler.recordApplied(wallet, "rank", syncRank.value);
+                            }
+                            player.sendMessage("Rank synced: " + syncRank.value);
+                        } else {
+                            player.sendMessage("No rank found for your wallet!");
+                        }
+                    });
                     break;
                 case "check":
                     if (args.length < 3) {
                         player.sendMessage("Usage: /zkc rank check <player>");
                         return;
                     }
-                    Player checkTarget = getServer().getPlayer(args[2]);
-                    if (checkTarget == null) {
-                        player.sendMessage("Player not found!");
-                        return;
-                    }
-                    String checkWallet = playerWallets.get(checkTarget.getUniqueId());
-                    if (checkWallet == null) {
-                        player.sendMessage("Player has no linked wallet!");
-                        return;
-                    }
-                    ZKCAsset.Asset checkRank = getAssetFromBlockchain(checkWallet, "rank");
-                    if (!blockchainEnabled) reportBlockchainUnavailable(player);
-                    if (checkRank != null) {
-                        player.sendMessage(args[2] + "'s rank (" + checkWallet + "): " + checkRank.value);
-                    } else {
-                        player.sendMessage(args[2] + " has no rank!");
-                    }
+                    withPlayerWallet(player, args[2], checkWallet ->
+                            commandPipeline.run(player, "rank check", () -> getAssetFromBlockchain(checkWallet, "rank"), checkRank -> {
+                                if (!blockchainEnabled()) reportBlockchainUnavailable(player);
+                                if (checkRank != null) {
+                                    player.sendMessage(args[2] + "'s rank (" + checkWallet + "): " + checkRank.value);
+                                } else {
+                                    player.sendMessage(args[2] + " has no rank!");
+                                }
+                            }));
                     break;
                 case "list":
                     if (wallet == null) {
                         player.sendMessage("You must link a wallet first! Use /zkc wallet link <privateKey>");
                         return;
                     }
-                    ZKCAsset.Asset myRank = getAssetFromBlockchain(wallet, "rank");
-                    if (!blockchainEnabled) reportBlockchainUnavailable(player);
-                    if (myRank != null) {
-                        player.sendMessage("Your rank (" + wallet + "): " + myRank.value);
-                    } else {
-                        player.sendMessage("You have no rank!");
-                    }
+                    commandPipeline.run(player, "rank list", () -> getAssetFromBlockchain(wallet, "rank"), myRank -> {
+                        if (!blockchainEnabled()) reportBlockchainUnavailable(player);
+                        if (myRank != null) {
+                            player.sendMessage("Your rank (" + wallet + "): " + myRank.value);
+                        } else {
+                            player.sendMessage("You have no rank!");
+                        }
+                    });
+                    break;
+                case "bulkassign":
+                case "bulkremove":
+                case "bulkstatus":
+                case "bulkcancel":
+                    handleBulkRankCommand(player, args);
                     break;
                 default:
-                    player.sendMessage("Usage: /zkc rank <assign|remove|sync|check|list>");
+                    player.sendMessage("Usage: /zkc rank <assign|remove|sync|check|list|bulkassign|bulkremove|bulkstatus|bulkcancel>");
+            }
+        }
+
+        // /zkc rank bulkassign|bulkremove <file|group> <name> [rank], bulkstatus, bulkcancel
+        private void handleBulkRankCommand(Player player, String[] args) {
+            if (!player.hasPermission("zkcraft.admin")) {
+                player.sendMessage("You don't have permission!");
+                return;
+            }
+            BulkRankJob running = bulkRankJob;
+            String subcommand = args[1].toLowerCase();
+            if (subcommand.equals("bulkstatus") || subcommand.equals("bulkcancel")) {
+                if (running == null || !running.isRunning()) {
+                    player.sendMessage("No bulk rank job is running." + (running != null ? " Last one: " + running.progressLine() : ""));
+                } else if (subcommand.equals("bulkcancel")) {
+                    running.cancel();
+                    player.sendMessage("Cancelling after the chunk in flight: " + running.progressLine());
+                } else {
+                    player.sendMessage(running.progressLine());
+                }
+                return;
+            }
+            boolean assign = subcommand.equals("bulkassign");
+            if (args.length < 4 || (assign && args[2].equalsIgnoreCase("group") && args.length < 5)) {
+                player.sendMessage("Usage: /zkc rank " + subcommand + " <file|group> <name> " + (assign ? "[rank]" : "[onlyRank]")
+                        + " (a group needs the rank to assign)");
+                return;
+            }
+            if (running != null && running.isRunning()) {
+                player.sendMessage("A bulk rank job is already running: " + running.progressLine());
+                return;
+            }
+            String source = args[2].toLowerCase();
+            String name = args[3];
+            String rank = args.length >= 5 ? args[4] : null;
+            String description = "Bulk " + (assign ? "assign" : "removal") + (rank != null ? " of " + rank : "") + " from " + source + " " + name;
+            UUID admin = player.getUniqueId();
+            if (source.equals("file")) {
+                File bulkFolder = new File(getDataFolder(), "bulk");
+                if (name.contains("/") || name.contains("\\") || name.contains("..")) {
+                    player.sendMessage("Give just the name of a file in plugins/ZKCraftTrade/bulk/");
+                    return;
+                }
+                commandPipeline.run(player, "rank " + subcommand, () -> BulkRankJob.readFile(new File(bulkFolder, name), rank),
+                        entries -> startBulkRankJob(player, assign, description, entries, admin));
+            } else if (source.equals("group")) {
+                rankBackend.members(name).whenComplete((members, error) -> commandPipeline.runOnMainThread(() -> {
+                    if (error != null) {
+                        player.sendMessage(ChatColor.RED + "[ZKCraftTrade] Could not list group " + name + ": " + error.getMessage());
+                        return;
+                    }
+                    List<BulkRankJob.Entry> entries = new ArrayList<>(members.size());
+                    for (UUID member : members) entries.add(new BulkRankJob.Entry(member.toString(), rank));
+                    startBulkRankJob(player, assign, description, entries, admin);
+                }));
+            } else {
+                player.sendMessage("Usage: /zkc rank " + subcommand + " <file|group> <name> [rank]");
+            }
+        }
+
+        private void startBulkRankJob(Player player, boolean assign, String description, List<BulkRankJob.Entry> entries, UUID admin) {
+            if (bulkRankJob != null && bulkRankJob.isRunning()) {
+                player.sendMessage("A bulk rank job is already running: " + bulkRankJob.progressLine());
+                return;
+            }
+            if (entries.isEmpty()) {
+                player.sendMessage(description + ": nothing to do.");
+                return;
             }
+            bulkRankJob = new BulkRankJob(assign, description, entries, batchAssetReader, transactionPipeline, bulkRankHost(admin),
+                    config.getInt("bulk.chunk-size", 25),
+                    config.getInt("bulk.max-retries", 3),
+                    config.getLong("bulk.retry-delay-millis", 5000),
+                    config.getLong("bulk.progress-interval-seconds", 10) * 1000L,
+                    new File(getDataFolder(), "bulk"),
+                    getLogger());
+            bulkRankJob.start();
+            player.sendMessage("Started " + description + " for " + entries.size() + " entries. Use /zkc rank bulkstatus to follow it.");
         }
 
         private void handleInventoryCommands(Player player, String[] args) {
@@ -654,7 +1531,7 @@ public class ZKCraftTrade extends JavaPlugin {
                 return;
             }
             UUID uuid = player.getUniqueId();
-            String wallet = playerWallets.get(uuid);
+            String wallet = playerState.wallet(uuid);
             if (wallet == null) {
                 player.sendMessage("You must link a wallet first! Use /zkc wallet link <privateKey>");
                 return;
@@ -662,64 +1539,205 @@ public class ZKCraftTrade extends JavaPlugin {
             PlayerInventory inventory = player.getInventory();
             switch (args[1].toLowerCase()) {
                 case "set":
-                    Bukkit.getScheduler().runTaskAsynchronously(ZKCraftTrade.this, () -> {
-                        ZKCAsset.Asset existingItem = getAssetFromBlockchain(wallet, "item");
-                        if (existingItem != null) {
-                            player.sendMessage("You already have an item stored: " + existingItem.value);
-                            return;
+                    ItemStack item = inventory.getItemInMainHand();
+                    if (item == null || item.getType().isAir()) {
+                        player.sendMessage("You must hold an item in your main hand!");
+                        return;
+                    }
+                    if (!blockchainEnabled()) {
+                        reportBlockchainUnavailable(player);
+                        return;
+                    }
+                    if (itemEscrow.pending(uuid) != null || chainOutbox.queued(wallet, "item") != null || !playerState.beginItemTransfer(uuid)) {
+                        player.sendMessage("Your item slot is busy with another transfer, please wait.");
+                        return;
+                    }
+                    if (playerState.item(uuid) != null) {
+                        playerState.endItemTransfer(uuid);
+                        player.sendMessage("You already have an item stored!");
+                        return;
+                    }
+                    ItemEscrow.Entry setEscrow;
+                    try {
+                        setEscrow = itemEscrow.hold(uuid, wallet, ItemEscrow.Kind.SET, ItemBlobStore.hash(item), item);
+                    } catch (IOException e) {
+                        playerState.endItemTransfer(uuid);
+                        getLogger().severe("Failed to escrow the item of " + player.getName() + ": " + e.getMessage());
+                        player.sendMessage(ChatColor.RED + "[ZKCraftTrade] Could not start the transfer, your item stays in your hand.");
+                        return;
+                    }
+                    // The item leaves the hand only once the escrow holds it, and the player file is saved right away
+                    // so a crash can't bring back both the hand and the escrow copy
+                    inventory.setItemInMainHand(null);
+                    player.saveData();
+                    player.sendMessage(ChatColor.AQUA + "[ZKCraftTrade] " + item.getType() + " moved to escrow, it is stored as soon as the mint is confirmed.");
+                    AtomicBoolean mintSent = new AtomicBoolean();
+                    commandPipeline.supplyAsync(() -> {
+                        String existingItem = itemOnChain(wallet);
+                        if (existingItem != null) throw new IllegalStateException("you already have an item stored: " + describeItem(existingItem));
+                        return setEscrow;
+                    }).thenCompose(escrow -> {
+                        mintSent.set(true);
+                        return transactionPipeline.submit(ZKCAsset.FUNC_MINT, ZKCAssetCalls.mint(wallet, "item", escrow.value));
+                    }).whenComplete((receipt, error) -> finishEscrow(setEscrow, error, mintSent.get()));
+                    break;
+                case "get":
+                    if (!blockchainEnabled()) {
+                        reportBlockchainUnavailable(player);
+                        return;
+                    }
+                    if (itemEscrow.pending(uuid) != null || chainOutbox.queued(wallet, "item") != null || !playerState.beginItemTransfer(uuid)) {
+                        player.sendMessage("Your item slot is busy with another transfer, please wait.");
+                        return;
+                    }
+                    player.sendMessage(ChatColor.AQUA + "[ZKCraftTrade] Retrieving your stored item, it arrives as soon as the burn is confirmed.");
+                    // The item moves to escrow once it is found, and to the inventory once the burn is confirmed
+                    AtomicReference<ItemEscrow.Entry> getEscrow = new AtomicReference<>();
+                    AtomicBoolean burnSent = new AtomicBoolean();
+                    commandPipeline.supplyAsync(() -> {
+                        String itemValue = itemOnChain(wallet);
+                        if (itemValue == null) throw new IllegalStateException("no item stored in your inventory slot");
+                        ItemStack retrieved = retrieveVerifiedItem(uuid, itemValue);
+                        if (retrieved == null) throw new IllegalStateException("item not found in local storage, try syncing on another server");
+                        try {
+                            getEscrow.set(itemEscrow.hold(uuid, wallet, ItemEscrow.Kind.GET, itemValue, retrieved));
+                        } catch (IOException e) {
+                            playerState.storeItem(uuid, retrieved);
+                            throw e;
                         }
-                        ItemStack item = inventory.getItemInMainHand();
-                        if (item == null || item.getType().isAir()) {
-                            player.sendMessage("You must hold an item in your main hand!");
+                        return wallet;
+                    }).thenCompose(ignored -> circuitBreaker.callAsync(() -> metrics.timeAsync(Metrics.ContractCall.GET_TOKEN_ID,
+                            () -> zkcAsset.getTokenId(wallet, "item").sendAsync()))
+                    ).thenCompose(tokenId -> {
+                        if (tokenId.signum() == 0) throw new IllegalStateException("the item token is no longer in your wallet");
+                        burnSent.set(true);
+                        return transactionPipeline.submit(ZKCAsset.FUNC_BURN, ZKCAssetCalls.burn(tokenId));
+                    }).whenComplete((receipt, error) -> {
+                        ItemEscrow.Entry escrow = getEscrow.get();
+                        if (escrow != null) {
+                            finishEscrow(escrow, error, burnSent.get());
                             return;
                         }
-                        String itemValue = item.getType().toString();
-                        mintAsset(wallet, "item", itemValue);
-                        crossServerInventory.put(uuid, item.clone());
-                        inventoryData.set(uuid.toString() + ".item", item.serialize());
-                        Bukkit.getScheduler().runTask(ZKCraftTrade.this, () -> {
-                            inventory.setItemInMainHand(null);
-                            saveDataFiles();
-                            player.sendMessage("Item stored as NFT: " + itemValue);
+                        // Nothing left the stored slot
+                        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                        commandPipeline.runOnMainThread(() -> {
+                            playerState.endItemTransfer(uuid);
+                            player.sendMessage(ChatColor.RED + "[ZKCraftTrade] Could not retrieve your item: " + cause.getMessage());
                         });
                     });
                     break;
-                case "get":
-                    Bukkit.getScheduler().runTaskAsynchronously(ZKCraftTrade.this, () -> {
-                        ZKCAsset.Asset itemAsset = getAssetFromBlockchain(wallet, "item");
-                        if (itemAsset == null) {
-                            player.sendMessage("No item stored in your inventory slot!");
-                            return;
-                        }
-                        ItemStack storedItem = crossServerInventory.get(uuid);
-                        if (storedItem != null) {
-                            Bukkit.getScheduler().runTask(ZKCraftTrade.this, () -> {
-                                inventory.addItem(storedItem.clone());
-                                burnAsset(wallet, "item");
-                                crossServerInventory.remove(uuid);
-                                inventoryData.set(uuid.toString(), null);
-                                saveDataFiles();
-                                player.sendMessage("Retrieved item: " + itemAsset.value);
-                            });
+                case "view":
+                    ItemEscrow.Entry inTransfer = itemEscrow.pending(uuid);
+                    if (inTransfer != null) {
+                        player.sendMessage("Item in escrow: " + inTransfer.item.getType()
+                                + (inTransfer.kind == ItemEscrow.Kind.SET ? " (being stored)" : " (being retrieved)"));
+                        return;
+                    }
+                    commandPipeline.run(player, "inventory view", () -> getAssetFromBlockchain(wallet, "item"), viewItem -> {
+                        if (!blockchainEnabled()) reportBlockchainUnavailable(player);
+                        if (viewItem != null) {
+                            player.sendMessage("Stored item: " + describeItem(viewItem.value));
                         } else {
-                            player.sendMessage("Item not found in local storage! Try syncing on another server.");
+                            player.sendMessage("No item stored in your inventory slot!");
                         }
                     });
                     break;
-                case "view":
-                    ZKCAsset.Asset viewItem = getAssetFromBlockchain(wallet, "item");
-                    if (!blockchainEnabled) reportBlockchainUnavailable(player);
-                    if (viewItem != null) {
-                        player.sendMessage("Stored item: " + viewItem.value);
-                    } else {
-                        player.sendMessage("No item stored in your inventory slot!");
-                    }
-                    break;
                 default:
                     player.sendMessage("Usage: /zkc inventory <set|get|view>");
             }
         }
 
+        /**
+         * Takes the player's stored item for a token whose value is valueOnChain.
+         * A hash value hands out the exact blob it names, checked against the
+         * hash; the local copy is only used for it if the blob is missing and
+         * the copy hashes to the same value. Tokens minted before the blob
+         * store carry a material name and get the local copy as before.
+         */
+        private ItemStack retrieveVerifiedItem(UUID uuid, String valueOnChain) {
+            if (!ItemBlobStore.isHash(valueOnChain)) return playerState.takeItem(uuid);
+            ItemStack blob = itemBlobs.get(valueOnChain);
+            ItemStack local = playerState.takeItem(uuid);
+            if (blob != null) return blob;
+            if (local == null) return null;
+            try {
+                if (ItemBlobStore.hash(local).equals(valueOnChain)) return local;
+            } catch (IOException e) {
+                getLogger().warning("Failed to hash stored item of " + uuid + ": " + e.getMessage());
+            }
+            getLogger().warning("Stored item of " + uuid + " does not match its on-chain hash " + valueOnChain);
+            playerState.storeItem(uuid, local);
+            return null;
+        }
+
+        private void handleVaultCommands(Player player, String[] args) {
+            UUID uuid = player.getUniqueId();
+            String wallet = playerState.wallet(uuid);
+            if (wallet == null) {
+                player.sendMessage("You must link a wallet first! Use /zkc wallet link <privateKey>");
+                return;
+            }
+            int pages = Math.max(1, config.getInt("vault.pages", 3));
+            int slotCount = pages * VaultStore.PAGE_SIZE;
+            if (args.length >= 2 && args[1].equalsIgnoreCase("verify")) {
+                if (!blockchainEnabled()) {
+                    reportBlockchainUnavailable(player);
+                    return;
+                }
+                commandPipeline.runAsync(player, "vault verify", () -> vaultStore.load(uuid, slotCount)
+                        .thenCompose(vault -> commandPipeline.supplyAsync(() -> verifyVault(wallet, vault))), lines -> {
+                    for (String line : lines) player.sendMessage(line);
+                });
+                return;
+            }
+            int page;
+            try {
+                page = args.length >= 2 ? Integer.parseInt(args[1]) : 1;
+            } catch (NumberFormatException e) {
+                player.sendMessage("Usage: /zkc vault [page|verify]");
+                return;
+            }
+            if (page < 1 || page > pages) {
+                player.sendMessage("Your vault has pages 1 to " + pages + ".");
+                return;
+            }
+            // Loaded on the vault thread, behind any update still being applied
+            commandPipeline.runAsync(player, "vault open", () -> vaultStore.load(uuid, slotCount), vault -> {
+                if (!player.isOnline()) return;
+                VaultPage holder = new VaultPage(vault, page - 1);
+                holder.inventory = Bukkit.createInventory(holder, VaultStore.PAGE_SIZE, "Vault page " + page + "/" + pages);
+                holder.inventory.setContents(vaultStore.page(vault, page - 1));
+                player.openInventory(holder.inventory);
+            });
+        }
+
+        /**
+         * Checks every slot of this server's copy of the vault against the
+         * root on chain by its Merkle proof, the check any server can make.
+         * Reads the chain, so never on the main thread.
+         */
+        private List<String> verifyVault(String wallet, VaultStore.Vault vault) throws Exception {
+            byte[][] itemHashes = vaultStore.itemHashes(vault);
+            boolean uncommitted = vaultStore.isUncommitted(vault);
+            byte[] chainRoot = circuitBreaker.call(() -> metrics.time(Metrics.ContractCall.VAULT_ROOTS,
+                    () -> zkcAsset.vaultRoots(wallet).send()));
+            List<String> mismatched = new ArrayList<>();
+            int verified = 0;
+            for (int slot = 0; slot < itemHashes.length; slot++) {
+                if (VaultMerkle.isEmpty(itemHashes[slot])) continue;
+                if (VaultMerkle.verify(VaultMerkle.proof(itemHashes, slot), chainRoot, slot, itemHashes[slot])) {
+                    verified++;
+                } else {
+                    mismatched.add((slot / VaultStore.PAGE_SIZE + 1) + ":" + (slot % VaultStore.PAGE_SIZE + 1));
+                }
+            }
+            List<String> lines = new ArrayList<>();
+            lines.add(mismatched.isEmpty() ? verified + " slots match the vault root on chain."
+                    : verified + " slots match the vault root on chain, " + mismatched.size() + " don't (page:slot " + String.join(", ", mismatched) + ").");
+            if (uncommitted) lines.add("Your latest vault changes are still being committed to the chain.");
+            return lines;
+        }
+
         private void handleConfigCommands(Player player, String[] args) {
             if (!player.hasPermission("zkcraft.admin")) {
                 player.sendMessage("You don't have permission!");
@@ -769,40 +1787,61 @@ public class ZKCraftTrade extends JavaPlugin {
             }
             String targetType = args[1].toLowerCase();
             if (targetType.equals("self")) {
-                String wallet = playerWallets.get(player.getUniqueId());
+                String wallet = playerState.wallet(player.getUniqueId());
                 if (wallet == null) {
                     player.sendMessage("You must link a wallet first!");
                     return;
                 }
-                ZKCAsset.Asset rank = getAssetFromBlockchain(wallet, "rank");
-                ZKCAsset.Asset item = getAssetFromBlockchain(wallet, "item");
-                if (!blockchainEnabled) reportBlockchainUnavailable(player);
-                player.sendMessage("On-chain rank: " + (rank != null ? rank.value : PLACEHOLDER_RANK));
-                player.sendMessage("On-chain item: " + (item != null ? item.value : PLACEHOLDER_ITEM));
+                commandPipeline.run(player, "probe self", () -> new ZKCAsset.Asset[] {
+                        getAssetFromBlockchain(wallet, "rank"),
+                        getAssetFromBlockchain(wallet, "item")
+                }, assets -> {
+                    if (!blockchainEnabled()) reportBlockchainUnavailable(player);
+                    player.sendMessage("On-chain rank: " + (assets[0] != null ? assets[0].value : PLACEHOLDER_RANK));
+                    player.sendMessage("On-chain item: " + (assets[1] != null ? assets[1].value : PLACEHOLDER_ITEM));
+                });
             } else if (targetType.equals("player") && args.length >= 3) {
-                Player target = Bukkit.getPlayer(args[2]);
-                if (target == null) {
-                    player.sendMessage("Player not found!");
+                String targetName = args[2];
+                String assetType = (args.length >= 4) ? args[3].toLowerCase() : "all";
+                boolean probeRank = assetType.equals("rank") || assetType.equals("all");
+                boolean probeItem = assetType.equals("item") || assetType.equals("all");
+                withPlayerWallet(player, targetName, wallet ->
+                        commandPipeline.run(player, "probe player", () -> new ZKCAsset.Asset[] {
+                                probeRank ? getAssetFromBlockchain(wallet, "rank") : null,
+                                probeItem ? getAssetFromBlockchain(wallet, "item") : null
+                        }, assets -> {
+                            if (!blockchainEnabled()) reportBlockchainUnavailable(player);
+                            if (probeRank) {
+                                player.sendMessage(targetName + " on-chain rank: " + (assets[0] != null ? assets[0].value : PLACEHOLDER_RANK));
+                            }
+                            if (probeItem) {
+                                player.sendMessage(targetName + " on-chain item: " + (assets[1] != null ? assets[1].value : PLACEHOLDER_ITEM));
+                            }
+                        }));
+            } else {
+                player.sendMessage("Usage: /zkc probe <self|player> [playerName] [rank|item]");
+            }
+        }
+
+        // Online players resolve straight away; offline ones are looked up and loaded from the store off the main thread
+        private void withPlayerWallet(Player player, String playerName, Consumer<String> action) {
+            Player online = getServer().getPlayer(playerName);
+            if (online != null) {
+                String wallet = playerState.wallet(online.getUniqueId());
+                if (wallet == null) {
+                    player.sendMessage("Player has no linked wallet!");
                     return;
                 }
-                String wallet = playerWallets.get(target.getUniqueId());
+                action.accept(wallet);
+                return;
+            }
+            commandPipeline.run(player, "player lookup", () -> lookupWallet(playerName), wallet -> {
                 if (wallet == null) {
-                    player.sendMessage("Target player has no linked wallet!");
+                    player.sendMessage("Player not found or has no linked wallet!");
                     return;
                 }
-                String assetType = (args.length >= 4) ? args[3].toLowerCase() : "all";
-                if (!blockchainEnabled) reportBlockchainUnavailable(player);
-                if (assetType.equals("rank") || assetType.equals("all")) {
-                    ZKCAsset.Asset rank = getAssetFromBlockchain(wallet, "rank");
-                    player.sendMessage(target.getName() + " on-chain rank: " + (rank != null ? rank.value : PLACEHOLDER_RANK));
-                }
-                if (assetType.equals("item") || assetType.equals("all")) {
-                    ZKCAsset.Asset item = getAssetFromBlockchain(wallet, "item");
-                    player.sendMessage(target.getName() + " on-chain item: " + (item != null ? item.value : PLACEHOLDER_ITEM));
-                }
-            } else {
-                player.sendMessage("Usage: /zkc probe <self|player> [playerName] [rank|item]");
-            }
+                action.accept(wallet);
+            });
         }
 
         private void handlePausePollCommand(Player player) {
@@ -810,9 +1849,8 @@ public class ZKCraftTrade extends JavaPlugin {
                 player.sendMessage("You don't have permission!");
                 return;
             }
-            if (blockchainPoller != null) {
-                blockchainPoller.cancel();
-                blockchainPoller = null;
+            if (pollScheduler.isRunning()) {
+                pollScheduler.stop();
                 player.sendMessage(ChatColor.YELLOW + "Blockchain polling paused.");
             } else {
                 player.sendMessage(ChatColor.RED + "Blockchain polling is already paused.");
@@ -823,8 +1861,8 @@ public class ZKCraftTrade extends JavaPlugin {
                 player.sendMessage("You don't have permission!");
                 return;
             }
-            if (blockchainPoller == null) {
-                startBlockchainPoller();
+            if (!pollScheduler.isRunning()) {
+                pollScheduler.start();
                 player.sendMessage(ChatColor.GREEN + "Blockchain polling resumed.");
             } else {
                 player.sendMessage(ChatColor.YELLOW + "Blockchain polling is already running.");
@@ -832,13 +1870,128 @@ public class ZKCraftTrade extends JavaPlugin {
         }
     }
 
-    class ZKCTabCompleter implements TabCompleter {
+    class PlayerDataListener implements Listener {
+        // Holds logins until the data stage has loaded the store the MONITOR handler below loads from
+        @EventHandler(priority = EventPriority.LOWEST)
+        public void onPreLoginAwaitData(AsyncPlayerPreLoginEvent event) {
+            long waitMillis = Math.max(0, config.getLong("startup.login-wait-seconds", 30)) * 1000L;
+            if (!startup.await("data", waitMillis) || playerState == null) {
+                event.disallow(AsyncPlayerPreLoginEvent.Result.KICK_OTHER, "The server is still starting up, please rejoin in a moment.");
+            }
+        }
+
+        // MONITOR so the state is only loaded once no other plugin will deny the login
+        @EventHandler(priority = EventPriority.MONITOR)
+        public void onPreLogin(AsyncPlayerPreLoginEvent event) {
+            if (event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED) return;
+            UUID uuid = event.getUniqueId();
+            BukkitTask eviction = pendingEvictions.remove(uuid);
+            if (eviction != null) {
+                // Rejoined within the grace period, the state is still loaded
+                eviction.cancel();
+                return;
+            }
+            playerState.load(uuid);
+        }
+
+        // A login refused after the pre-login (whitelist, full server) would otherwise leave its state behind
+        @EventHandler(priority = EventPriority.MONITOR)
+        public void onLogin(PlayerLoginEvent event) {
+            if (event.getResult() != PlayerLoginEvent.Result.ALLOWED) scheduleEviction(event.getPlayer().getUniqueId());
+        }
+
+        @EventHandler(priority = EventPriority.MONITOR)
+        public void onJoin(PlayerJoinEvent event) {
+            pollScheduler.playerOnline(event.getPlayer().getUniqueId());
+            // Items whose transfer settled while the player was away
+            if (itemEscrow == null) return;
+            for (ItemEscrow.Entry owed : itemEscrow.owedTo(event.getPlayer().getUniqueId())) {
+                handOver(owed, event.getPlayer(), ChatColor.GREEN + "[ZKCraftTrade] You received an item from an earlier transfer: " + owed.item.getType());
+            }
+        }
+
+        @EventHandler(priority = EventPriority.MONITOR)
+        public void onQuit(PlayerQuitEvent event) {
+            pollScheduler.playerOffline(event.getPlayer().getUniqueId());
+            // Players who were online at enable and quit before the data stage finished have nothing loaded
+            if (playerState == null) return;
+            String wallet = playerState.wallet(event.getPlayer().getUniqueId());
+            if (wallet != null) assetReconciler.forget(wallet);
+            scheduleEviction(event.getPlayer().getUniqueId());
+        }
+
+        private void scheduleEviction(UUID uuid) {
+            long graceTicks = Math.max(0, config.getLong("storage.evict-after-seconds", 300)) * 20L;
+            BukkitTask[] task = new BukkitTask[1];
+            task[0] = Bukkit.getScheduler().runTaskLater(ZKCraftTrade.this, () -> {
+                // Whoever removes the entry first wins, so a rejoin and the eviction never both act;
+                // the lock keeps a rejoin's reload from landing between the claim and the eviction
+                playerState.withLock(uuid, () -> {
+                    if (pendingEvictions.remove(uuid, task[0])) playerState.evict(uuid);
+                    return null;
+                });
+            }, graceTicks);
+            BukkitTask previous = pendingEvictions.put(uuid, task[0]);
+            if (previous != null) previous.cancel();
+        }
+    }
+
+    // The open inventory of one vault page, so its close event can find the vault
+    static final class VaultPage implements InventoryHolder {
+        final VaultStore.Vault vault;
+        final int page;
+        Inventory inventory;
+
+        VaultPage(VaultStore.Vault vault, int page) {
+            this.vault = vault;
+            this.page = page;
+        }
+
+        @Override
+        public Inventory getInventory() {
+            return inventory;
+        }
+    }
+
+    class VaultListener implements Listener {
+        // Closing a page is one vault update, saved on the vault thread and committed in one transaction
+        @EventHandler(priority = EventPriority.MONITOR)
+        public void onClose(InventoryCloseEvent event) {
+            if (!(event.getInventory().getHolder() instanceof VaultPage)) return;
+            VaultPage holder = (VaultPage) event.getInventory().getHolder();
+            UUID uuid = event.getPlayer().getUniqueId();
+            ItemStack[] contents = event.getInventory().getContents();
+            for (int i = 0; i < contents.length; i++) {
+                if (contents[i] != null) contents[i] = contents[i].clone();
+            }
+            vaultStore.updateAsync(holder.vault, holder.page, contents, playerState.wallet(uuid)).whenComplete((changed, error) -> {
+                if (error != null) {
+                    getLogger().severe("Failed to save the vault of " + uuid + ": " + error.getMessage());
+                } else if (changed && isEnabled()) {
+                    // Pages closed by onDisable are only saved; their root is sent by commitVaults after the restart
+                    commitVault(holder.vault);
+                }
+            });
+        }
+
+        @EventHandler(priority = EventPriority.MONITOR)
+        public void onQuit(PlayerQuitEvent event) {
+            if (vaultStore != null) vaultStore.unload(event.getPlayer().getUniqueId());
+        }
+    }
+
+    static class ZKCTabCompleter implements TabCompleter {
+        // Read on every completion so a reloaded vault.pages shows up
+        private final IntSupplier vaultPages;
+
+        ZKCTabCompleter(IntSupplier vaultPages) {
+            this.vaultPages = vaultPages;
+        }
+
         @Override
         public List<String> onTabComplete(CommandSender sender, Command command, String alias, String[] args) {
             if (args.length == 1) {
-                List<String> subs = new ArrayList<>();
-                Collections.addAll(subs, "wallet", "rank", "inventory", "reload", "info", "config", "probe", "pausepoll", "resumepoll");
-                return filterPrefix(subs, args[0]);
+                return filterPrefix(new ArrayList<>(SUBCOMMANDS), args[0]);
             }
             if (args.length == 2) {
                 if (args[0].equalsIgnoreCase("wallet")) {
@@ -847,6 +2000,13 @@ public class ZKCraftTrade extends JavaPlugin {
                 if (args[0].equalsIgnoreCase("config")) {
                     return filterPrefix(new ArrayList<>(List.of("set", "view")), args[1]);
                 }
+                if (args[0].equalsIgnoreCase("vault")) {
+                    List<String> options = new ArrayList<>();
+                    int pages = vaultPages.getAsInt();
+                    for (int page = 1; page <= pages; page++) options.add(String.valueOf(page));
+                    options.add("verify");
+                    return filterPrefix(options, args[1]);
+                }
             }
             if (args.length == 2 && args[0].equalsIgnoreCase("probe")) {
                 return filterPrefix(new ArrayList<>(List.of("self", "player")), args[1]);
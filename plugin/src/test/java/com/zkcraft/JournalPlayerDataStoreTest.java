@@ -0,0 +1,107 @@
+package com.zkcraft;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Runs compactions whose file moves are made to fail, and checks that
+ * nothing set before or after is lost.
+ */
+class JournalPlayerDataStoreTest {
+    private final UUID first = UUID.randomUUID();
+    private final UUID second = UUID.randomUUID();
+
+    @TempDir
+    File directory;
+
+    private FailingStore store;
+
+    @AfterEach
+    void tearDown() {
+        if (store != null) store.close();
+    }
+
+    @Test
+    void failedRotationKeepsTheJournalWritable() throws IOException {
+        store = open();
+        store.setWallet(first, "0xaa");
+        store.failMovesTo = "journal.log.old";
+
+        assertThrows(IOException.class, store::compactNow);
+        store.setWallet(second, "0xbb");
+
+        assertEquals("0xaa", store.loadWallet(first));
+        assertEquals("0xbb", store.loadWallet(second));
+        assertReopensWithBothWallets();
+    }
+
+    @Test
+    void compactionRunsAgainAfterAFailedRotation() throws IOException {
+        store = open();
+        store.setWallet(first, "0xaa");
+        store.failMovesTo = "journal.log.old";
+        assertThrows(IOException.class, store::compactNow);
+
+        store.failMovesTo = null;
+        store.setWallet(second, "0xbb");
+        store.compactNow();
+
+        assertFalse(new File(directory, "journal.log.old").exists());
+        assertEquals("0xaa", store.loadWallet(first));
+        assertReopensWithBothWallets();
+    }
+
+    @Test
+    void failedSnapshotRenameIsFoldedIntoTheNextCompaction() throws IOException {
+        store = open();
+        store.setWallet(first, "0xaa");
+        store.failMovesTo = "snapshot.dat";
+        assertThrows(IOException.class, store::compactNow);
+
+        store.failMovesTo = null;
+        store.setWallet(second, "0xbb");
+        store.compactNow();
+
+        assertEquals("0xaa", store.loadWallet(first));
+        assertEquals("0xbb", store.loadWallet(second));
+        assertReopensWithBothWallets();
+    }
+
+    private void assertReopensWithBothWallets() throws IOException {
+        store.close();
+        store = open();
+        assertEquals("0xaa", store.loadWallet(first));
+        assertEquals("0xbb", store.loadWallet(second));
+    }
+
+    private FailingStore open() throws IOException {
+        // Long intervals, so the background sync never compacts on its own
+        FailingStore opened = new FailingStore(directory);
+        opened.open();
+        return opened;
+    }
+
+    private static final class FailingStore extends JournalPlayerDataStore {
+        volatile String failMovesTo;
+
+        FailingStore(File directory) {
+            super(directory, 60_000, Long.MAX_VALUE, new Metrics(), Logger.getLogger("JournalPlayerDataStoreTest"));
+        }
+
+        @Override
+        void moveAtomically(File source, File target) throws IOException {
+            if (target.getName().equals(failMovesTo)) throw new IOException("Simulated failure moving " + source.getName());
+            super.moveAtomically(source, target);
+        }
+    }
+}
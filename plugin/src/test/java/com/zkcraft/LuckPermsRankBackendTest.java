@@ -0,0 +1,299 @@
+package com.zkcraft;
+
+import net.luckperms.api.LuckPerms;
+import net.luckperms.api.LuckPermsProvider;
+import net.luckperms.api.model.data.DataMutateResult;
+import net.luckperms.api.model.data.NodeMap;
+import net.luckperms.api.model.user.User;
+import net.luckperms.api.model.user.UserManager;
+import net.luckperms.api.node.Node;
+import net.luckperms.api.node.NodeBuilderRegistry;
+import net.luckperms.api.node.matcher.NodeMatcher;
+import net.luckperms.api.node.matcher.NodeMatcherFactory;
+import net.luckperms.api.node.types.InheritanceNode;
+
+import org.bukkit.entity.Player;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the backend against an in-memory fake of the LuckPerms API: users are
+ * sets of group names, and loads and saves are counted.
+ */
+class LuckPermsRankBackendTest {
+    private final Map<UUID, Set<String>> groups = new HashMap<>();
+    private final List<UUID> loads = new ArrayList<>();
+    private final List<UUID> saves = new ArrayList<>();
+    private CompletableFuture<Void> saveResult = CompletableFuture.completedFuture(null);
+    private LuckPermsRankBackend backend;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        LuckPerms luckPerms = fakeLuckPerms();
+        // InheritanceNode.builder and NodeMatcher.key go through the provider
+        Method register = LuckPermsProvider.class.getDeclaredMethod("register", LuckPerms.class);
+        register.setAccessible(true);
+        register.invoke(null, luckPerms);
+        backend = new LuckPermsRankBackend(luckPerms, Logger.getLogger("LuckPermsRankBackendTest"));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        Method unregister = LuckPermsProvider.class.getDeclaredMethod("unregister");
+        unregister.setAccessible(true);
+        unregister.invoke(null);
+    }
+
+    @Test
+    void rankChangeIsSavedOnce() {
+        Player player = player("Alex");
+        groups.put(player.getUniqueId(), new HashSet<>(Arrays.asList("member")));
+
+        backend.revoke(player, "member");
+        backend.grant(player, "vip");
+        backend.flush().join();
+
+        assertEquals(Arrays.asList(player.getUniqueId()), loads);
+        assertEquals(Arrays.asList(player.getUniqueId()), saves);
+        assertEquals(new HashSet<>(Arrays.asList("vip")), groups.get(player.getUniqueId()));
+    }
+
+    @Test
+    void changesOfSeveralPlayersAreSavedOncePerPlayer() {
+        Player first = player("Alex");
+        Player second = player("Sam");
+
+        backend.grant(first, "vip");
+        backend.grant(second, "vip");
+        backend.grant(first, "donor");
+        backend.flush().join();
+
+        assertEquals(2, saves.size());
+        assertEquals(new HashSet<>(Arrays.asList("vip", "donor")), groups.get(first.getUniqueId()));
+        assertEquals(new HashSet<>(Arrays.asList("vip")), groups.get(second.getUniqueId()));
+    }
+
+    @Test
+    void matchingGroupsAreNotSaved() {
+        Player player = player("Alex");
+        groups.put(player.getUniqueId(), new HashSet<>(Arrays.asList("vip")));
+
+        backend.grant(player, "vip");
+        backend.revoke(player, "member");
+        backend.flush().join();
+
+        assertEquals(1, loads.size());
+        assertTrue(saves.isEmpty());
+    }
+
+    @Test
+    void flushWithNothingBufferedLoadsNobody() {
+        backend.flush().join();
+
+        assertTrue(loads.isEmpty());
+    }
+
+    @Test
+    void flushCompletesOnceSaved() {
+        Player player = player("Alex");
+        saveResult = new CompletableFuture<>();
+
+        backend.grant(player, "vip");
+        CompletableFuture<Void> flushed = backend.flush();
+
+        assertFalse(flushed.isDone());
+        saveResult.complete(null);
+        assertTrue(flushed.isDone());
+    }
+
+    @Test
+    void failedSaveStillCompletesFlush() {
+        Player player = player("Alex");
+        saveResult = new CompletableFuture<>();
+        saveResult.completeExceptionally(new IllegalStateException("storage offline"));
+
+        backend.grant(player, "vip");
+
+        assertFalse(backend.flush().isCompletedExceptionally());
+    }
+
+    @Test
+    void holdsIsTheGroupPermission() {
+        Player player = player("Alex", "group.vip");
+
+        assertTrue(backend.holds(player, "VIP"));
+        assertFalse(backend.holds(player, "member"));
+    }
+
+    @Test
+    void membersAreTheGroupsMembers() {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        UUID other = UUID.randomUUID();
+        groups.put(first, new HashSet<>(Arrays.asList("vip")));
+        groups.put(second, new HashSet<>(Arrays.asList("vip", "member")));
+        groups.put(other, new HashSet<>(Arrays.asList("member")));
+
+        assertEquals(new HashSet<>(Arrays.asList(first, second)), backend.members("vip").join());
+    }
+
+    private LuckPerms fakeLuckPerms() {
+        UserManager userManager = fake(UserManager.class, (method, args) -> {
+            switch (method.getName()) {
+                case "loadUser":
+                    UUID uuid = (UUID) args[0];
+                    loads.add(uuid);
+                    return CompletableFuture.completedFuture(user(uuid));
+                case "saveUser":
+                    saves.add(((User) args[0]).getUniqueId());
+                    return saveResult;
+                case "searchAll":
+                    NodeMatcher<?> matcher = (NodeMatcher<?>) args[0];
+                    Map<UUID, Collection<Node>> found = new HashMap<>();
+                    for (Map.Entry<UUID, Set<String>> user : groups.entrySet()) {
+                        for (String group : user.getValue()) {
+                            Node node = node(group);
+                            if (matcher.test(node)) found.computeIfAbsent(user.getKey(), ignored -> new ArrayList<>()).add(node);
+                        }
+                    }
+                    return CompletableFuture.completedFuture(found);
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+        NodeBuilderRegistry builders = fake(NodeBuilderRegistry.class, (method, args) -> {
+            if (!method.getName().equals("forInheritance")) throw new UnsupportedOperationException(method.getName());
+            String[] group = new String[1];
+            Object[] builder = new Object[1];
+            builder[0] = fake(InheritanceNode.Builder.class, (builderMethod, builderArgs) -> {
+                if (builderMethod.getName().equals("group")) {
+                    group[0] = (String) builderArgs[0];
+                    return builder[0];
+                }
+                if (builderMethod.getName().equals("build")) return node(group[0]);
+                throw new UnsupportedOperationException(builderMethod.getName());
+            });
+            return builder[0];
+        });
+        NodeMatcherFactory matchers = fake(NodeMatcherFactory.class, (method, args) -> {
+            if (!method.getName().equals("key")) throw new UnsupportedOperationException(method.getName());
+            String key = args[0] instanceof Node ? ((Node) args[0]).getKey() : (String) args[0];
+            return fake(NodeMatcher.class, (matcherMethod, matcherArgs) -> {
+                if (!matcherMethod.getName().equals("test")) throw new UnsupportedOperationException(matcherMethod.getName());
+                return matcherArgs[0] instanceof Node && ((Node) matcherArgs[0]).getKey().equals(key);
+            });
+        });
+        return fake(LuckPerms.class, (method, args) -> {
+            switch (method.getName()) {
+                case "getUserManager":
+                    return userManager;
+                case "getNodeBuilderRegistry":
+                    return builders;
+                case "getNodeMatcherFactory":
+                    return matchers;
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    private User user(UUID uuid) {
+        Set<String> userGroups = groups.computeIfAbsent(uuid, ignored -> new HashSet<>());
+        NodeMap data = fake(NodeMap.class, (method, args) -> {
+            String group = ((InheritanceNode) args[0]).getGroupName();
+            switch (method.getName()) {
+                case "add":
+                    return userGroups.add(group) ? DataMutateResult.SUCCESS : DataMutateResult.FAIL_ALREADY_HAS;
+                case "remove":
+                    return userGroups.remove(group) ? DataMutateResult.SUCCESS : DataMutateResult.FAIL_LACKS;
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+        return fake(User.class, (method, args) -> {
+            switch (method.getName()) {
+                case "getUniqueId":
+                    return uuid;
+                case "data":
+                    return data;
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    private static InheritanceNode node(String group) {
+        return fake(InheritanceNode.class, (method, args) -> {
+            switch (method.getName()) {
+                case "getGroupName":
+                    return group;
+                case "getKey":
+                    return "group." + group;
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    private static Player player(String name, String... permissions) {
+        UUID uuid = UUID.randomUUID();
+        return fake(Player.class, (method, args) -> {
+            switch (method.getName()) {
+                case "getUniqueId":
+                    return uuid;
+                case "getName":
+                    return name;
+                case "hasPermission":
+                    return Arrays.asList(permissions).contains((String) args[0]);
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    private interface Handler {
+        Object invoke(Method method, Object[] args) throws Throwable;
+    }
+
+    // A proxy answering the calls handler knows; Object's own methods go by identity
+    @SuppressWarnings("unchecked")
+    private static <T> T fake(Class<T> type, Handler handler) {
+        InvocationHandler invocationHandler = (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "equals":
+                    if (method.getParameterCount() == 1) return proxy == args[0];
+                    break;
+                case "hashCode":
+                    if (method.getParameterCount() == 0) return System.identityHashCode(proxy);
+                    break;
+                case "toString":
+                    if (method.getParameterCount() == 0) return "fake " + type.getSimpleName();
+                    break;
+                default:
+                    break;
+            }
+            return handler.invoke(method, args);
+        };
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, invocationHandler);
+    }
+}
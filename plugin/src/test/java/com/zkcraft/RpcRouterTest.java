@@ -0,0 +1,194 @@
+package com.zkcraft;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.exceptions.ClientConnectionException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Runs the router against local stub JSON-RPC servers that answer every
+ * method with "0x1", after an optional delay, or fail with HTTP 500.
+ */
+class RpcRouterTest {
+    private final List<StubNode> nodes = new ArrayList<>();
+    private RpcRouter router;
+
+    @AfterEach
+    void tearDown() {
+        if (router != null) router.close();
+        for (StubNode node : nodes) node.stop();
+    }
+
+    @Test
+    void readsGoToTheLowerMedianLatency() throws IOException {
+        StubNode slow = node(100);
+        StubNode fast = node(0);
+        router = router(slow, fast);
+
+        // Unmeasured endpoints go first, so each gets a sample
+        measure();
+        for (int i = 0; i < 10; i++) send("eth_blockNumber");
+
+        assertEquals(10, fast.calls("eth_blockNumber"));
+        assertEquals(0, slow.calls("eth_blockNumber"));
+    }
+
+    @Test
+    void readsFailOverOnErrors() throws IOException {
+        StubNode failing = node(0);
+        StubNode healthy = node(50);
+        router = router(failing, healthy);
+        measure();
+
+        failing.failing = true;
+        for (int i = 0; i < 5; i++) assertEquals("0x1", send("eth_call").getResult());
+
+        assertEquals(1, failing.calls("eth_call"));
+        assertEquals(5, healthy.calls("eth_call"));
+    }
+
+    @Test
+    void writesNonceAndReceiptsStayOnOneEndpoint() throws IOException {
+        StubNode pinned = node(100);
+        StubNode fast = node(0);
+        router = router(pinned, fast);
+        measure();
+
+        for (String method : Arrays.asList("eth_getTransactionCount", "eth_sendRawTransaction", "eth_getTransactionReceipt")) {
+            for (int i = 0; i < 3; i++) send(method);
+            assertEquals(3, pinned.calls(method), method);
+            assertEquals(0, fast.calls(method), method);
+        }
+    }
+
+    @Test
+    void failedWriteMovesThePinForLaterWrites() throws IOException {
+        StubNode pinned = node(0);
+        StubNode other = node(0);
+        router = router(pinned, other);
+
+        pinned.failing = true;
+        assertThrows(ClientConnectionException.class, () -> send("eth_sendRawTransaction"));
+        send("eth_sendRawTransaction");
+        send("eth_getTransactionCount");
+
+        assertEquals(1, pinned.calls("eth_sendRawTransaction"));
+        assertEquals(1, other.calls("eth_sendRawTransaction"));
+        assertEquals(1, other.calls("eth_getTransactionCount"));
+    }
+
+    // One read per endpoint, after which the counts start from zero
+    private void measure() throws IOException {
+        for (int i = 0; i < nodes.size(); i++) send("eth_chainId");
+        for (StubNode node : nodes) node.calls.clear();
+    }
+
+    private StringResponse send(String method) throws IOException {
+        return new Request<>(method, Collections.<String>emptyList(), router, StringResponse.class).send();
+    }
+
+    private RpcRouter router(StubNode... stubs) {
+        List<String> urls = new ArrayList<>();
+        for (StubNode stub : stubs) urls.add(stub.url());
+        return new RpcRouter(urls, 4, 30, 5000, 60_000, Logger.getLogger("RpcRouterTest"));
+    }
+
+    private StubNode node(long delayMillis) throws IOException {
+        StubNode node = new StubNode(delayMillis);
+        nodes.add(node);
+        return node;
+    }
+
+    public static class StringResponse extends Response<String> {
+    }
+
+    private static final class StubNode {
+        private static final ObjectMapper MAPPER = new ObjectMapper();
+
+        final Map<String, AtomicInteger> calls = new ConcurrentHashMap<>();
+        volatile boolean failing;
+        private final long delayMillis;
+        private final HttpServer server;
+
+        StubNode(long delayMillis) throws IOException {
+            this.delayMillis = delayMillis;
+            this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.createContext("/", this::handle);
+            server.start();
+        }
+
+        String url() {
+            return "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+        }
+
+        int calls(String method) {
+            AtomicInteger count = calls.get(method);
+            return count != null ? count.get() : 0;
+        }
+
+        void stop() {
+            server.stop(0);
+        }
+
+        private void handle(HttpExchange exchange) throws IOException {
+            JsonNode request;
+            try (InputStream in = exchange.getRequestBody()) {
+                request = MAPPER.readTree(in);
+            }
+            List<JsonNode> requests = new ArrayList<>();
+            if (request.isArray()) {
+                request.forEach(requests::add);
+            } else {
+                requests.add(request);
+            }
+            for (JsonNode call : requests) calls.computeIfAbsent(call.get("method").asText(), ignored -> new AtomicInteger()).incrementAndGet();
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (failing) {
+                exchange.sendResponseHeaders(500, -1);
+                exchange.close();
+                return;
+            }
+            ArrayNode answers = MAPPER.createArrayNode();
+            for (JsonNode call : requests) {
+                ObjectNode answer = answers.addObject();
+                answer.put("jsonrpc", "2.0");
+                answer.set("id", call.get("id"));
+                answer.put("result", "0x1");
+            }
+            byte[] body = MAPPER.writeValueAsBytes(request.isArray() ? answers : answers.get(0));
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+}